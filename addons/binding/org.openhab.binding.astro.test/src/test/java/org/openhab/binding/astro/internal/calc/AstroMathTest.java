@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.calc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Accuracy tests for {@link AstroMath}. Sun positions are compared with reference values of the NOAA solar position
+ * algorithm, the root finding and the analytic checks are compared with brute force one minute scans.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroMathTest {
+    private static final double ONE_MINUTE = 1.0 / 1440;
+
+    // julian date, latitude, longitude, azimuth, elevation
+    private static final double[][] SUN_REFERENCE = new double[][] {
+            { 2457560.9166666665, 48.2082, 16.3738, 150.72, 62.82 },
+            { 2457744.0, 48.2082, 16.3738, 196.08, 16.79 },
+            { 2457653.6458333335, -33.8688, 151.2093, 319.53, 48.37 },
+            { 2457574.25, 40.7128, -74.006, 219.40, 68.14 },
+            { 2457561.4583333335, 69.6492, 18.9553, 3.18, 3.11 } };
+
+    @Test
+    public void sunPositionMatchesReference() {
+        double[] result = new double[2];
+        for (double[] reference : SUN_REFERENCE) {
+            AstroMath.sunPosition(reference[0], reference[1], reference[2], result, 0);
+            assertEquals(reference[3], result[AstroMath.AZIMUTH], 0.5);
+            assertEquals(reference[4], result[AstroMath.ELEVATION], 0.3);
+        }
+    }
+
+    @Test
+    public void sunPositionNearZenith() {
+        double[] result = new double[2];
+        // equator at noon on the march equinox 2016
+        AstroMath.sunPosition(2457468.0, 0, 0, result, 0);
+        assertEquals(88.16, result[AstroMath.ELEVATION], 0.3);
+    }
+
+    @Test
+    public void batchForTimestampsEqualsSingleEvaluation() {
+        double[] jds = new double[96];
+        for (int i = 0; i < jds.length; i++) {
+            jds[i] = 2457560.5 + i / 96.0;
+        }
+        double[] batch = new double[jds.length * 2];
+        AstroMath.sunPositions(jds, jds.length, 48.2082, 16.3738, batch);
+
+        double[] single = new double[2];
+        for (int i = 0; i < jds.length; i++) {
+            AstroMath.sunPosition(jds[i], 48.2082, 16.3738, single, 0);
+            assertEquals(single[AstroMath.AZIMUTH], batch[2 * i + AstroMath.AZIMUTH], 1e-9);
+            assertEquals(single[AstroMath.ELEVATION], batch[2 * i + AstroMath.ELEVATION], 1e-9);
+        }
+    }
+
+    @Test
+    public void batchForLocationsEqualsSingleEvaluation() {
+        double[] latitudes = new double[] { 48.2082, -33.8688, 40.7128, 69.6492, 0 };
+        double[] longitudes = new double[] { 16.3738, 151.2093, -74.006, 18.9553, 0 };
+        double[] batch = new double[latitudes.length * 2];
+        AstroMath.sunPositions(2457574.25, latitudes, longitudes, latitudes.length, batch);
+
+        double[] single = new double[2];
+        for (int i = 0; i < latitudes.length; i++) {
+            AstroMath.sunPosition(2457574.25, latitudes[i], longitudes[i], single, 0);
+            assertEquals(single[AstroMath.AZIMUTH], batch[2 * i + AstroMath.AZIMUTH], 1e-9);
+            assertEquals(single[AstroMath.ELEVATION], batch[2 * i + AstroMath.ELEVATION], 1e-9);
+        }
+    }
+
+    @Test
+    public void sunUpAllDayMatchesScan() {
+        double[] scratch = new double[2];
+        double[] latitudes = new double[] { 60, 65, 66, 67, 68, 70, 75, 85, -66, -70, -80 };
+        for (double latitude : latitudes) {
+            // every fifth day of 2016
+            for (double jd = 2457388.5; jd < 2457754.5; jd += 5) {
+                boolean expected = isSunUpAllDayScan(jd, jd + 1, latitude, 16.3738, scratch);
+                boolean actual = AstroMath.isSunUpAllDay(jd, jd + 1, latitude, 16.3738, -0.83, scratch);
+                assertEquals("latitude " + latitude + ", jd " + jd, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void moonRiseSetMatchesAltitudeRoots() {
+        double[] scratch = new double[2];
+        double[] result = new double[2];
+        double horizon = Math.sin(8.0 / 60.0 * Math.PI / 180);
+        double phi = 48.2;
+        double lambda = -16.37;
+        double sinPhi = Math.sin(phi * Math.PI / 180);
+        double cosPhi = Math.cos(phi * Math.PI / 180);
+
+        // every third day of 2016 as modified julian date
+        for (double mjd = 57388; mjd < 57754; mjd += 3) {
+            AstroMath.moonRiseSet(mjd, lambda, phi, scratch, result);
+            for (int i = 0; i < 2; i++) {
+                double hour = result[i];
+                if (hour == -1) {
+                    continue;
+                }
+                assertTrue(hour >= 0 && hour <= 24);
+                // the altitude must cross the horizon within two minutes around the root
+                double before = AstroMath.moonSinAltitude(mjd + hour / 24 - 2 * ONE_MINUTE, lambda, sinPhi, cosPhi,
+                        scratch) - horizon;
+                double after = AstroMath.moonSinAltitude(mjd + hour / 24 + 2 * ONE_MINUTE, lambda, sinPhi, cosPhi,
+                        scratch) - horizon;
+                assertTrue("mjd " + mjd + ", hour " + hour, before * after <= 0);
+                if (i == AstroMath.RISE) {
+                    assertTrue(after > before);
+                } else {
+                    assertTrue(after < before);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void moonRiseSetFindsScannedCrossings() {
+        double[] scratch = new double[2];
+        double[] result = new double[2];
+        double horizon = Math.sin(8.0 / 60.0 * Math.PI / 180);
+        // near the polar circle, the moon often just touches the horizon
+        double phi = 65.0;
+        double lambda = -25.0;
+        double sinPhi = Math.sin(phi * Math.PI / 180);
+        double cosPhi = Math.cos(phi * Math.PI / 180);
+
+        for (double mjd = 57388; mjd < 57754; mjd += 1) {
+            AstroMath.moonRiseSet(mjd, lambda, phi, scratch, result);
+            double rise = -1;
+            double set = -1;
+            double previous = AstroMath.moonSinAltitude(mjd, lambda, sinPhi, cosPhi, scratch) - horizon;
+            for (int minute = 1; minute <= 1440; minute++) {
+                double current = AstroMath.moonSinAltitude(mjd + minute * ONE_MINUTE, lambda, sinPhi, cosPhi,
+                        scratch) - horizon;
+                if (previous < 0 && current >= 0 && rise == -1) {
+                    rise = (minute - 0.5) / 60;
+                } else if (previous >= 0 && current < 0 && set == -1) {
+                    set = (minute - 0.5) / 60;
+                }
+                previous = current;
+            }
+            assertEquals("mjd " + mjd, rise == -1, result[AstroMath.RISE] == -1);
+            assertEquals("mjd " + mjd, set == -1, result[AstroMath.SET] == -1);
+            if (rise != -1) {
+                assertEquals(rise, result[AstroMath.RISE], 1.0 / 60);
+            }
+            if (set != -1) {
+                assertEquals(set, result[AstroMath.SET], 1.0 / 60);
+            }
+        }
+    }
+
+    @Test
+    public void moonEquatorialRange() {
+        double[] result = new double[2];
+        for (double t = 0.1; t < 0.2; t += 0.001) {
+            AstroMath.moonEquatorial(t, result, 0);
+            assertTrue(Math.abs(result[AstroMath.DECLINATION]) < 29);
+            assertTrue(result[AstroMath.RIGHT_ASCENSION] >= 0 && result[AstroMath.RIGHT_ASCENSION] < 24);
+        }
+    }
+
+    /**
+     * Reference implementation, scans the period in one minute steps.
+     */
+    private boolean isSunUpAllDayScan(double jdStart, double jdEnd, double latitude, double longitude,
+            double[] scratch) {
+        for (double jd = jdStart; jd <= jdEnd; jd += ONE_MINUTE) {
+            AstroMath.sunPosition(jd, latitude, longitude, scratch, 0);
+            if (scratch[AstroMath.ELEVATION] < -0.83) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -8,14 +8,7 @@
  */
 package org.openhab.binding.astro.handler;
 
-import static org.quartz.JobBuilder.newJob;
-import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
-import static org.quartz.TriggerBuilder.newTrigger;
-import static org.quartz.impl.matchers.GroupMatcher.jobGroupEquals;
-
-import java.util.Date;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.Calendar;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
@@ -28,18 +21,10 @@ import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.binding.astro.internal.config.AstroThingConfig;
-import org.openhab.binding.astro.internal.job.DailyJob;
-import org.openhab.binding.astro.internal.job.PositionalJob;
 import org.openhab.binding.astro.internal.model.Planet;
+import org.openhab.binding.astro.internal.timeline.AstroLocation;
+import org.openhab.binding.astro.internal.timeline.AstroTimeline;
 import org.openhab.binding.astro.internal.util.PropertyUtils;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.JobKey;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.Trigger;
-import org.quartz.impl.StdSchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,14 +35,13 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class AstroThingHandler extends BaseThingHandler {
     private static final Logger logger = LoggerFactory.getLogger(AstroThingHandler.class);
-    private Scheduler quartzScheduler;
-    private ScheduledFuture<?> schedulerFuture;
+    private final AstroTimeline timeline;
     private int linkedPositionalChannels = 0;
     protected AstroThingConfig thingConfig;
-    private Object schedulerLock = new Object();
 
-    public AstroThingHandler(Thing thing) {
+    public AstroThingHandler(Thing thing, AstroTimeline timeline) {
         super(thing);
+        this.timeline = timeline;
     }
 
     /**
@@ -93,7 +77,7 @@ public abstract class AstroThingHandler extends BaseThingHandler {
         if (validConfig) {
             logger.debug(thingConfig.toString());
             updateStatus(ThingStatus.ONLINE);
-            restartJobs();
+            timeline.register(this);
         } else {
             updateStatus(ThingStatus.OFFLINE);
         }
@@ -106,12 +90,7 @@ public abstract class AstroThingHandler extends BaseThingHandler {
     @Override
     public void dispose() {
         logger.debug("Disposing thing {}", getThing().getUID());
-        if (schedulerFuture != null && !schedulerFuture.isCancelled()) {
-            schedulerFuture.cancel(true);
-            schedulerFuture = null;
-        }
-        stopJobs();
-        quartzScheduler = null;
+        timeline.unregister(this);
         logger.debug("Thing {} disposed", getThing().getUID());
     }
 
@@ -160,91 +139,6 @@ public abstract class AstroThingHandler extends BaseThingHandler {
         }
     }
 
-    /**
-     * Schedules a positional and a daily job at midnight for astro calculation and starts it immediately too. Removes
-     * already scheduled jobs first.
-     */
-    private void restartJobs() {
-        logger.debug("Restarting jobs for thing {}", getThing().getUID());
-
-        if (schedulerFuture != null && !schedulerFuture.isCancelled()) {
-            schedulerFuture.cancel(true);
-        }
-
-        schedulerFuture = scheduler.schedule(new Runnable() {
-            @Override
-            public void run() {
-                stopJobs();
-
-                try {
-                    synchronized (schedulerLock) {
-                        if (quartzScheduler == null) {
-                            quartzScheduler = StdSchedulerFactory.getDefaultScheduler();
-                        }
-
-                        if (getThing().getStatus() == ThingStatus.ONLINE) {
-                            String thingUid = getThing().getUID().toString();
-                            JobDataMap jobDataMap = new JobDataMap();
-                            jobDataMap.put("thingUid", thingUid);
-
-                            // dailyJob
-                            String jobIdentity = DailyJob.class.getSimpleName();
-                            Trigger trigger = newTrigger().withIdentity("dailyJobTrigger", thingUid)
-                                    .withSchedule(CronScheduleBuilder.cronSchedule("0 0 0 * * ?")).build();
-                            JobDetail jobDetail = newJob(DailyJob.class).withIdentity(jobIdentity, thingUid)
-                                    .usingJobData(jobDataMap).build();
-                            quartzScheduler.scheduleJob(jobDetail, trigger);
-                            logger.info("Scheduled astro {} at midnight for thing {}", jobIdentity, thingUid);
-
-                            // startupJob
-                            trigger = newTrigger().withIdentity("dailyJobStartupTrigger", thingUid).startNow().build();
-                            jobDetail = newJob(DailyJob.class).withIdentity("dailyJobStartup", thingUid)
-                                    .usingJobData(jobDataMap).build();
-                            quartzScheduler.scheduleJob(jobDetail, trigger);
-
-                            if (isPositionalChannelLinked()) {
-                                // positional intervalJob
-                                jobIdentity = PositionalJob.class.getSimpleName();
-                                Date start = new Date(System.currentTimeMillis() + (thingConfig.getInterval()) * 1000);
-                                trigger = newTrigger().withIdentity("positionalJobTrigger", thingUid).startAt(start)
-                                        .withSchedule(simpleSchedule().repeatForever()
-                                                .withIntervalInSeconds(thingConfig.getInterval()))
-                                        .build();
-                                jobDetail = newJob(PositionalJob.class).withIdentity(jobIdentity, thingUid)
-                                        .usingJobData(jobDataMap).build();
-                                quartzScheduler.scheduleJob(jobDetail, trigger);
-                                logger.info("Scheduled astro {} with interval of {} seconds for thing {}", jobIdentity,
-                                        thingConfig.getInterval(), thingUid);
-                            }
-                        }
-                    }
-                } catch (SchedulerException ex) {
-                    logger.error(ex.getMessage(), ex);
-                }
-            }
-        }, 2000, TimeUnit.MILLISECONDS);
-    }
-
-    /**
-     * Stops all jobs for this thing.
-     */
-    private void stopJobs() {
-        logger.debug("Stopping jobs for thing {}", getThing().getUID());
-        synchronized (schedulerLock) {
-            if (quartzScheduler != null) {
-                try {
-                    String thingUid = getThing().getUID().toString();
-                    for (JobKey jobKey : quartzScheduler.getJobKeys(jobGroupEquals(thingUid))) {
-                        logger.info("Deleting astro {} for thing '{}'", jobKey.getName(), thingUid);
-                        quartzScheduler.deleteJob(jobKey);
-                    }
-                } catch (SchedulerException ex) {
-                    logger.error(ex.getMessage(), ex);
-                }
-            }
-        }
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -263,14 +157,15 @@ public abstract class AstroThingHandler extends BaseThingHandler {
     }
 
     /**
-     * Counts positional channels and restarts astro jobs.
+     * Counts positional channels and updates the registration in the astro timeline.
      */
     private void linkedChannelChange(ChannelUID channelUID, int step) {
         if (ArrayUtils.contains(getPositionalChannelIds(), channelUID.getId())) {
             int oldValue = linkedPositionalChannels;
             linkedPositionalChannels += step;
-            if ((oldValue == 0 && linkedPositionalChannels > 0) || (oldValue > 0 && linkedPositionalChannels == 0)) {
-                restartJobs();
+            if (((oldValue == 0 && linkedPositionalChannels > 0) || (oldValue > 0 && linkedPositionalChannels == 0))
+                    && getThing().getStatus() == ThingStatus.ONLINE) {
+                timeline.register(this);
             }
         }
     }
@@ -278,7 +173,7 @@ public abstract class AstroThingHandler extends BaseThingHandler {
     /**
      * Returns true, if at least one positional channel is linked.
      */
-    private boolean isPositionalChannelLinked() {
+    public boolean isPositionalChannelLinked() {
         for (Channel channel : getThing().getChannels()) {
             if (ArrayUtils.contains(getPositionalChannelIds(), channel.getUID().getId())
                     && isLinked(channel.getUID().getId())) {
@@ -289,14 +184,21 @@ public abstract class AstroThingHandler extends BaseThingHandler {
     }
 
     /**
-     * Calculates and publishes the daily astro data.
+     * Returns the thing configuration.
+     */
+    public AstroThingConfig getThingConfig() {
+        return thingConfig;
+    }
+
+    /**
+     * Takes over the daily astro data of the location and publishes it.
      */
-    public abstract void publishDailyInfo();
+    public abstract void publishDailyInfo(AstroLocation location, Calendar calendar);
 
     /**
-     * Calculates and publishes the interval astro data.
+     * Takes over the interval astro data of the location and publishes it.
      */
-    public abstract void publishPositionalInfo();
+    public abstract void publishPositionalInfo(AstroLocation location, Calendar calendar);
 
     /**
      * Returns the planet.
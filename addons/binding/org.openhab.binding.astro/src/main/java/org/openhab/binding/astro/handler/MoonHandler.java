@@ -15,9 +15,10 @@ import java.util.Set;
 
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
-import org.openhab.binding.astro.internal.calc.MoonCalc;
 import org.openhab.binding.astro.internal.model.Moon;
 import org.openhab.binding.astro.internal.model.Planet;
+import org.openhab.binding.astro.internal.timeline.AstroLocation;
+import org.openhab.binding.astro.internal.timeline.AstroTimeline;
 
 import com.google.common.collect.Sets;
 
@@ -31,28 +32,28 @@ public class MoonHandler extends AstroThingHandler {
 
     private String[] positionalChannelIds = new String[] { "phase#name", "phase#age", "phase#illumination", "position#azimuth", "position#elevation",
             "zodiac#sign" };
-    private MoonCalc moonCalc = new MoonCalc();
     private Moon moon;
 
-    public MoonHandler(Thing thing) {
-        super(thing);
+    public MoonHandler(Thing thing, AstroTimeline timeline) {
+        super(thing, timeline);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void publishDailyInfo() {
-        moon = moonCalc.getMoonInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude());
-        publishPositionalInfo();
+    public void publishDailyInfo(AstroLocation location, Calendar calendar) {
+        moon = location.getMoon();
+        publishPositionalInfo(location, calendar);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void publishPositionalInfo() {
-        moonCalc.setPositionalInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude(), moon);
+    public void publishPositionalInfo(AstroLocation location, Calendar calendar) {
+        location.updateMoonPosition(calendar);
+        moon = location.getMoon();
         publishPlanet();
     }
 
@@ -15,9 +15,10 @@ import java.util.Set;
 
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
-import org.openhab.binding.astro.internal.calc.SunCalc;
 import org.openhab.binding.astro.internal.model.Planet;
 import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.timeline.AstroLocation;
+import org.openhab.binding.astro.internal.timeline.AstroTimeline;
 
 import com.google.common.collect.Sets;
 
@@ -30,28 +31,28 @@ public class SunHandler extends AstroThingHandler {
     public static final Set<ThingTypeUID> SUPPORTED_THING_TYPES = Sets.newHashSet(THING_TYPE_SUN);
 
     private String[] positionalChannelIds = new String[] { "position#azimuth", "position#elevation" };
-    private SunCalc sunCalc = new SunCalc();
     private Sun sun;
 
-    public SunHandler(Thing thing) {
-        super(thing);
+    public SunHandler(Thing thing, AstroTimeline timeline) {
+        super(thing, timeline);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void publishDailyInfo() {
-        sun = sunCalc.getSunInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude());
-        publishPositionalInfo();
+    public void publishDailyInfo(AstroLocation location, Calendar calendar) {
+        sun = location.getSun();
+        publishPositionalInfo(location, calendar);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void publishPositionalInfo() {
-        sunCalc.setPositionalInfo(Calendar.getInstance(), thingConfig.getLatitude(), thingConfig.getLongitude(), sun);
+    public void publishPositionalInfo(AstroLocation location, Calendar calendar) {
+        location.updateSunPosition(calendar);
+        sun = location.getSun();
         publishPlanet();
     }
 
@@ -11,17 +11,16 @@ package org.openhab.binding.astro.internal;
 import static org.openhab.binding.astro.AstroBindingConstants.THING_TYPE_MOON;
 import static org.openhab.binding.astro.AstroBindingConstants.THING_TYPE_SUN;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
 import org.eclipse.smarthome.core.thing.binding.ThingHandler;
-import org.openhab.binding.astro.handler.AstroThingHandler;
 import org.openhab.binding.astro.handler.MoonHandler;
 import org.openhab.binding.astro.handler.SunHandler;
+import org.openhab.binding.astro.internal.timeline.AstroTimeline;
+import org.osgi.service.component.ComponentContext;
 
 import com.google.common.collect.Sets;
 
@@ -32,7 +31,7 @@ import com.google.common.collect.Sets;
  */
 public class AstroHandlerFactory extends BaseThingHandlerFactory {
     public static final Set<ThingTypeUID> SUPPORTED_THING_TYPES = Sets.union(SunHandler.SUPPORTED_THING_TYPES, MoonHandler.SUPPORTED_THING_TYPES);
-    private static final Map<String, AstroThingHandler> astroThingHandlers = new HashMap<String, AstroThingHandler>();
+    private final AstroTimeline timeline = new AstroTimeline();
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -43,25 +42,17 @@ public class AstroHandlerFactory extends BaseThingHandlerFactory {
     protected ThingHandler createHandler(Thing thing) {
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
-        AstroThingHandler thingHandler = null;
         if (thingTypeUID.equals(THING_TYPE_SUN)) {
-            thingHandler = new SunHandler(thing);
+            return new SunHandler(thing, timeline);
         } else if (thingTypeUID.equals(THING_TYPE_MOON)) {
-            thingHandler = new MoonHandler(thing);
+            return new MoonHandler(thing, timeline);
         }
-        if (thingHandler != null) {
-            astroThingHandlers.put(thing.getUID().toString(), thingHandler);
-        }
-        return thingHandler;
+        return null;
     }
 
     @Override
-    public void unregisterHandler(Thing thing) {
-        super.unregisterHandler(thing);
-        astroThingHandlers.remove(thing.getUID().toString());
-    }
-
-    public static AstroThingHandler getHandler(String thingUid) {
-        return astroThingHandlers.get(thingUid);
+    protected void deactivate(ComponentContext componentContext) {
+        super.deactivate(componentContext);
+        timeline.dispose();
     }
 }
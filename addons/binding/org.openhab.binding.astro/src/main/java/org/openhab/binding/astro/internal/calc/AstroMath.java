@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.calc;
+
+/**
+ * Primitive calculation kernel for sun and moon positions on julian dates. The methods don't allocate objects, results
+ * are written into arrays supplied by the caller, which can be reused across calls. The batch methods evaluate many
+ * timestamps for one location or many locations for one timestamp and share the common part of the calculation.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ * @author agent - Allocation-free kernel extracted from SunCalc and MoonCalc
+ * @see based on the calculations of http://www.suncalc.net and
+ *      http://www.computus.de/mondphase/mondphase.htm
+ */
+public class AstroMath {
+    private static final double DEG2RAD = Math.PI / 180;
+
+    static final double J2000 = 2451545.0;
+    static final double M0 = 357.5291 * DEG2RAD;
+    static final double M1 = 0.98560028 * DEG2RAD;
+    static final double C1 = 1.9148 * DEG2RAD;
+    static final double C2 = 0.0200 * DEG2RAD;
+    static final double C3 = 0.0003 * DEG2RAD;
+    static final double P = 102.9372 * DEG2RAD;
+    static final double E = 23.45 * DEG2RAD;
+    private static final double SIN_E = Math.sin(E);
+    private static final double COS_E = Math.cos(E);
+    private static final double TH0 = 280.1600 * DEG2RAD;
+    private static final double TH1 = 360.9856235 * DEG2RAD;
+
+    // mean daily motion of the sun hour angle, sidereal rotation minus the motion of the right ascension
+    private static final double HOUR_ANGLE_RATE = TH1 - 2 * Math.PI / 365.2422;
+
+    private static final double MOON_HORIZON = Math.sin(8.0 / 60.0 * DEG2RAD);
+
+    // mean daily motion of the moon hour angle in degrees, sidereal rotation minus the motion of the right ascension
+    private static final double MOON_HOUR_ANGLE_RATE = 360.9856235 - 360 / 27.321582;
+
+    // moonrise and moonset are refined to one second
+    private static final double MOON_ROOT_TOLERANCE = 1 / 86400.0;
+
+    /**
+     * Index of the azimuth in position results.
+     */
+    public static final int AZIMUTH = 0;
+
+    /**
+     * Index of the elevation in position results.
+     */
+    public static final int ELEVATION = 1;
+
+    /**
+     * Index of the moon declination in equatorial results.
+     */
+    public static final int DECLINATION = 0;
+
+    /**
+     * Index of the moon right ascension in equatorial results.
+     */
+    public static final int RIGHT_ASCENSION = 1;
+
+    /**
+     * Index of the moonrise in rise/set results.
+     */
+    public static final int RISE = 0;
+
+    /**
+     * Index of the moonset in rise/set results.
+     */
+    public static final int SET = 1;
+
+    /**
+     * Calculates the sun position in degrees at the julian date and writes azimuth and elevation to the result array
+     * at the offset.
+     */
+    public static void sunPosition(double jd, double latitude, double longitude, double[] result, int offset) {
+        double phi = latitude * DEG2RAD;
+        sunPosition(jd, Math.sin(phi), Math.cos(phi), -longitude * DEG2RAD, result, offset);
+    }
+
+    /**
+     * Calculates the sun positions for count julian dates at one location, azimuth and elevation of the julian date
+     * with index i are written to the result array at 2 * i.
+     */
+    public static void sunPositions(double[] jds, int count, double latitude, double longitude, double[] result) {
+        double phi = latitude * DEG2RAD;
+        double sinPhi = Math.sin(phi);
+        double cosPhi = Math.cos(phi);
+        double lw = -longitude * DEG2RAD;
+        for (int i = 0; i < count; i++) {
+            sunPosition(jds[i], sinPhi, cosPhi, lw, result, 2 * i);
+        }
+    }
+
+    /**
+     * Calculates the sun positions for count locations at one julian date, azimuth and elevation of the location with
+     * index i are written to the result array at 2 * i.
+     */
+    public static void sunPositions(double jd, double[] latitudes, double[] longitudes, int count, double[] result) {
+        double lsun = getEclipticLongitude(getSolarMeanAnomaly(jd));
+        double sinLsun = Math.sin(lsun);
+        double d = Math.asin(sinLsun * SIN_E);
+        double a = Math.atan2(sinLsun * COS_E, Math.cos(lsun));
+        for (int i = 0; i < count; i++) {
+            double phi = latitudes[i] * DEG2RAD;
+            sunHorizontal(jd, d, a, Math.sin(phi), Math.cos(phi), -longitudes[i] * DEG2RAD, result, 2 * i);
+        }
+    }
+
+    /**
+     * Returns true, if the sun elevation doesn't fall below the horizon (in degrees) between the two julian dates. The
+     * minimum is either at one of the bounds or at the lower culmination, which is calculated from the hour angle
+     * instead of scanning the whole period.
+     */
+    public static boolean isSunUpAllDay(double jdStart, double jdEnd, double latitude, double longitude,
+            double horizon, double[] scratch) {
+        double phi = latitude * DEG2RAD;
+        double sinPhi = Math.sin(phi);
+        double cosPhi = Math.cos(phi);
+        double lw = -longitude * DEG2RAD;
+
+        sunPosition(jdStart, sinPhi, cosPhi, lw, scratch, 0);
+        if (scratch[ELEVATION] < horizon) {
+            return false;
+        }
+        sunPosition(jdEnd, sinPhi, cosPhi, lw, scratch, 0);
+        if (scratch[ELEVATION] < horizon) {
+            return false;
+        }
+
+        // hour angle at the start, the lower culmination is at an hour angle of PI
+        double lsun = getEclipticLongitude(getSolarMeanAnomaly(jdStart));
+        double a = Math.atan2(Math.sin(lsun) * COS_E, Math.cos(lsun));
+        double h = TH0 + TH1 * (jdStart - J2000) - lw - a;
+        double jd = jdStart + mod2Pi(Math.PI - h) / HOUR_ANGLE_RATE;
+        while (jd <= jdEnd) {
+            sunPosition(jd, sinPhi, cosPhi, lw, scratch, 0);
+            if (scratch[ELEVATION] < horizon) {
+                return false;
+            }
+            jd += 2 * Math.PI / HOUR_ANGLE_RATE;
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the geocentric declination (degrees) and right ascension (hours) of the moon, t is the time in julian
+     * centuries since J2000.
+     */
+    public static void moonEquatorial(double t, double[] result, int offset) {
+        double p2 = 6.283185307;
+        double arc = 206264.8062;
+        double coseps = .91748;
+        double sineps = .39778;
+        double lo = frac(.606433 + 1336.855225 * t);
+        double l = p2 * frac(.374897 + 1325.55241 * t);
+        double ls = p2 * frac(.993133 + 99.997361 * t);
+        double d = p2 * frac(.827361 + 1236.853086 * t);
+        double f = p2 * frac(.259086 + 1342.227825 * t);
+        double dl = 22640 * Math.sin(l) - 4586 * Math.sin(l - 2 * d) + 2370 * Math.sin(2 * d) + 769 * Math.sin(2 * l)
+                - 668 * Math.sin(ls) - 412 * Math.sin(2 * f) - 212 * Math.sin(2 * l - 2 * d)
+                - 206 * Math.sin(l + ls - 2 * d) + 192 * Math.sin(l + 2 * d) - 165 * Math.sin(ls - 2 * d)
+                - 125 * Math.sin(d) - 110 * Math.sin(l + ls) + 148 * Math.sin(l - ls) - 55 * Math.sin(2 * f - 2 * d);
+        double s = f + (dl + 412 * Math.sin(2 * f) + 541 * Math.sin(ls)) / arc;
+        double h = f - 2 * d;
+        double n = -526 * Math.sin(h) + 44 * Math.sin(l + h) - 31 * Math.sin(-l + h) - 23 * Math.sin(ls + h)
+                + 11 * Math.sin(-ls + h) - 25 * Math.sin(-2 * l + f) + 21 * Math.sin(-l + f);
+        double lmoon = p2 * frac(lo + dl / 1296000);
+        double bmoon = (18520 * Math.sin(s) + n) / arc;
+        double cb = Math.cos(bmoon);
+        double x = cb * Math.cos(lmoon);
+        double v = cb * Math.sin(lmoon);
+        double w = Math.sin(bmoon);
+        double y = coseps * v - sineps * w;
+        double z = sineps * v + coseps * w;
+        double rho = Math.sqrt(1 - z * z);
+        double dec = (360 / p2) * Math.atan(z / rho);
+        double ra = (48 / p2) * Math.atan(y / (x + rho));
+        if (ra < 0) {
+            ra += 24;
+        }
+        result[offset + DECLINATION] = dec;
+        result[offset + RIGHT_ASCENSION] = ra;
+    }
+
+    /**
+     * Returns the sine of the moon altitude at the modified julian date, lambda is the western longitude in degrees.
+     * The scratch array needs at least two elements.
+     */
+    public static double moonSinAltitude(double mjd, double lambda, double sinPhi, double cosPhi, double[] scratch) {
+        double t = (mjd - 51544.5) / 36525.0;
+        moonEquatorial(t, scratch, 0);
+        double tau = 15.0 * (localMeanSiderealTime(mjd, lambda) - scratch[RIGHT_ASCENSION]);
+        return sinPhi * sin(scratch[DECLINATION]) + cosPhi * cos(scratch[DECLINATION]) * cos(tau);
+    }
+
+    /**
+     * Calculates moonrise and moonset in hours after the modified julian date. The day is split at the upper and lower
+     * culminations of the moon, the altitude is monotonic between them, so every horizon crossing is bracketed by a
+     * sign change and refined by bisection. A value of -1 means there is no rise or set within the day.
+     */
+    public static void moonRiseSet(double mjd, double lambda, double phi, double[] scratch, double[] result) {
+        double sinPhi = sin(phi);
+        double cosPhi = cos(phi);
+
+        double utrise = -1;
+        double utset = -1;
+        double start = mjd;
+        double yStart = moonSinAltitude(start, lambda, sinPhi, cosPhi, scratch) - MOON_HORIZON;
+        double culmination = nextMoonCulmination(start, lambda, scratch);
+        while (start < mjd + 1 && (utrise == -1 || utset == -1)) {
+            double end = Math.min(culmination, mjd + 1);
+            double yEnd = moonSinAltitude(end, lambda, sinPhi, cosPhi, scratch) - MOON_HORIZON;
+            if ((yStart < 0) != (yEnd < 0)) {
+                boolean rising = yStart < 0;
+                double hour = (moonHorizonCrossing(start, end, rising, lambda, sinPhi, cosPhi, scratch) - mjd) * 24;
+                if (rising && utrise == -1) {
+                    utrise = hour;
+                } else if (!rising && utset == -1) {
+                    utset = hour;
+                }
+            }
+            start = end;
+            yStart = yEnd;
+            // culminations are about 12.4 hours apart, skip the one just passed
+            culmination = nextMoonCulmination(end + 1 / 24.0, lambda, scratch);
+        }
+
+        result[RISE] = utrise;
+        result[SET] = utset;
+    }
+
+    /**
+     * Returns the modified julian date of the next upper or lower culmination of the moon after the modified julian
+     * date, where the hour angle is a multiple of 180 degrees.
+     */
+    private static double nextMoonCulmination(double mjd, double lambda, double[] scratch) {
+        double culmination = mjd + mod180(-moonHourAngle(mjd, lambda, scratch)) / MOON_HOUR_ANGLE_RATE;
+        // correct the mean rate by the actual motion of the right ascension
+        for (int i = 0; i < 2; i++) {
+            double tau = mod180(moonHourAngle(culmination, lambda, scratch) + 90) - 90;
+            culmination -= tau / MOON_HOUR_ANGLE_RATE;
+        }
+        return culmination > mjd ? culmination : culmination + 180 / MOON_HOUR_ANGLE_RATE;
+    }
+
+    /**
+     * Returns the hour angle of the moon in degrees at the modified julian date.
+     */
+    private static double moonHourAngle(double mjd, double lambda, double[] scratch) {
+        moonEquatorial((mjd - 51544.5) / 36525.0, scratch, 0);
+        return 15.0 * (localMeanSiderealTime(mjd, lambda) - scratch[RIGHT_ASCENSION]);
+    }
+
+    /**
+     * Returns the modified julian date where the moon altitude crosses the horizon between start and end, the
+     * altitude is below the horizon at the start if the moon is rising.
+     */
+    private static double moonHorizonCrossing(double start, double end, boolean rising, double lambda, double sinPhi,
+            double cosPhi, double[] scratch) {
+        double low = start;
+        double high = end;
+        while (high - low > MOON_ROOT_TOLERANCE) {
+            double middle = .5 * (low + high);
+            boolean below = moonSinAltitude(middle, lambda, sinPhi, cosPhi, scratch) < MOON_HORIZON;
+            if (below == rising) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return .5 * (low + high);
+    }
+
+    private static double mod180(double x) {
+        return x - Math.floor(x / 180) * 180;
+    }
+
+    /**
+     * Returns the local mean sidereal time in hours, lambda is the western longitude in degrees.
+     */
+    public static double localMeanSiderealTime(double mjd, double lambda) {
+        double mjdo = Math.floor(mjd);
+        double ut = (mjd - mjdo) * 24.0;
+        double t = (mjdo - 51544.5) / 36525.0;
+        double gmst = 6.697374558 + 1.0027379093 * ut + (8640184.812866 + (.093104 - .0000062 * t) * t) * t / 3600.0;
+        return 24.0 * frac((gmst - lambda / 15.0) / 24.0);
+    }
+
+    private static void sunPosition(double jd, double sinPhi, double cosPhi, double lw, double[] result, int offset) {
+        double lsun = getEclipticLongitude(getSolarMeanAnomaly(jd));
+        double sinLsun = Math.sin(lsun);
+        double d = Math.asin(sinLsun * SIN_E);
+        double a = Math.atan2(sinLsun * COS_E, Math.cos(lsun));
+        sunHorizontal(jd, d, a, sinPhi, cosPhi, lw, result, offset);
+    }
+
+    private static void sunHorizontal(double jd, double d, double a, double sinPhi, double cosPhi, double lw,
+            double[] result, int offset) {
+        double th = TH0 + TH1 * (jd - J2000) - lw;
+        double h = th - a;
+        double cosH = Math.cos(h);
+        result[offset + AZIMUTH] = Math.atan2(Math.sin(h), cosH * sinPhi - Math.tan(d) * cosPhi) / DEG2RAD + 180;
+        result[offset + ELEVATION] = Math.asin(sinPhi * Math.sin(d) + cosPhi * Math.cos(d) * cosH) / DEG2RAD;
+    }
+
+    static double getSolarMeanAnomaly(double jd) {
+        return M0 + M1 * (jd - J2000);
+    }
+
+    static double getEclipticLongitude(double m) {
+        double c = C1 * Math.sin(m) + C2 * Math.sin(2 * m) + C3 * Math.sin(3 * m);
+        return m + P + c + Math.PI;
+    }
+
+    private static double mod2Pi(double x) {
+        return x - Math.floor(x / (2 * Math.PI)) * 2 * Math.PI;
+    }
+
+    private static double frac(double x) {
+        x = x - (int) (x);
+        if (x < 0) {
+            x += 1;
+        }
+        return x;
+    }
+
+    private static double sin(double x) {
+        return Math.sin(x * DEG2RAD);
+    }
+
+    private static double cos(double x) {
+        return Math.cos(x * DEG2RAD);
+    }
+}
@@ -44,6 +44,13 @@ public class MoonCalc {
 	protected static final int ECLIPSE_MODE_TOTAL = 1;
 	protected static final int ECLIPSE_MODE_RING = 2;
 
+	// reused scratch arrays, a MoonCalc instance must not be used concurrently
+	private final double[] scratch = new double[2];
+	private final double[] riseSet = new double[2];
+	private final double[] raDec = new double[2];
+	private final double[] raDecTopo = new double[2];
+	private final double[] azAlt = new double[2];
+
 	/**
 	 * Calculates all moon data at the specified coordinates
 	 */
@@ -156,41 +163,10 @@ public class MoonCalc {
 		double moonJd = Math.floor(DateTimeUtils.midnightDateToJulianDate(calendar)) - 2400000.0;
 		moonJd -= ((calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET)) / 60000.0) / 1440.0;
 
-		double sphi = SN(phi);
-		double cphi = CS(phi);
-		double sinho = SN(8.0 / 60.0);
+		AstroMath.moonRiseSet(moonJd, lambda, phi, scratch, riseSet);
 
-		int hour = 1;
-		double utrise = -1;
-		double utset = -1;
-		do {
-			double yminus = SINALT(moonJd, hour - 1, lambda, cphi, sphi) - sinho;
-			double yo = SINALT(moonJd, hour, lambda, cphi, sphi) - sinho;
-			double yplus = SINALT(moonJd, hour + 1, lambda, cphi, sphi) - sinho;
-			double[] quadRet = QUAD(yminus, yo, yplus);
-			if (quadRet[3] == 1) {
-				if (yminus < 0) {
-					utrise = hour + quadRet[1];
-				} else {
-					utset = hour + quadRet[1];
-				}
-			}
-			if (quadRet[3] == 2) {
-				if (quadRet[0] < 0) {
-					utrise = hour + quadRet[2];
-					utset = hour + quadRet[1];
-				} else {
-					utrise = hour + quadRet[1];
-					utset = hour + quadRet[2];
-				}
-			}
-			yminus = yplus;
-			hour += 2;
-
-		} while (hour < 25 && (utrise == -1 || utset == -1));
-
-		double rise = prepareTime(utrise);
-		double set = prepareTime(utset);
+		double rise = prepareTime(riseSet[AstroMath.RISE]);
+		double set = prepareTime(riseSet[AstroMath.SET]);
 
 		return new double[] { rise, set };
 	}
@@ -479,41 +455,6 @@ public class MoonCalc {
 		return sr;
 	}
 
-	public double[] calcMoon(double t) {
-		double p2 = 6.283185307;
-		double arc = 206264.8062;
-		double coseps = .91748;
-		double sineps = .39778;
-		double lo = FRAK(.606433 + 1336.855225 * t);
-		double l = p2 * FRAK(.374897 + 1325.55241 * t);
-		double ls = p2 * FRAK(.993133 + 99.997361 * t);
-		double d = p2 * FRAK(.827361 + 1236.853086 * t);
-		double f = p2 * FRAK(.259086 + 1342.227825 * t);
-		double dl = 22640 * Math.sin(l) - 4586 * Math.sin(l - 2 * d) + 2370 * Math.sin(2 * d) + 769 * Math.sin(2 * l)
-				- 668 * Math.sin(ls) - 412 * Math.sin(2 * f) - 212 * Math.sin(2 * l - 2 * d) - 206
-				* Math.sin(l + ls - 2 * d) + 192 * Math.sin(l + 2 * d) - 165 * Math.sin(ls - 2 * d) - 125 * Math.sin(d)
-				- 110 * Math.sin(l + ls) + 148 * Math.sin(l - ls) - 55 * Math.sin(2 * f - 2 * d);
-		double s = f + (dl + 412 * Math.sin(2 * f) + 541 * Math.sin(ls)) / arc;
-		double h = f - 2 * d;
-		double n = -526 * Math.sin(h) + 44 * Math.sin(l + h) - 31 * Math.sin(-l + h) - 23 * Math.sin(ls + h) + 11
-				* Math.sin(-ls + h) - 25 * Math.sin(-2 * l + f) + 21 * Math.sin(-l + f);
-		double lmoon = p2 * FRAK(lo + dl / 1296000);
-		double bmoon = (18520 * Math.sin(s) + n) / arc;
-		double cb = Math.cos(bmoon);
-		double x = cb * Math.cos(lmoon);
-		double v = cb * Math.sin(lmoon);
-		double w = Math.sin(bmoon);
-		double y = coseps * v - sineps * w;
-		double z = sineps * v + coseps * w;
-		double rho = Math.sqrt(1 - z * z);
-		double dec = (360 / p2) * Math.atan(z / rho);
-		double ra = (48 / p2) * Math.atan(y / (x + rho));
-		if (ra < 0) {
-			ra += 24;
-		}
-		return new double[] { dec, ra };
-	}
-
 	private double CS(double x) {
 		return Math.cos(x * SunCalc.DEG2RAD);
 	}
@@ -522,57 +463,6 @@ public class MoonCalc {
 		return Math.sin(x * SunCalc.DEG2RAD);
 	}
 
-	private double SINALT(double moonJd, int hour, double lambda, double cphi, double sphi) {
-		double jdo = moonJd + hour / 24.0;
-		double t = (jdo - 51544.5) / 36525.0;
-		double decra[] = calcMoon(t);
-		double tau = 15.0 * (LMST(jdo, lambda) - decra[1]);
-		return sphi * SN(decra[0]) + cphi * CS(decra[0]) * CS(tau);
-	}
-
-	private double LMST(double moonJd, double lambda) {
-		double moonJdo = Math.floor(moonJd);
-		double ut = (moonJd - moonJdo) * 24.0;
-		double t = (moonJdo - 51544.5) / 36525.0;
-		double gmst = 6.697374558 + 1.0027379093 * ut + (8640184.812866 + (.093104 - .0000062 * t) * t) * t / 3600.0;
-		return 24.0 * FRAK((gmst - lambda / 15.0) / 24.0);
-	}
-
-	private double FRAK(double x) {
-		x = x - (int) (x);
-		if (x < 0) {
-			x += 1;
-		}
-		return x;
-	}
-
-	private double[] QUAD(double yminus, double yo, double yplus) {
-		double nz = 0;
-		double a = .5 * (yminus + yplus) - yo;
-		double b = .5 * (yplus - yminus);
-		double c = yo;
-		double xe = -b / (2 * a);
-		double ye = (a * xe + b) * xe + c;
-		double dis = b * b - 4 * a * c;
-		double zero1 = 0;
-		double zero2 = 0;
-		if (dis >= 0) {
-			double dx = .5 * Math.sqrt(dis) / Math.abs(a);
-			zero1 = xe - dx;
-			zero2 = xe + dx;
-			if (Math.abs(zero1) <= 1) {
-				nz += 1;
-			}
-			if (Math.abs(zero2) <= 1) {
-				nz += 1;
-			}
-			if (zero1 < -1) {
-				zero1 = zero2;
-			}
-		}
-		return new double[] { ye, zero1, zero2, nz };
-	}
-
 	private double var_o(double k, double t) {
 		return 124.7746 - 1.5637558 * k + .0020691 * t * t + .00000215 * t * t * t;
 	}
@@ -672,12 +562,12 @@ public class MoonCalc {
 		double moonLon = mod2Pi(n2 + Math.atan2(Math.sin(l3 - n2) * Math.cos(i), Math.cos(l3 - n2)));
 		double moonLat = Math.asin(Math.sin(l3 - n2) * Math.sin(i));
 
-		double raDec[] = ecl2Equ(moonLat, moonLon, julianDate);
+		ecl2Equ(moonLat, moonLon, julianDate, raDec);
 
 		double distance = (1 - 0.00301401) / (1 + 0.054900 * Math.cos(mMoon2 + ec)) * 384401;
 
-		double raDecTopo[] = geoEqu2TopoEqu(raDec, distance, lat, lmst);
-		double azAlt[] = equ2AzAlt(raDecTopo[0], raDecTopo[1], lat, lmst);
+		geoEqu2TopoEqu(raDec, distance, lat, lmst, raDecTopo);
+		equ2AzAlt(raDecTopo[0], raDecTopo[1], lat, lmst, azAlt);
 
 		Position position = moon.getPosition();
 		position.setAzimuth(azAlt[0] * SunCalc.RAD2DEG);
@@ -708,7 +598,7 @@ public class MoonCalc {
 	 * Transform equatorial coordinates (ra/dec) to horizonal coordinates
 	 * (azimuth/altitude).
 	 */
-	private double[] equ2AzAlt(double ra, double dec, double geolat, double lmst) {
+	private void equ2AzAlt(double ra, double dec, double geolat, double lmst, double[] azAlt) {
 		double cosdec = Math.cos(dec);
 		double sindec = Math.sin(dec);
 		double lha = lmst - ra;
@@ -722,14 +612,15 @@ public class MoonCalc {
 		double az = mod2Pi(Math.atan2(n, d));
 		double alt = Math.asin(sindec * sinlat + cosdec * coslha * coslat);
 
-		return new double[] { az, alt };
+		azAlt[0] = az;
+		azAlt[1] = alt;
 	}
 
 	/**
 	 * Transform ecliptical coordinates (lon/lat) to equatorial coordinates
 	 * (ra/dec)
 	 */
-	private double[] ecl2Equ(double lat, double lon, double jd) {
+	private void ecl2Equ(double lat, double lon, double jd, double[] raDec) {
 		double t = (jd - 2451545.0) / 36525.0;
 		double eps = (23. + (26 + 21.45 / 60.) / 60. + t * (-46.815 + t * (-0.0006 + t * 0.00181)) / 3600.)
 				* SunCalc.DEG2RAD;
@@ -740,14 +631,15 @@ public class MoonCalc {
 		double ra = mod2Pi(Math.atan2((sinlon * coseps - Math.tan(lat) * sineps), Math.cos(lon)));
 		double dec = Math.asin(Math.sin(lat) * coseps + Math.cos(lat) * sineps * sinlon);
 
-		return new double[] { ra, dec };
+		raDec[0] = ra;
+		raDec[1] = dec;
 	}
 
 	/**
 	 * Transform geocentric equatorial coordinates (rA/dec) to topocentric
 	 * equatorial coordinates.
 	 */
-	private double[] geoEqu2TopoEqu(double[] raDec, double distance, double observerLat, double lmst) {
+	private void geoEqu2TopoEqu(double[] raDec, double distance, double observerLat, double lmst, double[] raDecTopo) {
 		double cosdec = Math.cos(raDec[1]);
 		double sindec = Math.sin(raDec[1]);
 		double coslst = Math.cos(lmst);
@@ -764,7 +656,8 @@ public class MoonCalc {
 		double raTopo = mod2Pi(Math.atan2(y, x));
 		double decTopo = Math.asin(z / distanceTopocentric);
 
-		return new double[] { raTopo, decTopo };
+		raDecTopo[0] = raTopo;
+		raDecTopo[1] = decTopo;
 	}
 
 	/**
@@ -24,22 +24,14 @@ import org.openhab.binding.astro.internal.util.DateTimeUtils;
  * @see based on the calculations of http://www.suncalc.net
  */
 public class SunCalc {
-	private static final double J2000 = 2451545.0;
+	private static final double J2000 = AstroMath.J2000;
 	public static final double DEG2RAD = Math.PI / 180;
 	public static final double RAD2DEG = 180. / Math.PI;
 
-	private static final double M0 = 357.5291 * DEG2RAD;
-	private static final double M1 = 0.98560028 * DEG2RAD;
 	private static final double J0 = 0.0009;
 	private static final double J1 = 0.0053;
 	private static final double J2 = -0.0069;
-	private static final double C1 = 1.9148 * DEG2RAD;
-	private static final double C2 = 0.0200 * DEG2RAD;
-	private static final double C3 = 0.0003 * DEG2RAD;
-	private static final double P = 102.9372 * DEG2RAD;
-	private static final double E = 23.45 * DEG2RAD;
-	private static final double TH0 = 280.1600 * DEG2RAD;
-	private static final double TH1 = 360.9856235 * DEG2RAD;
+	private static final double E = AstroMath.E;
 	private static final double SUN_ANGLE = -0.83;
 	private static final double SUN_DIAMETER = 0.53 * DEG2RAD; // sun diameter
 	private static final double H0 = SUN_ANGLE * DEG2RAD;
@@ -47,47 +39,28 @@ public class SunCalc {
 	private static final double H2 = -12.0 * DEG2RAD; // astronomical twilight
 														// angle
 	private static final double H3 = -18.0 * DEG2RAD; // darkness angle
-	private static final double MINUTES_PER_DAY = 60 * 24;
-	private static final int CURVE_TIME_INTERVAL = 20; // 20 minutes
 	private static final double JD_ONE_MINUTE_FRACTION = 1.0 / 60 / 24;
 
+	private final double[] position = new double[2];
+
 	/**
 	 * Calculates the sun position (azimuth and elevation).
 	 */
 	public void setPositionalInfo(Calendar calendar, double latitude, double longitude, Sun sun) {
-		double lw = -longitude * DEG2RAD;
-		double phi = latitude * DEG2RAD;
-
-		double j = DateTimeUtils.dateToJulianDate(calendar);
-		double m = getSolarMeanAnomaly(j);
-		double c = getEquationOfCenter(m);
-		double lsun = getEclipticLongitude(m, c);
-		double d = getSunDeclination(lsun);
-		double a = getRightAscension(lsun);
-		double th = getSiderealTime(j, lw);
+		AstroMath.sunPosition(DateTimeUtils.dateToJulianDate(calendar), latitude, longitude, position, 0);
 
-		double azimuth = getAzimuth(th, a, phi, d) / DEG2RAD;
-		double elevation = getElevation(th, a, phi, d) / DEG2RAD;
-
-		Position position = sun.getPosition();
-		position.setAzimuth(azimuth + 180);
-		position.setElevation(elevation);
+		Position sunPosition = sun.getPosition();
+		sunPosition.setAzimuth(position[AstroMath.AZIMUTH]);
+		sunPosition.setElevation(position[AstroMath.ELEVATION]);
 	}
 
 	/**
 	 * Returns true, if the sun is up all day (no rise and set).
 	 */
 	private boolean isSunUpAllDay(Calendar calendar, double latitude, double longitude) {
-		Calendar cal = DateTimeUtils.truncateToMidnight(calendar);
-		Sun sun = new Sun();
-		for (int minutes = 0; minutes <= MINUTES_PER_DAY; minutes += CURVE_TIME_INTERVAL) {
-			setPositionalInfo(cal, latitude, longitude, sun);
-			if (sun.getPosition().getElevation() < SUN_ANGLE) {
-				return false;
-			}
-			cal.add(Calendar.MINUTE, CURVE_TIME_INTERVAL);
-		}
-		return true;
+		double start = DateTimeUtils.midnightDateToJulianDate(calendar);
+		double end = DateTimeUtils.midnightDateToJulianDate(addDays(calendar, 1));
+		return AstroMath.isSunUpAllDay(start, end, latitude, longitude, SUN_ANGLE, position);
 	}
 
 	/**
@@ -104,8 +77,7 @@ public class SunCalc {
 		double n = getJulianCycle(j, lw);
 		double js = getApproxSolarTransit(0, lw, n);
 		double m = getSolarMeanAnomaly(js);
-		double c = getEquationOfCenter(m);
-		double lsun = getEclipticLongitude(m, c);
+		double lsun = getEclipticLongitude(m);
 		double d = getSunDeclination(lsun);
 		double jtransit = getSolarTransit(js, m, lsun);
 		double w0 = getHourAngle(H0, phi, d);
@@ -229,15 +201,11 @@ public class SunCalc {
 	}
 
 	private double getSolarMeanAnomaly(double js) {
-		return M0 + M1 * (js - J2000);
+		return AstroMath.getSolarMeanAnomaly(js);
 	}
 
-	private double getEquationOfCenter(double m) {
-		return C1 * Math.sin(m) + C2 * Math.sin(2 * m) + C3 * Math.sin(3 * m);
-	}
-
-	private double getEclipticLongitude(double m, double c) {
-		return m + P + c + Math.PI;
+	private double getEclipticLongitude(double m) {
+		return AstroMath.getEclipticLongitude(m);
 	}
 
 	private double getSolarTransit(double js, double m, double lsun) {
@@ -248,23 +216,6 @@ public class SunCalc {
 		return Math.asin(Math.sin(lsun) * Math.sin(E));
 	}
 
-	private double getRightAscension(double lsun) {
-		return Math.atan2(Math.sin(lsun) * Math.cos(E), Math.cos(lsun));
-	}
-
-	private double getSiderealTime(double j, double lw) {
-		return TH0 + TH1 * (j - J2000) - lw;
-	}
-
-	private double getAzimuth(double th, double a, double phi, double d) {
-		double H = th - a;
-		return Math.atan2(Math.sin(H), Math.cos(H) * Math.sin(phi) - Math.tan(d) * Math.cos(phi));
-	}
-
-	private double getElevation(double th, double a, double phi, double d) {
-		return Math.asin(Math.sin(phi) * Math.sin(d) + Math.cos(phi) * Math.cos(d) * Math.cos(th - a));
-	}
-
 	private double getHourAngle(double h, double phi, double d) {
 		return Math.acos((Math.sin(h) - Math.sin(phi) * Math.sin(d)) / (Math.cos(phi) * Math.cos(d)));
 	}
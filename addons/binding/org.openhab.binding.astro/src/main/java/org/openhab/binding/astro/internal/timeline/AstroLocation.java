@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.timeline;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.openhab.binding.astro.handler.AstroThingHandler;
+import org.openhab.binding.astro.internal.calc.MoonCalc;
+import org.openhab.binding.astro.internal.calc.SunCalc;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.Sun;
+
+/**
+ * Holds the astro data of one geolocation. The daily data is calculated once per day on first access and shared by
+ * all things with the same coordinates, positional data is calculated at most once per timestamp.
+ *
+ * @author agent - Initial contribution
+ */
+public class AstroLocation {
+    private final double latitude;
+    private final double longitude;
+
+    private final SunCalc sunCalc = new SunCalc();
+    private final MoonCalc moonCalc = new MoonCalc();
+
+    private Calendar calculationTime;
+    private Sun sun;
+    private Moon moon;
+    private long sunPositionTime = -1;
+    private long moonPositionTime = -1;
+
+    // timeline state, only accessed from the timeline thread
+    private final Set<AstroThingHandler> handlers = new LinkedHashSet<AstroThingHandler>();
+    private final Map<Integer, AstroTimeline.TimelineEvent> positionalEvents = new HashMap<Integer, AstroTimeline.TimelineEvent>();
+
+    public AstroLocation(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Returns the key for the coordinates, things with the same key share one location.
+     */
+    public static String getKey(double latitude, double longitude) {
+        return latitude + "," + longitude;
+    }
+
+    /**
+     * Returns the latitude.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Returns the longitude.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Returns the daily sun data, calculated on first access of the day.
+     */
+    public synchronized Sun getSun() {
+        if (sun == null) {
+            sun = sunCalc.getSunInfo(getCalculationTime(), latitude, longitude);
+            sunPositionTime = -1;
+        }
+        return sun;
+    }
+
+    /**
+     * Returns the daily moon data, calculated on first access of the day.
+     */
+    public synchronized Moon getMoon() {
+        if (moon == null) {
+            moon = moonCalc.getMoonInfo(getCalculationTime(), latitude, longitude);
+            moonPositionTime = -1;
+        }
+        return moon;
+    }
+
+    /**
+     * Calculates the sun position, if not already done for the same timestamp.
+     */
+    public synchronized void updateSunPosition(Calendar calendar) {
+        Sun sun = getSun();
+        if (sunPositionTime != calendar.getTimeInMillis()) {
+            sunCalc.setPositionalInfo(calendar, latitude, longitude, sun);
+            sunPositionTime = calendar.getTimeInMillis();
+        }
+    }
+
+    /**
+     * Calculates the moon position, phase and distance, if not already done for the same timestamp.
+     */
+    public synchronized void updateMoonPosition(Calendar calendar) {
+        Moon moon = getMoon();
+        if (moonPositionTime != calendar.getTimeInMillis()) {
+            moonCalc.setPositionalInfo(calendar, latitude, longitude, moon);
+            moonPositionTime = calendar.getTimeInMillis();
+        }
+    }
+
+    /**
+     * Discards the daily data, it's recalculated for the specified time on the next access.
+     */
+    synchronized void reset(Calendar calendar) {
+        calculationTime = calendar;
+        sun = null;
+        moon = null;
+    }
+
+    /**
+     * Returns the sun data if it has been calculated for the current day, null otherwise.
+     */
+    synchronized Sun getCalculatedSun() {
+        return sun;
+    }
+
+    /**
+     * Returns the moon data if it has been calculated for the current day, null otherwise.
+     */
+    synchronized Moon getCalculatedMoon() {
+        return moon;
+    }
+
+    Set<AstroThingHandler> getHandlers() {
+        return handlers;
+    }
+
+    Map<Integer, AstroTimeline.TimelineEvent> getPositionalEvents() {
+        return positionalEvents;
+    }
+
+    private Calendar getCalculationTime() {
+        if (calculationTime == null) {
+            calculationTime = Calendar.getInstance();
+        }
+        return calculationTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("latitude", latitude)
+                .append("longitude", longitude).append("things", handlers.size()).toString();
+    }
+}
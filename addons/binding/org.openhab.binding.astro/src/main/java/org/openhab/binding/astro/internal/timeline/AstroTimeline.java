@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.timeline;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.astro.handler.AstroThingHandler;
+import org.openhab.binding.astro.internal.config.AstroThingConfig;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.Range;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.util.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives all Astro things from one sorted event queue on a single thread. Things with the same coordinates share one
+ * {@link AstroLocation}, so the daily data is calculated once per location and positional data once per location and
+ * interval. The queue contains the daily recalculation at midnight, the positional refreshes and the astro events
+ * (rise, set, dawn, dusk, ...) of the day, at which the things of the location are published again.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ * @author agent - Shared timeline replacing the per-thing Quartz jobs
+ */
+public class AstroTimeline {
+    private static final Logger logger = LoggerFactory.getLogger(AstroTimeline.class);
+
+    // maximum time to wait for a running task on dispose, in seconds
+    private static final long SHUTDOWN_TIMEOUT = 5;
+
+    private final PriorityQueue<TimelineEvent> events = new PriorityQueue<TimelineEvent>();
+    private final Map<String, AstroLocation> locations = new HashMap<String, AstroLocation>();
+    private final Map<AstroThingHandler, AstroLocation> registrations = new HashMap<AstroThingHandler, AstroLocation>();
+    private final ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> wakeupFuture;
+    private long wakeupTime = Long.MAX_VALUE;
+
+    public AstroTimeline() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "astro-timeline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Registers the handler, or updates its registration if already registered, and publishes the daily data.
+     */
+    public void register(final AstroThingHandler handler) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                removeHandler(handler);
+                addHandler(handler);
+            }
+        });
+    }
+
+    /**
+     * Removes the handler from the timeline.
+     */
+    public void unregister(final AstroThingHandler handler) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                removeHandler(handler);
+            }
+        });
+    }
+
+    /**
+     * Stops the timeline and discards all events. The events are only accessed by the timeline thread, so they are
+     * discarded after a running task has finished.
+     */
+    public void dispose() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                logger.debug("Astro timeline task still running, events not discarded");
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        events.clear();
+        locations.clear();
+        registrations.clear();
+    }
+
+    /**
+     * Executes the task on the timeline thread and processes the due events afterwards.
+     */
+    private void execute(final Runnable task) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (Exception ex) {
+                        logger.error(ex.getMessage(), ex);
+                    }
+                    processEvents();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.debug("Astro timeline already stopped");
+        }
+    }
+
+    /**
+     * Adds the handler to the location of its coordinates and schedules the required events.
+     */
+    private void addHandler(AstroThingHandler handler) {
+        AstroThingConfig config = handler.getThingConfig();
+        String key = AstroLocation.getKey(config.getLatitude(), config.getLongitude());
+        AstroLocation location = locations.get(key);
+        if (location == null) {
+            location = new AstroLocation(config.getLatitude(), config.getLongitude());
+            locations.put(key, location);
+            events.add(new DailyEvent(location, getNextMidnight()));
+            logger.debug("Added astro location {}", location);
+        }
+        location.getHandlers().add(handler);
+        registrations.put(handler, location);
+
+        handler.publishDailyInfo(location, Calendar.getInstance());
+        scheduleAstroEvents(location);
+
+        if (handler.isPositionalChannelLinked()) {
+            int interval = config.getInterval();
+            if (!location.getPositionalEvents().containsKey(interval)) {
+                TimelineEvent event = new PositionalEvent(location, interval,
+                        System.currentTimeMillis() + interval * 1000L);
+                location.getPositionalEvents().put(interval, event);
+                events.add(event);
+            }
+            logger.info("Scheduled astro positional data with interval of {} seconds for thing {}", interval,
+                    config.getThingUid());
+        }
+    }
+
+    /**
+     * Removes the handler and all events of its location, if it was the last handler.
+     */
+    private void removeHandler(AstroThingHandler handler) {
+        AstroLocation location = registrations.remove(handler);
+        if (location != null) {
+            location.getHandlers().remove(handler);
+            if (location.getHandlers().isEmpty()) {
+                locations.remove(AstroLocation.getKey(location.getLatitude(), location.getLongitude()));
+                removeEvents(location, null);
+                logger.debug("Removed astro location {}", location);
+            }
+        }
+    }
+
+    /**
+     * Removes the events of the location, all of them if the type is null.
+     */
+    private void removeEvents(AstroLocation location, Class<? extends TimelineEvent> type) {
+        for (Iterator<TimelineEvent> it = events.iterator(); it.hasNext();) {
+            TimelineEvent event = it.next();
+            if (event.location == location && (type == null || type.isInstance(event))) {
+                it.remove();
+            }
+        }
+        if (type == null) {
+            location.getPositionalEvents().clear();
+        }
+    }
+
+    /**
+     * Schedules the remaining astro events of the day for the planets which have been calculated for the location.
+     */
+    private void scheduleAstroEvents(AstroLocation location) {
+        removeEvents(location, AstroEvent.class);
+
+        TreeSet<Long> times = new TreeSet<Long>();
+        Sun sun = location.getCalculatedSun();
+        if (sun != null) {
+            addRangeTimes(times, sun.getRise(), sun.getSet(), sun.getNoon(), sun.getNight(), sun.getMorningNight(),
+                    sun.getAstroDawn(), sun.getNauticDawn(), sun.getCivilDawn(), sun.getAstroDusk(),
+                    sun.getNauticDusk(), sun.getCivilDusk(), sun.getEveningNight(), sun.getDaylight());
+        }
+        Moon moon = location.getCalculatedMoon();
+        if (moon != null) {
+            addRangeTimes(times, moon.getRise(), moon.getSet());
+        }
+
+        long now = System.currentTimeMillis();
+        long midnight = getNextMidnight().getTimeInMillis();
+        for (Long time : times) {
+            if (time > now && time < midnight) {
+                events.add(new AstroEvent(location, time));
+            }
+        }
+    }
+
+    private void addRangeTimes(TreeSet<Long> times, Range... ranges) {
+        for (Range range : ranges) {
+            if (range != null) {
+                if (range.getStart() != null) {
+                    times.add(range.getStart().getTimeInMillis());
+                }
+                if (range.getEnd() != null) {
+                    times.add(range.getEnd().getTimeInMillis());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fires all due events and schedules the wakeup for the next one.
+     */
+    private void processEvents() {
+        long now = System.currentTimeMillis();
+        TimelineEvent event = events.peek();
+        while (event != null && event.time <= now) {
+            events.poll();
+            try {
+                event.fire(now);
+            } catch (Exception ex) {
+                logger.error("Error processing astro event for {}: {}", event.location, ex.getMessage(), ex);
+            }
+            event = events.peek();
+        }
+
+        long nextTime = event == null ? Long.MAX_VALUE : event.time;
+        if (nextTime != wakeupTime || wakeupFuture == null || wakeupFuture.isDone()) {
+            if (wakeupFuture != null) {
+                wakeupFuture.cancel(false);
+                wakeupFuture = null;
+            }
+            wakeupTime = nextTime;
+            if (event != null && !executor.isShutdown()) {
+                wakeupFuture = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        processEvents();
+                    }
+                }, Math.max(0, nextTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns the start of the next day.
+     */
+    private Calendar getNextMidnight() {
+        Calendar midnight = DateTimeUtils.truncateToMidnight(Calendar.getInstance());
+        midnight.add(Calendar.DAY_OF_MONTH, 1);
+        return midnight;
+    }
+
+    private static Calendar toCalendar(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        return calendar;
+    }
+
+    /**
+     * Base class for all events in the timeline, ordered by time.
+     */
+    abstract static class TimelineEvent implements Comparable<TimelineEvent> {
+        protected final AstroLocation location;
+        protected long time;
+
+        TimelineEvent(AstroLocation location, long time) {
+            this.location = location;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(TimelineEvent other) {
+            return time < other.time ? -1 : (time == other.time ? 0 : 1);
+        }
+
+        /**
+         * Processes the event, now is the current time of the timeline.
+         */
+        abstract void fire(long now);
+    }
+
+    /**
+     * Recalculates the daily data of a location at midnight.
+     */
+    private class DailyEvent extends TimelineEvent {
+
+        DailyEvent(AstroLocation location, Calendar midnight) {
+            super(location, midnight.getTimeInMillis());
+        }
+
+        @Override
+        void fire(long now) {
+            Calendar calendar = toCalendar(now);
+            location.reset(calendar);
+            for (AstroThingHandler handler : new ArrayList<AstroThingHandler>(location.getHandlers())) {
+                handler.publishDailyInfo(location, calendar);
+            }
+            scheduleAstroEvents(location);
+
+            time = getNextMidnight().getTimeInMillis();
+            events.add(this);
+        }
+    }
+
+    /**
+     * Publishes the positional data of all things of a location with the same interval.
+     */
+    private class PositionalEvent extends TimelineEvent {
+        private final int interval;
+
+        PositionalEvent(AstroLocation location, int interval, long time) {
+            super(location, time);
+            this.interval = interval;
+        }
+
+        @Override
+        void fire(long now) {
+            List<AstroThingHandler> handlers = new ArrayList<AstroThingHandler>();
+            for (AstroThingHandler handler : location.getHandlers()) {
+                if (handler.getThingConfig().getInterval() == interval && handler.isPositionalChannelLinked()) {
+                    handlers.add(handler);
+                }
+            }
+            if (handlers.isEmpty()) {
+                location.getPositionalEvents().remove(interval);
+                return;
+            }
+
+            Calendar calendar = toCalendar(now);
+            for (AstroThingHandler handler : handlers) {
+                handler.publishPositionalInfo(location, calendar);
+            }
+
+            time += interval * 1000L;
+            if (time <= now) {
+                time = now + interval * 1000L;
+            }
+            events.add(this);
+        }
+    }
+
+    /**
+     * Publishes all things of a location at an astro event, e.g. sunrise.
+     */
+    private class AstroEvent extends TimelineEvent {
+
+        AstroEvent(AstroLocation location, long time) {
+            super(location, time);
+        }
+
+        @Override
+        void fire(long now) {
+            Calendar calendar = toCalendar(now);
+            for (AstroThingHandler handler : new ArrayList<AstroThingHandler>(location.getHandlers())) {
+                handler.publishPositionalInfo(location, calendar);
+            }
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openhab.binding.astro.internal.model.Eclipse;
+import org.openhab.binding.astro.internal.model.Moon;
+import org.openhab.binding.astro.internal.model.MoonDistance;
+import org.openhab.binding.astro.internal.model.MoonPhase;
+import org.openhab.binding.astro.internal.model.Position;
+import org.openhab.binding.astro.internal.model.Range;
+import org.openhab.binding.astro.internal.model.Season;
+import org.openhab.binding.astro.internal.model.Sun;
+import org.openhab.binding.astro.internal.model.SunEclipse;
+import org.openhab.binding.astro.internal.model.SunZodiac;
+import org.openhab.binding.astro.internal.model.Zodiac;
+
+/**
+ * Static accessors for all channels of the Sun and Moon models, so channel values can be read without reflection.
+ * The accessors are keyed by planet class and channel id, e.g. Sun and rise#start.
+ *
+ * @author agent - Initial contribution
+ */
+public class PlanetPropertyAccessors {
+    private static final Map<Class<?>, Map<String, PropertyAccessor>> accessors = new HashMap<Class<?>, Map<String, PropertyAccessor>>();
+
+    private static final Map<String, PropertyAccessor> RANGE = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> POSITION = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> ZODIAC = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> SUN_ZODIAC = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> SEASON = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> ECLIPSE = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> SUN_ECLIPSE = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> MOON_PHASE = new LinkedHashMap<String, PropertyAccessor>();
+    private static final Map<String, PropertyAccessor> DISTANCE = new LinkedHashMap<String, PropertyAccessor>();
+
+    static {
+        RANGE.put("start", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Range) instance).getStart();
+            }
+        });
+        RANGE.put("end", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Range) instance).getEnd();
+            }
+        });
+        RANGE.put("duration", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Range) instance).getDuration();
+            }
+        });
+
+        POSITION.put("azimuth", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Position) instance).getAzimuth();
+            }
+        });
+        POSITION.put("elevation", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Position) instance).getElevation();
+            }
+        });
+
+        ZODIAC.put("sign", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Zodiac) instance).getSign();
+            }
+        });
+        SUN_ZODIAC.putAll(ZODIAC);
+        SUN_ZODIAC.put("start", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((SunZodiac) instance).getStart();
+            }
+        });
+        SUN_ZODIAC.put("end", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((SunZodiac) instance).getEnd();
+            }
+        });
+
+        SEASON.put("spring", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Season) instance).getSpring();
+            }
+        });
+        SEASON.put("summer", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Season) instance).getSummer();
+            }
+        });
+        SEASON.put("autumn", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Season) instance).getAutumn();
+            }
+        });
+        SEASON.put("winter", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Season) instance).getWinter();
+            }
+        });
+        SEASON.put("name", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Season) instance).getName();
+            }
+        });
+
+        ECLIPSE.put("total", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Eclipse) instance).getTotal();
+            }
+        });
+        ECLIPSE.put("partial", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Eclipse) instance).getPartial();
+            }
+        });
+        SUN_ECLIPSE.putAll(ECLIPSE);
+        SUN_ECLIPSE.put("ring", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((SunEclipse) instance).getRing();
+            }
+        });
+
+        MOON_PHASE.put("firstQuarter", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getFirstQuarter();
+            }
+        });
+        MOON_PHASE.put("thirdQuarter", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getThirdQuarter();
+            }
+        });
+        MOON_PHASE.put("full", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getFull();
+            }
+        });
+        MOON_PHASE.put("new", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getNew();
+            }
+        });
+        MOON_PHASE.put("age", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getAge();
+            }
+        });
+        MOON_PHASE.put("illumination", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getIllumination();
+            }
+        });
+        MOON_PHASE.put("name", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonPhase) instance).getName();
+            }
+        });
+
+        DISTANCE.put("date", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonDistance) instance).getDate();
+            }
+        });
+        DISTANCE.put("kilometer", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonDistance) instance).getKilometer();
+            }
+        });
+        DISTANCE.put("miles", new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((MoonDistance) instance).getMiles();
+            }
+        });
+
+        // sun
+        register(Sun.class, "rise", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getRise();
+            }
+        });
+        register(Sun.class, "set", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getSet();
+            }
+        });
+        register(Sun.class, "noon", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getNoon();
+            }
+        });
+        register(Sun.class, "night", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getNight();
+            }
+        });
+        register(Sun.class, "morningNight", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getMorningNight();
+            }
+        });
+        register(Sun.class, "astroDawn", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getAstroDawn();
+            }
+        });
+        register(Sun.class, "nauticDawn", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getNauticDawn();
+            }
+        });
+        register(Sun.class, "civilDawn", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getCivilDawn();
+            }
+        });
+        register(Sun.class, "astroDusk", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getAstroDusk();
+            }
+        });
+        register(Sun.class, "nauticDusk", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getNauticDusk();
+            }
+        });
+        register(Sun.class, "civilDusk", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getCivilDusk();
+            }
+        });
+        register(Sun.class, "eveningNight", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getEveningNight();
+            }
+        });
+        register(Sun.class, "daylight", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getDaylight();
+            }
+        });
+        register(Sun.class, "position", POSITION, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getPosition();
+            }
+        });
+        register(Sun.class, "zodiac", SUN_ZODIAC, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getZodiac();
+            }
+        });
+        register(Sun.class, "season", SEASON, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getSeason();
+            }
+        });
+        register(Sun.class, "eclipse", SUN_ECLIPSE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Sun) instance).getEclipse();
+            }
+        });
+
+        // moon
+        register(Moon.class, "rise", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getRise();
+            }
+        });
+        register(Moon.class, "set", RANGE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getSet();
+            }
+        });
+        register(Moon.class, "phase", MOON_PHASE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getPhase();
+            }
+        });
+        register(Moon.class, "eclipse", ECLIPSE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getEclipse();
+            }
+        });
+        register(Moon.class, "distance", DISTANCE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getDistance();
+            }
+        });
+        register(Moon.class, "perigee", DISTANCE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getPerigee();
+            }
+        });
+        register(Moon.class, "apogee", DISTANCE, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getApogee();
+            }
+        });
+        register(Moon.class, "zodiac", ZODIAC, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getZodiac();
+            }
+        });
+        register(Moon.class, "position", POSITION, new PropertyAccessor() {
+            @Override
+            public Object getValue(Object instance) {
+                return ((Moon) instance).getPosition();
+            }
+        });
+    }
+
+    /**
+     * Returns the accessor for the channel id of the planet class, null if there is no static accessor.
+     */
+    public static PropertyAccessor getAccessor(Class<?> planetClass, String channelId) {
+        Map<String, PropertyAccessor> planetAccessors = accessors.get(planetClass);
+        return planetAccessors == null ? null : planetAccessors.get(channelId);
+    }
+
+    /**
+     * Registers an accessor for each property of the group, combined with the accessor of the group object.
+     */
+    private static void register(Class<?> planetClass, String group, Map<String, PropertyAccessor> properties,
+            PropertyAccessor groupAccessor) {
+        Map<String, PropertyAccessor> planetAccessors = accessors.get(planetClass);
+        if (planetAccessors == null) {
+            planetAccessors = new HashMap<String, PropertyAccessor>();
+            accessors.put(planetClass, planetAccessors);
+        }
+        for (Map.Entry<String, PropertyAccessor> property : properties.entrySet()) {
+            planetAccessors.put(group + "#" + property.getKey(), new NestedAccessor(groupAccessor, property.getValue()));
+        }
+    }
+
+    /**
+     * Reads the value of a nested property, returns null if the intermediate object is null.
+     */
+    private static class NestedAccessor implements PropertyAccessor {
+        private final PropertyAccessor parent;
+        private final PropertyAccessor child;
+
+        public NestedAccessor(PropertyAccessor parent, PropertyAccessor child) {
+            this.parent = parent;
+            this.child = child;
+        }
+
+        @Override
+        public Object getValue(Object instance) throws Exception {
+            Object value = parent.getValue(instance);
+            return value == null ? null : child.getValue(value);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.astro.internal.util;
+
+/**
+ * Returns the value of a property from an object instance.
+ *
+ * @author agent - Initial contribution
+ */
+public interface PropertyAccessor {
+
+    /**
+     * Returns the property value of the instance, null if the instance is null.
+     */
+    Object getValue(Object instance) throws Exception;
+}
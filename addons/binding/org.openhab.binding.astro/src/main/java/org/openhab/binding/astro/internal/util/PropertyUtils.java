@@ -12,6 +12,8 @@ import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.smarthome.core.library.types.DateTimeType;
@@ -27,6 +29,7 @@ import org.eclipse.smarthome.core.types.UnDefType;
  * @author Gerhard Riegler - Initial contribution
  */
 public class PropertyUtils {
+    private static final ConcurrentMap<String, PropertyAccessor> reflectionAccessors = new ConcurrentHashMap<String, PropertyAccessor>();
 
     /**
      * Returns the state of the channel.
@@ -49,25 +52,27 @@ public class PropertyUtils {
 
     /**
      * Returns the property value from the object instance, nested properties are possible. If the propertyName is for
-     * example rise.start, the methods getRise().getStart() are called.
+     * example rise#start, the methods getRise().getStart() are called. The accessor for the channel is resolved once,
+     * all Sun and Moon channels are served by static accessors without reflection.
      */
     public static Object getPropertyValue(ChannelUID channelUID, Object instance) throws Exception {
-        String[] properties = StringUtils.split(channelUID.getId(), "#");
-        return getPropertyValue(instance, properties, 0);
+        return getAccessor(instance.getClass(), channelUID.getId()).getValue(instance);
     }
 
     /**
-     * Iterates through the nested properties and returns the getter value.
+     * Returns the accessor for the channel, falls back to a cached reflection based accessor for unknown properties.
      */
-    @SuppressWarnings("all")
-    private static Object getPropertyValue(Object instance, String[] properties, int nestedIndex) throws Exception {
-        String propertyName = properties[nestedIndex];
-        Method m = instance.getClass().getMethod(toGetterString(propertyName), null);
-        Object result = m.invoke(instance, (Object[]) null);
-        if (++nestedIndex < properties.length) {
-            return getPropertyValue(result, properties, nestedIndex);
+    private static PropertyAccessor getAccessor(Class<?> instanceClass, String channelId) throws Exception {
+        PropertyAccessor accessor = PlanetPropertyAccessors.getAccessor(instanceClass, channelId);
+        if (accessor == null) {
+            String key = instanceClass.getName() + ":" + channelId;
+            accessor = reflectionAccessors.get(key);
+            if (accessor == null) {
+                accessor = new ReflectionAccessor(instanceClass, StringUtils.split(channelId, "#"));
+                reflectionAccessors.putIfAbsent(key, accessor);
+            }
         }
-        return result;
+        return accessor;
     }
 
     /**
@@ -81,4 +86,32 @@ public class PropertyUtils {
         return sb.toString();
     }
 
+    /**
+     * Calls the getters of the nested properties, the methods are looked up once.
+     */
+    private static class ReflectionAccessor implements PropertyAccessor {
+        private final Method[] methods;
+
+        public ReflectionAccessor(Class<?> instanceClass, String[] properties) throws Exception {
+            methods = new Method[properties.length];
+            Class<?> currentClass = instanceClass;
+            for (int i = 0; i < properties.length; i++) {
+                methods[i] = currentClass.getMethod(toGetterString(properties[i]));
+                currentClass = methods[i].getReturnType();
+            }
+        }
+
+        @Override
+        public Object getValue(Object instance) throws Exception {
+            Object result = instance;
+            for (Method method : methods) {
+                if (result == null) {
+                    return null;
+                }
+                result = method.invoke(result);
+            }
+            return result;
+        }
+    }
+
 }
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.avmfritz.handler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.xml.bind.JAXBException;
+
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.avmfritz.config.AvmFritzConfiguration;
+import org.openhab.binding.avmfritz.internal.ahamodel.DeviceModel;
+import org.openhab.binding.avmfritz.internal.ahamodel.DevicelistParser;
+import org.openhab.binding.avmfritz.internal.hardware.FritzahaWebInterface;
+
+/**
+ * Tests the change detection and the adaptive polling interval of
+ * {@link DeviceListPolling}.
+ *
+ * @author agent - Initial contribution
+ */
+public class DeviceListPollingTest {
+    private static final String QUIET_AIN = "087610000434";
+    private static final String RUNNING_AIN = "087610000435";
+    private static final String DEVICE_LIST = "<devicelist version=\"1\">"
+            + "<device identifier=\"08761 0000434\" id=\"17\" functionbitmask=\"896\" fwversion=\"03.36\""
+            + " manufacturer=\"AVM\" productname=\"FRITZ!DECT 200\">"
+            + "<present>1</present><name>Lamp</name>"
+            + "<switch><state>0</state><mode>manuell</mode><lock>0</lock></switch>"
+            + "<powermeter><power>0</power><energy>166</energy></powermeter>"
+            + "<temperature><celsius>215</celsius><offset>0</offset></temperature></device>"
+            + "<device identifier=\"08761 0000435\" id=\"18\" functionbitmask=\"896\" fwversion=\"03.36\""
+            + " manufacturer=\"AVM\" productname=\"FRITZ!DECT 200\">"
+            + "<present>1</present><name>Washing machine</name>"
+            + "<switch><state>1</state><mode>manuell</mode><lock>0</lock></switch>"
+            + "<powermeter><power>45000</power><energy>2048</energy></powermeter>"
+            + "<temperature><celsius>230</celsius><offset>0</offset></temperature></device>" + "</devicelist>";
+
+    private ScheduledExecutorService scheduler;
+    private RecordingHandler handler;
+    private DeviceListPolling polling;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        handler = new RecordingHandler();
+        AvmFritzConfiguration config = new AvmFritzConfiguration();
+        config.setPollingInterval(1);
+        config.setMaxPollingInterval(8);
+        // the request budget doesn't delay the backoff
+        config.setMaxRequestsPerMinute(1);
+        polling = new DeviceListPolling("http://fritz.box/", scheduler);
+        polling.add(handler, config);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void sameDeviceListHasEqualStates() throws JAXBException {
+        List<DeviceModel> first = DevicelistParser.parse(DEVICE_LIST).getDevicelist();
+        List<DeviceModel> second = DevicelistParser.parse(DEVICE_LIST).getDevicelist();
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i), second.get(i));
+            assertEquals(first.get(i).hashCode(), second.get(i).hashCode());
+        }
+    }
+
+    @Test
+    public void unchangedDevicesAreNotPassedAgain() throws JAXBException {
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        assertEquals(2, handler.devices.size());
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        assertEquals(2, handler.devices.size());
+    }
+
+    @Test
+    public void changedDeviceIsPassed() throws JAXBException {
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST.replace("<power>0</power>", "<power>1500</power>")));
+        assertEquals(3, handler.devices.size());
+        assertEquals(QUIET_AIN, handler.devices.get(2).getIdentifier());
+    }
+
+    @Test
+    public void quietDeviceBacksOffUpToMaxInterval() throws JAXBException {
+        for (int i = 0; i < 5; i++) {
+            polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        }
+        assertEquals(Arrays.asList(1L, 2L, 4L, 8L), handler.intervals.get(QUIET_AIN));
+    }
+
+    @Test
+    public void runningPowerMeterKeepsPollingInterval() throws JAXBException {
+        for (int i = 0; i < 5; i++) {
+            polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        }
+        assertEquals(Arrays.asList(1L), handler.intervals.get(RUNNING_AIN));
+    }
+
+    @Test
+    public void changedDeviceIsPolledAtPollingInterval() throws JAXBException {
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST));
+        polling.onDeviceList(DevicelistParser.parse(DEVICE_LIST.replace("<power>0</power>", "<power>1500</power>")));
+        assertEquals(Arrays.asList(1L, 2L, 1L), handler.intervals.get(QUIET_AIN));
+    }
+
+    /**
+     * Records the devices and intervals passed by the polling.
+     */
+    private static class RecordingHandler implements IFritzHandler {
+        private final List<DeviceModel> devices = new ArrayList<DeviceModel>();
+        private final Map<String, List<Long>> intervals = new HashMap<String, List<Long>>();
+
+        @Override
+        public void setStatusInfo(ThingStatus status, ThingStatusDetail statusDetail, String description) {
+        }
+
+        @Override
+        public void addDeviceList(DeviceModel model) {
+            devices.add(model);
+        }
+
+        @Override
+        public FritzahaWebInterface getWebInterface() {
+            // no requests are sent to a box
+            return null;
+        }
+
+        @Override
+        public void setPollingInterval(String ain, long interval) {
+            if (!intervals.containsKey(ain)) {
+                intervals.put(ain, new ArrayList<Long>());
+            }
+            intervals.get(ain).add(interval);
+        }
+    }
+}
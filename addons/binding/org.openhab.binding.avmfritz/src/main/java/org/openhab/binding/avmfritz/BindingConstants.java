@@ -32,6 +32,10 @@ public class BindingConstants {
     public static final String PL546E_MODEL_NAME = "FRITZ!Powerline";
     public static final String THING_AIN = "ain";
 
+    // List of thing properties
+    public static final String PROPERTY_POLLING_INTERVAL = "effectivePollingInterval";
+    public static final String PROPERTY_REQUEST_RATE = "requestRate";
+
 	// List of main device types
 	public static final String DEVICE_DECT200 = "FRITZ_DECT_200";
 	public static final String DEVICE_PL546E = "FRITZ_Powerline_546E";
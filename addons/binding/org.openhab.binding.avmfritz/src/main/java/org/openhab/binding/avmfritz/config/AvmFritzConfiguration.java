@@ -26,6 +26,8 @@ public class AvmFritzConfiguration {
 	private Integer asyncTimeout;
 	private Integer syncTimeout;
 	private Integer pollingInterval;
+	private Integer maxPollingInterval;
+	private Integer maxRequestsPerMinute;
 	
 	public String getIpAddress() {
 		return ipAddress;
@@ -75,6 +77,18 @@ public class AvmFritzConfiguration {
 	public void setPollingInterval(Integer pollingInterval) {
 		this.pollingInterval = pollingInterval;
 	}
+	public Integer getMaxPollingInterval() {
+		return maxPollingInterval;
+	}
+	public void setMaxPollingInterval(Integer maxPollingInterval) {
+		this.maxPollingInterval = maxPollingInterval;
+	}
+	public Integer getMaxRequestsPerMinute() {
+		return maxRequestsPerMinute;
+	}
+	public void setMaxRequestsPerMinute(Integer maxRequestsPerMinute) {
+		this.maxRequestsPerMinute = maxRequestsPerMinute;
+	}
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this)
@@ -84,6 +98,8 @@ public class AvmFritzConfiguration {
 				.append("user", this.getUser())
 				.append("password", this.getPassword())
 				.append("pollingInterval", this.getPollingInterval())
+				.append("maxPollingInterval", this.getMaxPollingInterval())
+				.append("maxRequestsPerMinute", this.getMaxRequestsPerMinute())
 				.append("asyncTimeout", this.getAsyncTimeout())
 				.append("syncTimeout", this.getSyncTimeout())
 				.toString();
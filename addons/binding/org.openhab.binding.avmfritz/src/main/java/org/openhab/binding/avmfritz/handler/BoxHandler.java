@@ -10,10 +10,9 @@ package org.openhab.binding.avmfritz.handler;
 
 import static org.openhab.binding.avmfritz.BindingConstants.*;
 
+import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
@@ -48,10 +47,9 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
      */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     /**
-     * the refresh interval which is used to poll values from the fritzaha.
-     * server (optional, defaults to 15 s)
+     * Configuration of the bridge, including the polling intervals.
      */
-    private long refreshInterval = 15;
+    private AvmFritzConfiguration config;
     /**
      * Interface object for querying the FRITZ!Box web interface
      */
@@ -61,13 +59,9 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
      */
     private Map<String, DeviceModel> deviceList;
     /**
-     * Job which will do the FRITZ!Box polling
+     * Polling coordinator of the FRITZ!Box
      */
-    private DeviceListPolling pollingRunnable;
-    /**
-     * Schedule for polling
-     */
-    private ScheduledFuture<?> pollingJob;
+    private DeviceListPolling polling;
 
     /**
      * Constructor
@@ -78,7 +72,6 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
     public BoxHandler(Bridge bridge) {
         super(bridge);
         this.deviceList = new TreeMap<String, DeviceModel>();
-        this.pollingRunnable = new DeviceListPolling(this);
     }
 
     /**
@@ -92,7 +85,7 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
 
         logger.debug("discovered fritzaha bridge initialized: " + config.toString());
 
-        this.refreshInterval = config.getPollingInterval();
+        this.config = config;
         this.connection = new FritzahaWebInterface(config, this);
         if (config.getPassword() != null) {
             this.onUpdate();
@@ -108,9 +101,17 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
     @Override
     public void dispose() {
         logger.debug("Handler disposed.");
-        if (pollingJob != null && !pollingJob.isCancelled()) {
-            pollingJob.cancel(true);
-            pollingJob = null;
+        DeviceListPolling.unregister(this);
+        polling = null;
+    }
+
+    /**
+     * Updates all things of this bridge with the next poll, e.g. after a
+     * thing has been added.
+     */
+    public void refreshDevices() {
+        if (polling != null) {
+            polling.refresh();
         }
     }
 
@@ -133,6 +134,38 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
         }
     }
 
+    /**
+     * Called from {@link DeviceHandler} after a command has been sent to a
+     * device, to poll its new state soon.
+     *
+     * @param ain AIN of the device
+     */
+    public void onCommand(String ain) {
+        if (polling != null) {
+            polling.onCommand(ain);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPollingInterval(String ain, long interval) {
+        DeviceModel model = this.deviceList.get(ain);
+        if (model != null) {
+            ThingUID thingUID = this.getThingUID(model);
+            Thing thing = thingUID != null ? this.getThingByUID(thingUID) : null;
+            if (thing != null && thing.getHandler() instanceof DeviceHandler) {
+                ((DeviceHandler) thing.getHandler()).updatePollingProperties(interval);
+            }
+        }
+        if (polling != null) {
+            Map<String, String> properties = editProperties();
+            properties.put(PROPERTY_REQUEST_RATE, String.format(Locale.ENGLISH, "%.1f", polling.getRequestRate()));
+            updateProperties(properties);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -209,9 +242,8 @@ public class BoxHandler extends BaseBridgeHandler implements IFritzHandler {
      */
     private synchronized void onUpdate() {
         if (this.getThing() != null) {
-            if (pollingJob == null || pollingJob.isCancelled()) {
-                logger.debug("start polling job at intervall " + refreshInterval);
-                pollingJob = scheduler.scheduleWithFixedDelay(pollingRunnable, 1, refreshInterval, TimeUnit.SECONDS);
+            if (polling == null) {
+                polling = DeviceListPolling.register(this, scheduler, config);
             } else {
                 logger.debug("pollingJob active");
             }
@@ -10,8 +10,7 @@ package org.openhab.binding.avmfritz.handler;
 
 import static org.openhab.binding.avmfritz.BindingConstants.*;
 
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
@@ -53,26 +52,21 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
      */
     private String soloIp;
     /**
-     * the refresh interval which is used to poll values from the fritzaha.
-     * server (optional, defaults to 15 s)
+     * Configuration of the standalone device, including the polling
+     * intervals.
      */
-    protected long refreshInterval = 15;
+    protected AvmFritzConfiguration config;
     /**
      * Interface object for querying the FRITZ!Box web interface
      */
     protected FritzahaWebInterface connection;
     /**
-     * Job which will do the FRITZ!Box polling
+     * Polling coordinator of the FRITZ!Box
      */
-    private DeviceListPolling pollingRunnable;
-    /**
-     * Schedule for polling
-     */
-    private ScheduledFuture<?> pollingJob;
+    private DeviceListPolling polling;
 
     public DeviceHandler(Thing thing) {
         super(thing);
-        this.pollingRunnable = new DeviceListPolling(this);
     }
 
     /**
@@ -88,7 +82,7 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
 
             logger.debug("discovered PL546E initialized: " + config.toString());
 
-            this.refreshInterval = config.getPollingInterval();
+            this.config = config;
             this.connection = new FritzahaWebInterface(config, this);
             if (config.getPassword() != null) {
                 this.onUpdate();
@@ -96,6 +90,12 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
                 thing.setStatusInfo(new ThingStatusInfo(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
                         "no password set"));
             }
+        } else {
+            // the bridge updates this thing with the next poll
+            Bridge bridge = this.getBridge();
+            if (bridge != null && bridge.getHandler() instanceof BoxHandler) {
+                ((BoxHandler) bridge.getHandler()).refreshDevices();
+            }
         }
     }
 
@@ -106,10 +106,8 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
     public void dispose() {
         if (this.getThing().getThingTypeUID().equals(PL546E_STANDALONE_THING_TYPE)) {
             logger.debug("Handler disposed.");
-            if (pollingJob != null && !pollingJob.isCancelled()) {
-                pollingJob.cancel(true);
-                pollingJob = null;
-            }
+            DeviceListPolling.unregister(this);
+            polling = null;
         }
     }
 
@@ -118,9 +116,8 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
      */
     private synchronized void onUpdate() {
         if (this.getThing() != null) {
-            if (pollingJob == null || pollingJob.isCancelled()) {
-                logger.debug("start polling job at intervall " + refreshInterval);
-                pollingJob = scheduler.scheduleWithFixedDelay(pollingRunnable, 1, refreshInterval, TimeUnit.SECONDS);
+            if (polling == null) {
+                polling = DeviceListPolling.register(this, scheduler, config);
             } else {
                 logger.debug("pollingJob active");
             }
@@ -139,10 +136,12 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
         if (channelUID.getId().equals(CHANNEL_SWITCH)) {
             logger.debug("update " + channelUID.getAsString() + " with " + command.toString());
             FritzahaWebInterface fritzBox = null;
+            BoxHandler boxHandler = null;
             if (!thing.getThingTypeUID().equals(PL546E_STANDALONE_THING_TYPE)) {
                 Bridge bridge = this.getBridge();
                 if (bridge != null && bridge.getHandler() instanceof BoxHandler) {
-                    fritzBox = ((BoxHandler) bridge.getHandler()).getWebInterface();
+                    boxHandler = (BoxHandler) bridge.getHandler();
+                    fritzBox = boxHandler.getWebInterface();
                 }
             } else {
                 fritzBox = this.getWebInterface();
@@ -153,6 +152,13 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
                             this.getThing().getConfiguration().get(THING_AIN).toString(),
                             command.equals(OnOffType.ON) ? true : false);
                     fritzBox.asyncGet(callback);
+                    // poll the new state of the device soon
+                    String ain = this.getThing().getConfiguration().get(THING_AIN).toString();
+                    if (boxHandler != null) {
+                        boxHandler.onCommand(ain);
+                    } else if (polling != null) {
+                        polling.onCommand(ain);
+                    }
                 }
             }
         } else {
@@ -173,6 +179,30 @@ public class DeviceHandler extends BaseThingHandler implements IFritzHandler {
         return this.connection;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPollingInterval(String ain, long interval) {
+        // the polling passes the intervals of all devices of the box
+        Object thingAin = this.getThing().getConfiguration().get(THING_AIN);
+        if (thingAin != null && ain.equals(thingAin.toString().replace(" ", ""))) {
+            updatePollingProperties(interval);
+        }
+    }
+
+    /**
+     * Updates the thing property showing the effective polling interval of
+     * this device.
+     *
+     * @param interval Effective polling interval in s
+     */
+    void updatePollingProperties(long interval) {
+        Map<String, String> properties = editProperties();
+        properties.put(PROPERTY_POLLING_INTERVAL, String.valueOf(interval));
+        updateProperties(properties);
+    }
+
     @Override
     public void addDeviceList(DeviceModel model) {
         try {
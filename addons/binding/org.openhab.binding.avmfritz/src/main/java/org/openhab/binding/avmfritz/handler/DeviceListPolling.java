@@ -8,12 +8,33 @@
  */
 package org.openhab.binding.avmfritz.handler;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.openhab.binding.avmfritz.config.AvmFritzConfiguration;
+import org.openhab.binding.avmfritz.internal.ahamodel.DeviceModel;
+import org.openhab.binding.avmfritz.internal.ahamodel.DevicelistModel;
 import org.openhab.binding.avmfritz.internal.hardware.callbacks.FritzAhaUpdateXmlCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Polling worker class.
+ * Polling coordinator of a FRITZ!Box. The device list is fetched for all
+ * handlers of the box with a single request, only the devices which changed
+ * since the last poll are passed to the handlers.
+ *
+ * The polling interval adapts to the devices: a device which changed or
+ * received a command is polled at the polling interval, e.g. a power meter
+ * while something is running. The interval of a quiet device is doubled with
+ * every unchanged poll up to the maximum polling interval. The box is polled
+ * when the first device is due, but not more often than the request budget of
+ * the box allows.
  */
 public class DeviceListPolling implements Runnable {
 	/**
@@ -21,27 +42,347 @@ public class DeviceListPolling implements Runnable {
 	 */
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
 	/**
-	 * Handler for delegation to callbacks.
+	 * Default shortest polling interval in s.
+	 */
+	public static final int DEFAULT_POLLING_INTERVAL = 15;
+	/**
+	 * Default longest polling interval in s.
+	 */
+	public static final int DEFAULT_MAX_POLLING_INTERVAL = 300;
+	/**
+	 * Default maximum number of requests per minute.
+	 */
+	public static final int DEFAULT_MAX_REQUESTS_PER_MINUTE = 12;
+	/**
+	 * Delay in ms of the poll confirming a command.
+	 */
+	private static final long COMMAND_DELAY = 1000;
+	/**
+	 * Polling coordinators by the URL of the box.
+	 */
+	private static final Map<String, DeviceListPolling> pollings = new HashMap<String, DeviceListPolling>();
+	/**
+	 * URL of the box.
+	 */
+	private final String url;
+	/**
+	 * Scheduler of the polling job.
+	 */
+	private final ScheduledExecutorService scheduler;
+	/**
+	 * Registered handlers with their configuration.
+	 */
+	private final Map<IFritzHandler, AvmFritzConfiguration> handlers = new ConcurrentHashMap<IFritzHandler, AvmFritzConfiguration>();
+	/**
+	 * Polling state of the devices by the AIN.
+	 */
+	private final Map<String, DeviceState> devices = new ConcurrentHashMap<String, DeviceState>();
+	/**
+	 * Schedule for the next poll
+	 */
+	private ScheduledFuture<?> pollingJob;
+	/**
+	 * Time of the next poll in ms
+	 */
+	private long nextPoll;
+	/**
+	 * Time of the last request in ms
+	 */
+	private long lastRequest;
+	/**
+	 * Number of requests since the polling started
+	 */
+	private long requestCount;
+	/**
+	 * Time the polling started in ms
+	 */
+	private final long startTime = System.currentTimeMillis();
+	/**
+	 * Shortest polling interval in ms
+	 */
+	private long minInterval;
+	/**
+	 * Longest polling interval in ms
+	 */
+	private long maxInterval;
+	/**
+	 * Shortest time between two requests in ms
 	 */
-	private IFritzHandler handler;
+	private long requestInterval;
+
 	/**
 	 * Constructor.
-	 * @param handler
+	 * @param url URL of the box
+	 * @param scheduler Scheduler of the polling job
 	 */
-	public DeviceListPolling(IFritzHandler handler) {
-		this.handler = handler;
+	DeviceListPolling(String url, ScheduledExecutorService scheduler) {
+		this.url = url;
+		this.scheduler = scheduler;
 	}
+
+	/**
+	 * Registers a handler for the device list of its box and starts polling.
+	 * @param handler Handler with an initialized web interface
+	 * @param scheduler Scheduler of the polling job
+	 * @param config Configuration of the handler
+	 * @return Polling coordinator of the box
+	 */
+	public static DeviceListPolling register(IFritzHandler handler,
+			ScheduledExecutorService scheduler, AvmFritzConfiguration config) {
+		String url = handler.getWebInterface().getURL("");
+		DeviceListPolling polling;
+		synchronized (pollings) {
+			polling = pollings.get(url);
+			if (polling == null) {
+				polling = new DeviceListPolling(url, scheduler);
+				pollings.put(url, polling);
+			}
+			polling.add(handler, config);
+		}
+		return polling;
+	}
+
+	/**
+	 * Adds a handler to the polling of the box.
+	 * @param handler Handler of a device of the box
+	 * @param config Configuration of the handler
+	 */
+	void add(IFritzHandler handler, AvmFritzConfiguration config) {
+		handlers.put(handler, config);
+		configure();
+		// the new handler needs the state of all devices
+		refresh();
+	}
+
+	/**
+	 * Unregisters a handler, polling of the box stops with the last handler.
+	 * @param handler Registered handler
+	 */
+	public static void unregister(IFritzHandler handler) {
+		synchronized (pollings) {
+			for (DeviceListPolling polling : pollings.values()) {
+				if (polling.handlers.remove(handler) != null) {
+					if (polling.handlers.isEmpty()) {
+						polling.cancel();
+						pollings.remove(polling.url);
+					} else {
+						polling.configure();
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes the state of all devices to the handlers with the next poll,
+	 * which is scheduled as soon as the request budget allows.
+	 */
+	public void refresh() {
+		devices.clear();
+		schedule(0);
+	}
+
 	/**
-	 * Poll the FRITZ!Box websevice one time. 
+	 * Called after a command has been sent to a device. The device is polled
+	 * at the shortest interval again and its new state is polled soon.
+	 * @param ain AIN of the device
+	 */
+	public void onCommand(String ain) {
+		DeviceState device = devices.get(ain);
+		if (device != null) {
+			device.interval = minInterval;
+			device.nextPoll = System.currentTimeMillis() + COMMAND_DELAY;
+			publish(ain, device);
+		}
+		schedule(COMMAND_DELAY);
+	}
+
+	/**
+	 * Returns the number of requests per minute sent to the box since the
+	 * polling started.
+	 */
+	public synchronized double getRequestRate() {
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		return requestCount * 60000.0 / elapsed;
+	}
+
+	/**
+	 * Determines the intervals from the configurations of the handlers, the
+	 * strictest configuration wins.
+	 */
+	private synchronized void configure() {
+		long min = Long.MAX_VALUE;
+		long max = Long.MAX_VALUE;
+		int budget = Integer.MAX_VALUE;
+		for (AvmFritzConfiguration config : handlers.values()) {
+			min = Math.min(min, valueOf(config.getPollingInterval(), DEFAULT_POLLING_INTERVAL));
+			max = Math.min(max, valueOf(config.getMaxPollingInterval(), DEFAULT_MAX_POLLING_INTERVAL));
+			budget = Math.min(budget, valueOf(config.getMaxRequestsPerMinute(), DEFAULT_MAX_REQUESTS_PER_MINUTE));
+		}
+		minInterval = min * 1000;
+		maxInterval = Math.max(minInterval, max * 1000);
+		requestInterval = 60000 / Math.max(1, budget);
+		logger.debug("polling " + url + " every " + min + " to " + max + " s, at most " + budget
+				+ " requests per minute");
+	}
+
+	private static int valueOf(Integer value, int defaultValue) {
+		return value != null && value > 0 ? value : defaultValue;
+	}
+
+	/**
+	 * Schedules the next poll after the given delay, unless a poll is
+	 * scheduled earlier. The poll is delayed if the request budget is used
+	 * up.
+	 * @param delay Delay in ms
+	 */
+	private synchronized void schedule(long delay) {
+		long now = System.currentTimeMillis();
+		long time = Math.max(now + delay, lastRequest + requestInterval);
+		if (pollingJob != null && !pollingJob.isDone() && nextPoll <= time) {
+			return;
+		}
+		reschedule(time - now);
+	}
+
+	/**
+	 * Schedules the next poll after the given delay, replacing the scheduled
+	 * poll.
+	 * @param delay Delay in ms
+	 */
+	private synchronized void reschedule(long delay) {
+		if (pollingJob != null) {
+			pollingJob.cancel(false);
+		}
+		nextPoll = System.currentTimeMillis() + delay;
+		pollingJob = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void cancel() {
+		if (pollingJob != null) {
+			pollingJob.cancel(true);
+			pollingJob = null;
+		}
+	}
+
+	/**
+	 * Returns the delay until the first device is due.
+	 */
+	private long getDelay() {
+		long now = System.currentTimeMillis();
+		long next = now + maxInterval;
+		for (DeviceState device : devices.values()) {
+			next = Math.min(next, device.nextPoll);
+		}
+		return Math.max(0, next - now);
+	}
+
+	/**
+	 * Poll the FRITZ!Box websevice one time.
 	 */
 	@Override
 	public void run() {
-		if (handler.getWebInterface() != null) {
-			logger.debug("polling fritzbox "
-					+ handler.getWebInterface().getConfig().toString());
-			FritzAhaUpdateXmlCallback callback = new FritzAhaUpdateXmlCallback(
-					handler.getWebInterface(), this.handler);
-			handler.getWebInterface().asyncGet(callback);
+		synchronized (this) {
+			lastRequest = System.currentTimeMillis();
+			requestCount++;
+			// the poll after the response is scheduled when the response has
+			// been received, this one is used if there's no response
+			reschedule(maxInterval);
+		}
+		for (IFritzHandler handler : handlers.keySet()) {
+			if (handler.getWebInterface() != null) {
+				logger.debug("polling fritzbox "
+						+ handler.getWebInterface().getConfig().toString());
+				FritzAhaUpdateXmlCallback callback = new FritzAhaUpdateXmlCallback(
+						handler.getWebInterface(), this);
+				handler.getWebInterface().asyncGet(callback);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Called from {@link FritzAhaUpdateXmlCallback} with the polled device
+	 * list. Passes the changed devices to the handlers and schedules the next
+	 * poll.
+	 * @param model Device list of the box
+	 */
+	public void onDeviceList(DevicelistModel model) {
+		long now = System.currentTimeMillis();
+		for (DeviceModel device : model.getDevicelist()) {
+			String ain = device.getIdentifier();
+			DeviceState deviceState = ain != null ? devices.get(ain) : null;
+			if (deviceState != null && device.equals(deviceState.device)) {
+				if (now >= deviceState.nextPoll - requestInterval) {
+					// back off if a power meter isn't running
+					if (!isRunning(device)) {
+						deviceState.interval = Math.min(deviceState.interval * 2, maxInterval);
+					}
+					deviceState.nextPoll = now + deviceState.interval;
+					publish(ain, deviceState);
+				}
+				continue;
+			}
+			if (ain != null) {
+				if (deviceState == null) {
+					deviceState = new DeviceState();
+					devices.put(ain, deviceState);
+				}
+				deviceState.device = device;
+				deviceState.interval = minInterval;
+				deviceState.nextPoll = now + minInterval;
+				publish(ain, deviceState);
+			}
+			for (IFritzHandler handler : handlers.keySet()) {
+				handler.addDeviceList(device);
+			}
 		}
+		for (IFritzHandler handler : handlers.keySet()) {
+			handler.setStatusInfo(ThingStatus.ONLINE,
+					ThingStatusDetail.NONE, "FritzBox online");
+		}
+		synchronized (this) {
+			reschedule(Math.max(getDelay(), lastRequest + requestInterval - now));
+		}
+	}
+
+	private boolean isRunning(DeviceModel device) {
+		return device.isPowermeter() && device.getPowermeter() != null
+				&& device.getPowermeter().getPower().signum() > 0;
+	}
+
+	/**
+	 * Passes the polling interval of a device to the handlers, if it changed.
+	 */
+	private void publish(String ain, DeviceState device) {
+		if (device.interval != device.publishedInterval) {
+			device.publishedInterval = device.interval;
+			for (IFritzHandler handler : handlers.keySet()) {
+				handler.setPollingInterval(ain, device.interval / 1000);
+			}
+		}
+	}
+
+	/**
+	 * Polling state of a device.
+	 */
+	private static class DeviceState {
+		/**
+		 * Device state of the last poll
+		 */
+		private DeviceModel device;
+		/**
+		 * Current polling interval in ms
+		 */
+		private long interval;
+		/**
+		 * Polling interval passed to the handlers in ms
+		 */
+		private long publishedInterval;
+		/**
+		 * Time the device is due in ms
+		 */
+		private long nextPoll;
 	}
 }
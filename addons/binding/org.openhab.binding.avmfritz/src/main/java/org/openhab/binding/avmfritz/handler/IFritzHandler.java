@@ -47,4 +47,15 @@ public interface IFritzHandler {
 	 * @return The web interface object
 	 */
 	public FritzahaWebInterface getWebInterface();
+
+	/**
+	 * Called from {@link DeviceListPolling} when the polling interval of a
+	 * device changed.
+	 * 
+	 * @param ain
+	 *            AIN of the device
+	 * @param interval
+	 *            Effective polling interval in s
+	 */
+	public void setPollingInterval(String ain, long interval);
 }
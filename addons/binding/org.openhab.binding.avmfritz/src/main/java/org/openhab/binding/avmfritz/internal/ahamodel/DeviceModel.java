@@ -12,7 +12,10 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
  * See {@link DevicelistModel}.
@@ -132,7 +135,7 @@ public class DeviceModel {
 	}
 
 	public String toString() {
-		return new ToStringBuilder(this)
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
 				.append("ain", this.getIdentifier())
 				.append("bitmask", this.bitmask)
 				.append("isDectRepeater", this.isDectRepeater())
@@ -150,4 +153,45 @@ public class DeviceModel {
 				.append(this.getTemperature())
 				.toString();
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof DeviceModel)) {
+			return false;
+		}
+		DeviceModel other = (DeviceModel) obj;
+		return new EqualsBuilder()
+				.append(ident, other.ident)
+				.append(deviceId, other.deviceId)
+				.append(bitmask, other.bitmask)
+				.append(firmwareVersion, other.firmwareVersion)
+				.append(deviceManufacturer, other.deviceManufacturer)
+				.append(productName, other.productName)
+				.append(present, other.present)
+				.append(name, other.name)
+				.append(switchModel, other.switchModel)
+				.append(powermeterModel, other.powermeterModel)
+				.append(temperatureModel, other.temperatureModel)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder()
+				.append(ident)
+				.append(deviceId)
+				.append(bitmask)
+				.append(firmwareVersion)
+				.append(deviceManufacturer)
+				.append(productName)
+				.append(present)
+				.append(name)
+				.append(switchModel)
+				.append(powermeterModel)
+				.append(temperatureModel)
+				.toHashCode();
+	}
 }
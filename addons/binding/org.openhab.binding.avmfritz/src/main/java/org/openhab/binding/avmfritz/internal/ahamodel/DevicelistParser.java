@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.avmfritz.internal.ahamodel;
+
+import java.io.StringReader;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+/**
+ * Parses the response to a <b>getdevicelistinfos</b> command into a
+ * {@link DevicelistModel}.
+ *
+ * Creating a JAXBContext is expensive, so a single context is shared by all
+ * boxes. The context is thread safe, only the unmarshaller is created per
+ * response.
+ *
+ * @author Robert Bausdorf
+ * @author agent - Shared JAXB context
+ *
+ */
+public class DevicelistParser {
+
+	private static JAXBContext jaxbContext;
+
+	private static synchronized JAXBContext getContext() throws JAXBException {
+		if (jaxbContext == null) {
+			jaxbContext = JAXBContext.newInstance(DevicelistModel.class);
+		}
+		return jaxbContext;
+	}
+
+	/**
+	 * Parses a device list.
+	 *
+	 * @param response
+	 *            XML response of the FRITZ!Box
+	 * @return Device list model
+	 */
+	public static DevicelistModel parse(String response) throws JAXBException {
+		return (DevicelistModel) getContext().createUnmarshaller().unmarshal(
+				new StringReader(response));
+	}
+}
@@ -13,7 +13,10 @@ import java.math.BigDecimal;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
  * See {@link DevicelistModel}.
@@ -45,9 +48,32 @@ public class PowerMeterModel {
 	}
 	
 	public String toString() {
-		return new ToStringBuilder(this)
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
 		.append("power", this.getPower())
 		.append("energy", this.getEnergy())
 		.toString();
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof PowerMeterModel)) {
+			return false;
+		}
+		PowerMeterModel other = (PowerMeterModel) obj;
+		return new EqualsBuilder()
+				.append(power, other.power)
+				.append(energy, other.energy)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder()
+				.append(power)
+				.append(energy)
+				.toHashCode();
+	}
 }
@@ -13,7 +13,10 @@ import java.math.BigDecimal;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
  * See {@link DevicelistModel}.
@@ -58,10 +61,35 @@ public class SwitchModel {
 
 	@Override
 	public String toString() {
-		return new ToStringBuilder(this)
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
 			.append("state", this.getState())
 			.append("mode", this.getMode())
 			.append("lock", this.getLock())
 			.toString();
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof SwitchModel)) {
+			return false;
+		}
+		SwitchModel other = (SwitchModel) obj;
+		return new EqualsBuilder()
+				.append(state, other.state)
+				.append(mode, other.mode)
+				.append(lock, other.lock)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder()
+				.append(state)
+				.append(mode)
+				.append(lock)
+				.toHashCode();
+	}
 }
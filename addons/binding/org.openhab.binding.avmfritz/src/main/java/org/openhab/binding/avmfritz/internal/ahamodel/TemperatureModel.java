@@ -13,7 +13,10 @@ import java.math.BigDecimal;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
  * See {@link DevicelistModel}.
@@ -47,9 +50,32 @@ public class TemperatureModel {
 	}
 
 	public String toString() {
-		return new ToStringBuilder(this)
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
 		.append("celsius", this.getCelsius())
 		.append("offset", this.getOffset())
 		.toString();
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof TemperatureModel)) {
+			return false;
+		}
+		TemperatureModel other = (TemperatureModel) obj;
+		return new EqualsBuilder()
+				.append(celsius, other.celsius)
+				.append(offset, other.offset)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder()
+				.append(celsius)
+				.append(offset)
+				.toHashCode();
+	}
 }
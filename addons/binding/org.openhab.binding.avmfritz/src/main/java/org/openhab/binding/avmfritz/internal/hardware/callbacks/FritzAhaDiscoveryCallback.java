@@ -8,14 +8,11 @@
  */
 package org.openhab.binding.avmfritz.internal.hardware.callbacks;
 
-import java.io.StringReader;
-
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 
 import org.openhab.binding.avmfritz.internal.ahamodel.DeviceModel;
 import org.openhab.binding.avmfritz.internal.ahamodel.DevicelistModel;
+import org.openhab.binding.avmfritz.internal.ahamodel.DevicelistParser;
 import org.openhab.binding.avmfritz.internal.discovery.AvmDiscoveryService;
 import org.openhab.binding.avmfritz.internal.hardware.FritzahaWebInterface;
 import org.slf4j.Logger;
@@ -51,12 +48,7 @@ public class FritzAhaDiscoveryCallback extends FritzAhaReauthCallback {
 		if (this.isValidRequest()) {
 			logger.debug("discovery callback response " + response);
 			try {
-				JAXBContext jaxbContext = JAXBContext
-						.newInstance(DevicelistModel.class);
-				Unmarshaller jaxbUM = jaxbContext.createUnmarshaller();
-
-				DevicelistModel model = (DevicelistModel) jaxbUM
-						.unmarshal(new StringReader(response));
+				DevicelistModel model = DevicelistParser.parse(response);
 				if( model != null ) {
 					for( DeviceModel device : model.getDevicelist() )
 					{
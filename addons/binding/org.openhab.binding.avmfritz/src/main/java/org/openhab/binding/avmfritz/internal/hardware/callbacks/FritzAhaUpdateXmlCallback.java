@@ -8,17 +8,11 @@
  */
 package org.openhab.binding.avmfritz.internal.hardware.callbacks;
 
-import java.io.StringReader;
-
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 
-import org.eclipse.smarthome.core.thing.ThingStatus;
-import org.eclipse.smarthome.core.thing.ThingStatusDetail;
-import org.openhab.binding.avmfritz.handler.IFritzHandler;
-import org.openhab.binding.avmfritz.internal.ahamodel.DeviceModel;
+import org.openhab.binding.avmfritz.handler.DeviceListPolling;
 import org.openhab.binding.avmfritz.internal.ahamodel.DevicelistModel;
+import org.openhab.binding.avmfritz.internal.ahamodel.DevicelistParser;
 import org.openhab.binding.avmfritz.internal.hardware.FritzahaWebInterface;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,18 +31,18 @@ public class FritzAhaUpdateXmlCallback extends FritzAhaReauthCallback {
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
 	/**
-	 * Handler to update
+	 * Polling coordinator to update
 	 */
-	private IFritzHandler handler;
+	private DeviceListPolling polling;
 
 	/**
 	 * Constructor
 	 * @param webIface Webinterface to FRITZ!Box
-	 * @param handler Bridge handler taht will update things.
+	 * @param polling Polling coordinator that will update the handlers.
 	 */
-	public FritzAhaUpdateXmlCallback(FritzahaWebInterface webIface, IFritzHandler handler) {
+	public FritzAhaUpdateXmlCallback(FritzahaWebInterface webIface, DeviceListPolling polling) {
 		super(WEBSERVICE_PATH, "switchcmd=getdevicelistinfos", webIface, Method.GET, 1);
-		this.handler = handler;
+		this.polling = polling;
 	}
 
 	/**
@@ -57,20 +51,11 @@ public class FritzAhaUpdateXmlCallback extends FritzAhaReauthCallback {
 	public void execute(int status, String response) {
 		super.execute(status, response);
 		if (this.isValidRequest()) {
-			logger.trace("Received State response " + response);
+			logger.trace("Received State response {}", response);
 			try {
-				JAXBContext jaxbContext = JAXBContext
-						.newInstance(DevicelistModel.class);
-				Unmarshaller jaxbUM = jaxbContext.createUnmarshaller();
-
-				DevicelistModel model = (DevicelistModel) jaxbUM
-						.unmarshal(new StringReader(response));
+				DevicelistModel model = DevicelistParser.parse(response);
 				if( model != null ) {
-					for( DeviceModel device : model.getDevicelist() ) {
-						handler.addDeviceList(device);
-					}
-					handler.setStatusInfo(ThingStatus.ONLINE, 
-							ThingStatusDetail.NONE, "FritzBox online");
+					polling.onDeviceList(model);
 				} else {
 					logger.warn("no model in response");
 				}
@@ -33,4 +33,19 @@ public interface Homekit {
      * @param allow boolean indicating whether or not to allow unauthenticated requests
      */
     void allowUnauthenticatedRequests(boolean allow);
+
+    /**
+     * Returns the number of characteristic change notifications sent to HomeKit clients.
+     */
+    long getNotificationsSent();
+
+    /**
+     * Returns the number of item changes which have been coalesced into a pending notification.
+     */
+    long getNotificationsSuppressed();
+
+    /**
+     * Returns the number of item changes which have been dropped because too many notifications were pending.
+     */
+    long getNotificationsDropped();
 }
@@ -9,14 +9,11 @@
 package org.openhab.io.homekit.internal;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.openhab.io.homekit.internal.accessories.GroupedAccessory;
+import org.eclipse.smarthome.core.items.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,87 +21,88 @@ import com.beowulfe.hap.HomekitAccessory;
 import com.beowulfe.hap.HomekitRoot;
 
 /**
- * Stores the created HomekitAccessories. GroupedAccessories are also held here
- * in a pre-created pending state until all required characteristics are found.
+ * Stores the created HomekitAccessories together with the signature of the items they have been created from. An
+ * accessory is only replaced on the bridge if its signature changes or if one of its items has been replaced by a new
+ * instance, e.g. when an items file is reloaded, because the accessory is subscribed to the old instances.
  *
  * @author Andy Lintner
  */
 class HomekitAccessoryRegistry {
 
     private HomekitRoot bridge;
-    private final List<HomekitAccessory> createdAccessories = new LinkedList<>();
-    private final Set<Integer> createdIds = new HashSet<>();
-    private final Map<String, GroupedAccessory> pendingGroupedAccessories = new HashMap<>();
-    private final List<HomekitTaggedItem> pendingCharacteristics = new LinkedList<>();
+    private final Map<Integer, CreatedAccessory> createdAccessories = new HashMap<>();
 
     private final Logger logger = LoggerFactory.getLogger(HomekitAccessoryRegistry.class);
 
-    public void remove(HomekitTaggedItem taggedItem) {
-        Iterator<HomekitAccessory> i = createdAccessories.iterator();
-        while (i.hasNext()) {
-            HomekitAccessory accessory = i.next();
-            if (accessory.getId() == taggedItem.getId()) {
-                logger.debug("Removed accessory " + accessory.getId());
-                bridge.removeAccessory(accessory);
-                i.remove();
-            }
-        }
+    /**
+     * Returns true, if an accessory with the id has been created from the same item instances with the same signature.
+     */
+    public synchronized boolean contains(int id, String signature, Set<Item> items) {
+        CreatedAccessory created = createdAccessories.get(id);
+        return created != null && created.signature.equals(signature) && created.items.equals(items);
     }
 
-    public synchronized void clear() {
-        while (!createdAccessories.isEmpty()) {
-            bridge.removeAccessory(createdAccessories.remove(0));
-        }
-        createdIds.clear();
-    }
-
-    public synchronized void setBridge(HomekitRoot bridge) {
-        this.bridge = bridge;
-        createdAccessories.forEach(accessory -> bridge.addAccessory(accessory));
-    }
-
-    public synchronized void addRootDevice(HomekitAccessory accessory) {
-        if (accessory instanceof GroupedAccessory) {
-            GroupedAccessory groupedAccessory = (GroupedAccessory) accessory;
-            pendingGroupedAccessories.put(groupedAccessory.getGroupName(), groupedAccessory);
-            for (HomekitTaggedItem characteristic : pendingCharacteristics) {
-                if (characteristic.getItem().getGroupNames().contains(groupedAccessory.getGroupName())) {
-                    addCharacteristicToGroup(groupedAccessory.getGroupName(), characteristic);
+    /**
+     * Removes all accessories, which are not contained in the signatures, have a different signature or have been
+     * created from other item instances.
+     *
+     * @param signatures the signatures of the accessories by id
+     * @param items the item instances of the accessories by id, compared by identity
+     * @return the number of removed accessories
+     */
+    public synchronized int retain(Map<Integer, String> signatures, Map<Integer, Set<Item>> items) {
+        int removed = 0;
+        Iterator<CreatedAccessory> i = createdAccessories.values().iterator();
+        while (i.hasNext()) {
+            CreatedAccessory created = i.next();
+            int id = created.accessory.getId();
+            if (!created.signature.equals(signatures.get(id)) || !created.items.equals(items.get(id))) {
+                if (bridge != null) {
+                    bridge.removeAccessory(created.accessory);
                 }
+                i.remove();
+                removed++;
+                logger.debug("Removed accessory " + created.accessory.getId());
             }
-        } else {
-            doAddDevice(accessory);
         }
+        return removed;
     }
 
-    public synchronized void addCharacteristic(HomekitTaggedItem item) {
-        for (String group : item.getItem().getGroupNames()) {
-            if (pendingGroupedAccessories.containsKey(group)) {
-                addCharacteristicToGroup(group, item);
-                logger.debug("Added " + item.getItem().getName() + " to " + group);
-                return;
+    public synchronized void add(HomekitAccessory accessory, String signature, Set<Item> items) {
+        CreatedAccessory previous = createdAccessories.put(accessory.getId(),
+                new CreatedAccessory(accessory, signature, items));
+        if (bridge != null) {
+            if (previous != null) {
+                bridge.removeAccessory(previous.accessory);
             }
+            bridge.addAccessory(accessory);
         }
-        pendingCharacteristics.add(item);
-        logger.debug("Stored " + item.getItem().getName() + " until group is ready");
+        logger.debug("Added accessory " + accessory.getId());
     }
 
-    private void addCharacteristicToGroup(String group, HomekitTaggedItem item) {
-        GroupedAccessory accessory = pendingGroupedAccessories.get(group);
-        accessory.addCharacteristic(item);
-        if (accessory.isComplete()) {
-            pendingGroupedAccessories.remove(group);
-            doAddDevice(accessory);
+    public synchronized void clear() {
+        if (bridge != null) {
+            createdAccessories.values().forEach(created -> bridge.removeAccessory(created.accessory));
         }
+        createdAccessories.clear();
     }
 
-    private void doAddDevice(HomekitAccessory accessory) {
-        createdAccessories.add(accessory);
-        createdIds.add(accessory.getId());
+    public synchronized void setBridge(HomekitRoot bridge) {
+        this.bridge = bridge;
         if (bridge != null) {
-            bridge.addAccessory(accessory);
+            createdAccessories.values().forEach(created -> bridge.addAccessory(created.accessory));
         }
-        logger.debug("Added accessory " + accessory.getId());
     }
 
+    private static class CreatedAccessory {
+        private final HomekitAccessory accessory;
+        private final String signature;
+        private final Set<Item> items;
+
+        private CreatedAccessory(HomekitAccessory accessory, String signature, Set<Item> items) {
+            this.accessory = accessory;
+            this.signature = signature;
+            this.items = items;
+        }
+    }
 }
@@ -10,6 +10,11 @@ package org.openhab.io.homekit.internal;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
@@ -26,12 +31,28 @@ import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
  * Homekit library takes care of insuring only a single subscription exists for
  * each accessory.
  *
+ * Notifications are not sent on the thread changing the item state. The first change of an item/key pair schedules
+ * a notification at the end of the notification window, further changes within the window are coalesced into it.
+ * Homekit reads the current value when notified, so clients always receive the latest state.
+ *
  * @author Andy Lintner
  */
 public class HomekitAccessoryUpdater {
 
+    private static final int MAX_PENDING_NOTIFICATIONS = 1024;
+
     private Logger logger = LoggerFactory.getLogger(HomekitAccessoryUpdater.class);
     private final ConcurrentMap<ItemKey, Subscription> subscriptionsByName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ItemKey, HomekitCharacteristicChangeCallback> pendingNotifications = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "homekit-notifications");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong notificationsSent = new AtomicLong();
+    private final AtomicLong notificationsSuppressed = new AtomicLong();
+    private final AtomicLong notificationsDropped = new AtomicLong();
+    private volatile long notificationWindow = HomekitSettings.DEFAULT_NOTIFICATION_WINDOW;
 
     public void subscribe(GenericItem item, HomekitCharacteristicChangeCallback callback) {
         subscribe(item, null, callback);
@@ -50,7 +71,7 @@ public class HomekitAccessoryUpdater {
                 logger.error("Received duplicate subscription on " + item.getName());
                 unsubscribe(item, key);
             }
-            Subscription subscription = (changedItem, oldState, newState) -> callback.changed();
+            Subscription subscription = (changedItem, oldState, newState) -> notifyChanged(itemKey, callback);
             item.addStateChangeListener(subscription);
             return subscription;
         });
@@ -64,10 +85,78 @@ public class HomekitAccessoryUpdater {
         if (item == null) {
             return;
         }
-        subscriptionsByName.computeIfPresent(new ItemKey(item, key), (k, v) -> {
+        ItemKey itemKey = new ItemKey(item, key);
+        subscriptionsByName.computeIfPresent(itemKey, (k, v) -> {
             item.removeStateChangeListener(v);
             return null;
         });
+        pendingNotifications.remove(itemKey);
+    }
+
+    /**
+     * Sets the time in milliseconds in which changes of a characteristic are coalesced into one notification.
+     */
+    public void setNotificationWindow(long notificationWindow) {
+        this.notificationWindow = Math.max(0, notificationWindow);
+    }
+
+    /**
+     * Returns the number of notifications sent to Homekit.
+     */
+    public long getNotificationsSent() {
+        return notificationsSent.get();
+    }
+
+    /**
+     * Returns the number of changes which have been coalesced into a pending notification.
+     */
+    public long getNotificationsSuppressed() {
+        return notificationsSuppressed.get();
+    }
+
+    /**
+     * Returns the number of changes which have been dropped because too many notifications were pending.
+     */
+    public long getNotificationsDropped() {
+        return notificationsDropped.get();
+    }
+
+    /**
+     * Stops the delivery of notifications.
+     */
+    public void stop() {
+        dispatcher.shutdownNow();
+        pendingNotifications.clear();
+    }
+
+    private void notifyChanged(ItemKey itemKey, HomekitCharacteristicChangeCallback callback) {
+        if (pendingNotifications.putIfAbsent(itemKey, callback) != null) {
+            notificationsSuppressed.incrementAndGet();
+            return;
+        }
+        if (pendingNotifications.size() > MAX_PENDING_NOTIFICATIONS) {
+            pendingNotifications.remove(itemKey);
+            notificationsDropped.incrementAndGet();
+            logger.debug("Too many pending notifications, dropped change of {}", itemKey.item.getName());
+            return;
+        }
+        try {
+            dispatcher.schedule(() -> deliver(itemKey), notificationWindow, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pendingNotifications.remove(itemKey);
+        }
+    }
+
+    private void deliver(ItemKey itemKey) {
+        HomekitCharacteristicChangeCallback callback = pendingNotifications.remove(itemKey);
+        if (callback != null) {
+            try {
+                callback.changed();
+                notificationsSent.incrementAndGet();
+            } catch (Exception e) {
+                logger.error("Could not notify change of " + itemKey.item.getName(), e);
+            }
+        }
     }
 
     @FunctionalInterface
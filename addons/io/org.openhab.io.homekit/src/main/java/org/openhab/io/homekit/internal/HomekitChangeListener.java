@@ -8,75 +8,106 @@
  */
 package org.openhab.io.homekit.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.openhab.io.homekit.internal.accessories.GroupedAccessory;
 import org.openhab.io.homekit.internal.accessories.HomekitAccessoryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.beowulfe.hap.HomekitAccessory;
 import com.beowulfe.hap.HomekitRoot;
 
 /**
  * Listens for changes to the item registry. When changes are detected, check
  * for Homekit tags and, if present, add the items to the HomekitAccessoryRegistry.
  *
+ * Changes are collected and applied in one batch shortly after the last change, so reloading an items file results
+ * in a single update. The accessories are compared with the ones already created by their signature and their item
+ * instances and only added, replaced or removed if either differs.
+ *
  * @author Andy Lintner
  */
 public class HomekitChangeListener implements ItemRegistryChangeListener {
 
+    private static final long UPDATE_DELAY = 500;
+
     private ItemRegistry itemRegistry;
     private HomekitAccessoryUpdater updater = new HomekitAccessoryUpdater();
     private Logger logger = LoggerFactory.getLogger(HomekitChangeListener.class);
     private final HomekitAccessoryRegistry accessoryRegistry = new HomekitAccessoryRegistry();
     private HomekitSettings settings;
 
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "homekit-registry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> changedItemNames = new HashSet<>();
+    private ScheduledFuture<?> updateFuture;
+
+    // only accessed from the update thread
+    private final Map<String, HomekitTaggedItem> taggedItems = new HashMap<>();
+
     @Override
-    public synchronized void added(Item item) {
-        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
-        if (taggedItem.isTagged()) {
-            if (taggedItem.isRootDevice()) {
-                createRootDevice(taggedItem);
-            }
-            if (taggedItem.isCharacteristic()) {
-                createCharacteristic(taggedItem);
-            }
-        }
+    public void added(Item item) {
+        itemChanged(item.getName());
     }
 
     @Override
     public void allItemsChanged(Collection<String> oldItemNames) {
-        clearAccessories();
+        synchronized (changedItemNames) {
+            changedItemNames.addAll(oldItemNames);
+            for (Item item : itemRegistry.getItems()) {
+                changedItemNames.add(item.getName());
+            }
+        }
+        scheduleUpdate(UPDATE_DELAY);
     }
 
     @Override
-    public synchronized void removed(Item item) {
-        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
-        if (taggedItem.isTagged()) {
-            accessoryRegistry.remove(taggedItem);
-        }
+    public void removed(Item item) {
+        itemChanged(item.getName());
     }
 
     @Override
     public void updated(Item oldElement, Item element) {
-        removed(oldElement);
-        added(element);
+        itemChanged(element.getName());
     }
 
-    public synchronized void clearAccessories() {
+    public void clearAccessories() {
         accessoryRegistry.clear();
     }
 
-    public synchronized void setBridge(HomekitRoot bridge) {
+    public void setBridge(HomekitRoot bridge) {
         accessoryRegistry.setBridge(bridge);
     }
 
     public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
         itemRegistry.addRegistryChangeListener(this);
-        itemRegistry.getAll().forEach(item -> added(item));
+        synchronized (changedItemNames) {
+            itemRegistry.getAll().forEach(item -> changedItemNames.add(item.getName()));
+        }
+        scheduleUpdate(0);
     }
 
     public void setUpdater(HomekitAccessoryUpdater updater) {
@@ -85,27 +116,182 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
 
     public void setSettings(HomekitSettings settings) {
         this.settings = settings;
+        updater.setNotificationWindow(settings.getNotificationWindow());
+    }
+
+    public HomekitAccessoryUpdater getUpdater() {
+        return updater;
     }
 
     public void stop() {
         if (this.itemRegistry != null) {
             this.itemRegistry.removeRegistryChangeListener(this);
         }
+        scheduler.shutdownNow();
+        updater.stop();
+    }
+
+    private void itemChanged(String itemName) {
+        synchronized (changedItemNames) {
+            changedItemNames.add(itemName);
+        }
+        scheduleUpdate(UPDATE_DELAY);
+    }
+
+    /**
+     * Schedules the update of the accessories, a pending update is postponed.
+     */
+    private void scheduleUpdate(long delay) {
+        synchronized (changedItemNames) {
+            if (updateFuture != null) {
+                updateFuture.cancel(false);
+            }
+            try {
+                updateFuture = scheduler.schedule(() -> update(), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Homekit registry already stopped");
+            }
+        }
+    }
+
+    /**
+     * Updates the tagged items of the changed items and applies the differences to the accessory registry.
+     */
+    private synchronized void update() {
+        Set<String> changed;
+        synchronized (changedItemNames) {
+            changed = new HashSet<>(changedItemNames);
+            changedItemNames.clear();
+        }
+        if (changed.isEmpty() || itemRegistry == null) {
+            return;
+        }
+
+        for (String itemName : changed) {
+            Item item = itemRegistry.get(itemName);
+            updateTaggedItem(itemName, item);
+            // the members of a group may become characteristics, if the tags of the group change
+            if (item instanceof GroupItem) {
+                for (Item member : ((GroupItem) item).getMembers()) {
+                    updateTaggedItem(member.getName(), member);
+                }
+            }
+        }
+
+        Map<String, List<HomekitTaggedItem>> characteristicsByGroup = new HashMap<>();
+        for (HomekitTaggedItem taggedItem : taggedItems.values()) {
+            if (taggedItem.isCharacteristic()) {
+                for (String groupName : taggedItem.getItem().getGroupNames()) {
+                    List<HomekitTaggedItem> characteristics = characteristicsByGroup.get(groupName);
+                    if (characteristics == null) {
+                        characteristics = new ArrayList<>();
+                        characteristicsByGroup.put(groupName, characteristics);
+                    }
+                    characteristics.add(taggedItem);
+                }
+            }
+        }
+
+        Map<Integer, String> signatures = new HashMap<>();
+        Map<Integer, Set<Item>> itemInstances = new HashMap<>();
+        List<HomekitTaggedItem> rootDevices = new ArrayList<>();
+        for (HomekitTaggedItem taggedItem : taggedItems.values()) {
+            if (taggedItem.isRootDevice() && taggedItem.getId() != 0) {
+                List<HomekitTaggedItem> characteristics = characteristicsByGroup.get(taggedItem.getItem().getName());
+                signatures.put(taggedItem.getId(), getSignature(taggedItem, characteristics));
+                itemInstances.put(taggedItem.getId(), getItemInstances(taggedItem, characteristics));
+                rootDevices.add(taggedItem);
+            }
+        }
+
+        int removed = accessoryRegistry.retain(signatures, itemInstances);
+        int added = 0;
+        for (HomekitTaggedItem taggedItem : rootDevices) {
+            String signature = signatures.get(taggedItem.getId());
+            Set<Item> items = itemInstances.get(taggedItem.getId());
+            if (!accessoryRegistry.contains(taggedItem.getId(), signature, items)) {
+                if (createRootDevice(taggedItem, characteristicsByGroup.get(taggedItem.getItem().getName()),
+                        signature, items)) {
+                    added++;
+                }
+            }
+        }
+        logger.debug("Updated homekit accessories for {} changed items: {} removed, {} added", changed.size(),
+                removed, added);
+    }
+
+    private void updateTaggedItem(String itemName, Item item) {
+        if (item == null) {
+            taggedItems.remove(itemName);
+            return;
+        }
+        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
+        if (taggedItem.isTagged()) {
+            taggedItems.put(itemName, taggedItem);
+        } else {
+            taggedItems.remove(itemName);
+        }
+    }
+
+    /**
+     * Returns the signature of the data an accessory is created from, the accessory must be recreated if it changes.
+     */
+    private String getSignature(HomekitTaggedItem taggedItem, List<HomekitTaggedItem> characteristics) {
+        Item item = taggedItem.getItem();
+        StringBuilder signature = new StringBuilder();
+        signature.append(taggedItem.getDeviceType()).append('|').append(item.getType()).append('|')
+                .append(item.getLabel());
+        if (characteristics != null) {
+            Set<String> sorted = new TreeSet<>();
+            for (HomekitTaggedItem characteristic : characteristics) {
+                sorted.add(characteristic.getCharacteristicType() + "=" + characteristic.getItem().getName());
+            }
+            signature.append('|').append(sorted);
+        }
+        return signature.toString();
     }
 
-    private void createRootDevice(HomekitTaggedItem taggedItem) {
+    /**
+     * Returns the item instances an accessory subscribes to. A reloaded item is a new instance with the same signature,
+     * the accessory must be recreated to subscribe to the new instance.
+     */
+    private Set<Item> getItemInstances(HomekitTaggedItem taggedItem, List<HomekitTaggedItem> characteristics) {
+        Set<Item> items = Collections.newSetFromMap(new IdentityHashMap<>());
+        items.add(taggedItem.getItem());
+        if (characteristics != null) {
+            for (HomekitTaggedItem characteristic : characteristics) {
+                items.add(characteristic.getItem());
+            }
+        }
+        return items;
+    }
+
+    private boolean createRootDevice(HomekitTaggedItem taggedItem, List<HomekitTaggedItem> characteristics,
+            String signature, Set<Item> items) {
         try {
             logger.debug("Adding homekit device " + taggedItem.getItem().getName());
-            accessoryRegistry
-                    .addRootDevice(HomekitAccessoryFactory.create(taggedItem, itemRegistry, updater, settings));
+            HomekitAccessory accessory = HomekitAccessoryFactory.create(taggedItem, itemRegistry, updater, settings);
+            if (accessory instanceof GroupedAccessory) {
+                GroupedAccessory groupedAccessory = (GroupedAccessory) accessory;
+                if (characteristics != null) {
+                    for (HomekitTaggedItem characteristic : characteristics) {
+                        groupedAccessory.addCharacteristic(characteristic);
+                        logger.debug("Added " + characteristic.getItem().getName() + " to "
+                                + groupedAccessory.getGroupName());
+                    }
+                }
+                if (!groupedAccessory.isComplete()) {
+                    logger.debug("Homekit device " + taggedItem.getItem().getName()
+                            + " is not complete, waiting for its characteristics");
+                    return false;
+                }
+            }
+            accessoryRegistry.add(accessory, signature, items);
             logger.debug("Added homekit device " + taggedItem.getItem().getName());
+            return true;
         } catch (Exception e) {
             logger.error("Could not add device: " + e.getMessage(), e);
+            return false;
         }
     }
-
-    private void createCharacteristic(HomekitTaggedItem taggedItem) {
-        logger.debug("Adding grouped homekit characteristic " + taggedItem.getItem().getName());
-        accessoryRegistry.addCharacteristic(taggedItem);
-    }
 }
@@ -88,6 +88,21 @@ public class HomekitImpl implements Homekit {
         }
     }
 
+    @Override
+    public long getNotificationsSent() {
+        return changeListener.getUpdater().getNotificationsSent();
+    }
+
+    @Override
+    public long getNotificationsSuppressed() {
+        return changeListener.getUpdater().getNotificationsSuppressed();
+    }
+
+    @Override
+    public long getNotificationsDropped() {
+        return changeListener.getUpdater().getNotificationsDropped();
+    }
+
     private void start() throws IOException, InvalidAlgorithmParameterException {
         homekit = new HomekitServer(settings.getNetworkInterface(), settings.getPort());
         bridge = homekit.createBridge(new HomekitAuthInfoImpl(storageService, settings.getPin()), settings.getName(),
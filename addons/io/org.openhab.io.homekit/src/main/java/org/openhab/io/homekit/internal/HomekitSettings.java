@@ -24,6 +24,7 @@ public class HomekitSettings {
     private final static String NAME = "openHAB";
     private final static String MANUFACTURER = "openHAB";
     private final static String SERIAL_NUMBER = "none";
+    public final static long DEFAULT_NOTIFICATION_WINDOW = 250;
 
     private int port = 9123;
     private String pin = "031-45-154";
@@ -35,6 +36,7 @@ public class HomekitSettings {
     private String thermostatAutoMode = "Auto";
     private String thermostatOffMode = "Off";
     private InetAddress networkInterface;
+    private long notificationWindow = DEFAULT_NOTIFICATION_WINDOW;
 
     public void fill(Dictionary<String, ?> properties) throws UnknownHostException {
         Object port = properties.get("port");
@@ -69,6 +71,13 @@ public class HomekitSettings {
         this.thermostatAutoMode = (String) properties.get("thermostatAutoMode");
         this.thermostatOffMode = (String) properties.get("thermostatOffMode");
 
+        Object notificationWindow = properties.get("notificationWindow");
+        if (notificationWindow instanceof Number) {
+            this.notificationWindow = ((Number) notificationWindow).longValue();
+        } else if (notificationWindow instanceof String) {
+            this.notificationWindow = Long.parseLong((String) notificationWindow);
+        }
+
         String networkInterface = (String) properties.get("networkInterface");
         if (networkInterface == null) {
             this.networkInterface = InetAddress.getLocalHost();
@@ -140,6 +149,10 @@ public class HomekitSettings {
         return thermostatOffMode;
     }
 
+    public long getNotificationWindow() {
+        return notificationWindow;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -156,6 +169,7 @@ public class HomekitSettings {
         result = prime * result + ((thermostatHeatMode == null) ? 0 : thermostatHeatMode.hashCode());
         result = prime * result + ((thermostatOffMode == null) ? 0 : thermostatOffMode.hashCode());
         result = prime * result + (useFahrenheitTemperature ? 1231 : 1237);
+        result = prime * result + (int) (notificationWindow ^ (notificationWindow >>> 32));
         return result;
     }
 
@@ -218,6 +232,9 @@ public class HomekitSettings {
         if (useFahrenheitTemperature != other.useFahrenheitTemperature) {
             return false;
         }
+        if (notificationWindow != other.notificationWindow) {
+            return false;
+        }
         return true;
     }
 
@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.io.hueemulation.internal.api.HueDataStore;
+import org.openhab.io.hueemulation.internal.api.HueDevice;
+import org.openhab.io.hueemulation.internal.api.HueGroup;
+import org.openhab.io.hueemulation.internal.api.HueState;
+
+import com.google.gson.Gson;
+
+/**
+ * Index of all items with a supported tag, maintained from item registry changes and item state changes. The JSON
+ * views of the Hue API are cached and only serialized again after a relevant change, every cached view carries a
+ * version which is used as ETag.
+ *
+ * @author Dan Cunningham
+ * @author agent - Indexed device lookup extracted from HueEmulationServlet
+ *
+ */
+public class HueDeviceIndex implements ItemRegistryChangeListener {
+    private static final Set<String> SUPPORTED_TAGS = new HashSet<String>(
+            Arrays.asList("Switchable", "Lighting", "TargetTemperature"));
+
+    private final Gson gson = new Gson();
+    private final Map<String, IndexedItem> items = new ConcurrentHashMap<String, IndexedItem>();
+
+    /**
+     * Incremented on every change, versions are unique within the lifetime of the index.
+     */
+    private final AtomicLong versionCounter = new AtomicLong();
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    // version of the tagged item set and labels, and version of any change including states
+    private volatile long structureVersion;
+    private volatile long stateVersion;
+
+    private volatile CachedJson lightsJson;
+    private volatile CachedJson groupZeroJson;
+    private volatile CachedJson dataStoreJson;
+
+    private ItemRegistry itemRegistry;
+
+    /**
+     * Starts listening to the item registry and indexes all tagged items.
+     */
+    public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
+        this.itemRegistry = itemRegistry;
+        itemRegistry.addRegistryChangeListener(this);
+        reindex();
+    }
+
+    /**
+     * Stops listening to the item registry and clears the index.
+     */
+    public synchronized void unsetItemRegistry(ItemRegistry itemRegistry) {
+        itemRegistry.removeRegistryChangeListener(this);
+        this.itemRegistry = null;
+        items.clear();
+        structureChanged();
+    }
+
+    @Override
+    public synchronized void added(Item item) {
+        if (isTagged(item)) {
+            items.put(item.getName(), new IndexedItem(item, versionCounter.incrementAndGet()));
+            structureChanged();
+        }
+    }
+
+    @Override
+    public synchronized void removed(Item item) {
+        if (items.remove(item.getName()) != null) {
+            structureChanged();
+        }
+    }
+
+    @Override
+    public synchronized void updated(Item oldItem, Item item) {
+        items.remove(oldItem.getName());
+        if (isTagged(item)) {
+            items.put(item.getName(), new IndexedItem(item, versionCounter.incrementAndGet()));
+        }
+        structureChanged();
+    }
+
+    @Override
+    public synchronized void allItemsChanged(Collection<String> oldItemNames) {
+        reindex();
+    }
+
+    /**
+     * Invalidates the cached views containing the state of the item, does nothing if the item is not indexed.
+     */
+    public void stateChanged(String itemName) {
+        IndexedItem indexedItem = items.get(itemName);
+        if (indexedItem != null) {
+            long version = versionCounter.incrementAndGet();
+            indexedItem.version = version;
+            stateVersion = version;
+        }
+    }
+
+    /**
+     * Returns true, if the item is indexed.
+     */
+    public boolean contains(String itemName) {
+        return items.containsKey(itemName);
+    }
+
+    /**
+     * Returns the names of all indexed items.
+     */
+    public Set<String> getItemNames() {
+        return Collections.unmodifiableSet(items.keySet());
+    }
+
+    /**
+     * Returns the JSON of a single light, null if the item is not indexed.
+     */
+    public CachedJson getLightJson(String itemName) {
+        IndexedItem indexedItem = items.get(itemName);
+        if (indexedItem == null) {
+            return null;
+        }
+        long version = indexedItem.version;
+        CachedJson cached = indexedItem.json;
+        if (cached == null || cached.version != version) {
+            cached = new CachedJson(gson.toJson(toDevice(indexedItem.item)), version);
+            indexedItem.json = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the JSON of the light listing, a map of item name to label.
+     */
+    public CachedJson getLightsJson() {
+        long version = structureVersion;
+        CachedJson cached = lightsJson;
+        if (cached == null || cached.version != version) {
+            Map<String, String> names = new HashMap<String, String>();
+            for (IndexedItem indexedItem : items.values()) {
+                names.put(indexedItem.item.getName(), indexedItem.item.getLabel());
+            }
+            cached = new CachedJson(gson.toJson(names), version);
+            lightsJson = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the JSON of group 0, which contains all lights.
+     */
+    public CachedJson getGroupZeroJson() {
+        long version = structureVersion;
+        CachedJson cached = groupZeroJson;
+        if (cached == null || cached.version != version) {
+            String[] lights = items.keySet().toArray(new String[0]);
+            cached = new CachedJson(gson.toJson(new HueGroup("0", lights, new HueState())), version);
+            groupZeroJson = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the JSON of the data store with all lights.
+     */
+    public CachedJson getDataStoreJson() {
+        long version = stateVersion;
+        CachedJson cached = dataStoreJson;
+        if (cached == null || cached.version != version) {
+            HueDataStore ds = new HueDataStore();
+            ds.lights = new HashMap<String, HueDevice>();
+            for (IndexedItem indexedItem : items.values()) {
+                ds.lights.put(indexedItem.item.getName(), toDevice(indexedItem.item));
+            }
+            cached = new CachedJson(gson.toJson(ds), version);
+            dataStoreJson = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Converts an Item to a HueDevice
+     *
+     * @param item
+     * @return
+     *         HueDevice
+     */
+    public HueDevice toDevice(Item item) {
+        State itemState = item.getState();
+        HueState hueState;
+        if (itemState instanceof HSBType) {
+            HSBType color = (HSBType) itemState;
+            hueState = new HueState(color);
+        } else if (itemState instanceof DecimalType) {
+            short bri = (short) ((((DecimalType) itemState).intValue() * 255) / 100);
+            hueState = new HueState(bri);
+        } else if (itemState instanceof OnOffType) {
+            short bri = (short) (((OnOffType) itemState) == OnOffType.ON ? 255 : 0);
+            hueState = new HueState(bri);
+        } else {
+            hueState = new HueState((short) 0);
+        }
+
+        return new HueDevice(hueState, item.getLabel(), item.getName());
+    }
+
+    private void reindex() {
+        items.clear();
+        if (itemRegistry != null) {
+            for (Item item : itemRegistry.getItems()) {
+                if (isTagged(item)) {
+                    items.put(item.getName(), new IndexedItem(item, versionCounter.incrementAndGet()));
+                }
+            }
+        }
+        structureChanged();
+    }
+
+    private void structureChanged() {
+        long version = versionCounter.incrementAndGet();
+        structureVersion = version;
+        stateVersion = version;
+    }
+
+    private boolean isTagged(Item item) {
+        for (String tag : item.getTags()) {
+            if (SUPPORTED_TAGS.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * An indexed item with the version of its last change and its cached JSON.
+     */
+    private static class IndexedItem {
+        private final Item item;
+        private volatile long version;
+        private volatile CachedJson json;
+
+        private IndexedItem(Item item, long version) {
+            this.item = item;
+            this.version = version;
+        }
+    }
+
+    /**
+     * A serialized view with the version it has been created for.
+     */
+    public class CachedJson {
+        private final String json;
+        private final long version;
+
+        private CachedJson(String json, long version) {
+            this.json = json;
+            this.version = version;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        /**
+         * Returns the quoted entity tag of this view.
+         */
+        public String getETag() {
+            return "\"" + etagPrefix + version + "\"";
+        }
+    }
+}
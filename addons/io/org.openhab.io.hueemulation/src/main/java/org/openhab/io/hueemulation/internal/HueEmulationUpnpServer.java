@@ -9,15 +9,30 @@
 package org.openhab.io.hueemulation.internal;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
+import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
-import java.net.SocketException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -26,6 +41,11 @@ import org.slf4j.LoggerFactory;
 /**
  * Advertises a Hue UPNP compatible bridge
  *
+ * The server joins the SSDP multicast group on every suitable interface with a single non blocking channel. The
+ * response datagrams are rendered once per interface address, a requester gets the response of the address in its
+ * own subnet. Replies are delayed by a random jitter and sent at most once per second to the same requester.
+ * Interfaces are checked periodically, so interface changes do not require a restart.
+ *
  * @author Dan Cunningham
  *
  */
@@ -35,16 +55,43 @@ public class HueEmulationUpnpServer extends Thread {
     // jUPNP shares port 1900, but since this is multicast, we can also bind to it
     static final private int UPNP_PORT_RECV = 1900;
     static final private String MULTI_ADDR = "239.255.255.250";
-    private boolean running;
+    static final private Charset CHARSET = Charset.forName("ISO-8859-1");
+    static final private byte[] M_SEARCH = "M-SEARCH".getBytes(CHARSET);
+
+    static final private long INTERFACE_CHECK_INTERVAL = 60000;
+    static final private long REQUESTER_MIN_INTERVAL = 1000;
+    static final private int MAX_JITTER = 500;
+    static final private int MAX_REQUESTERS = 256;
+    static final private int MAX_PENDING_REPLIES = 256;
+
+    private volatile boolean running;
     private String discoPath;
     private String usn;
-    private InetAddress address;
+    private volatile InetAddress address;
     private String discoveryIp;
+    private boolean discoveryInterfaceMissing;
 
     private String discoString = "HTTP/1.1 200 OK\r\n" + "CACHE-CONTROL: max-age=100\r\n" + "EXT:\r\n"
             + "LOCATION: %s\r\n" + "SERVER: FreeRTOS/7.4.2 UPnP/1.0 IpBridge/1.10.0\r\n"
             + "ST: urn:schemas-upnp-org:device:basic:1\r\n" + "USN: uuid:%s::urn:Belkin:device:**\r\n\r\n";
 
+    private volatile Selector selector;
+    private DatagramChannel recvChannel;
+    // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
+    private DatagramChannel sendChannel;
+    private final Map<String, MembershipKey> memberships = new HashMap<String, MembershipKey>();
+    private List<InterfaceResponse> responses = Collections.emptyList();
+    private final PriorityQueue<PendingReply> pendingReplies = new PriorityQueue<PendingReply>();
+    private final Random random = new Random();
+
+    @SuppressWarnings("serial")
+    private final Map<InetAddress, Long> lastReplies = new LinkedHashMap<InetAddress, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<InetAddress, Long> eldest) {
+            return size() > MAX_REQUESTERS;
+        }
+    };
+
     /**
      * Server to send UDP packets onto the network when requested by a Hue API compatible device.
      *
@@ -56,6 +103,7 @@ public class HueEmulationUpnpServer extends Thread {
      *            Optional IP to use advertise for UPNP, if null the first available non localhost IP will be used
      */
     public HueEmulationUpnpServer(String discoPath, String usn, String discoveryIP) {
+        super("HueEmulationUpnpServer");
         this.running = true;
         this.discoPath = discoPath;
         this.usn = usn;
@@ -67,67 +115,22 @@ public class HueEmulationUpnpServer extends Thread {
      */
     public void shutdown() {
         this.running = false;
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
     }
 
     @Override
     public void run() {
-        MulticastSocket recvSocket = null;
-        // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
-        DatagramSocket sendSocket = null;
-        byte[] buf = new byte[1000];
-        DatagramPacket recv = new DatagramPacket(buf, buf.length);
         while (running) {
             try {
-                if (discoveryIp != null && discoveryIp.trim().length() > 0) {
-                    address = InetAddress.getByName(discoveryIp);
-                } else {
-                    Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-                    while (interfaces.hasMoreElements()) {
-                        NetworkInterface ni = interfaces.nextElement();
-                        Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                        while (addresses.hasMoreElements()) {
-                            InetAddress addr = addresses.nextElement();
-                            if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
-                                address = addr;
-                                break;
-                            }
-                        }
-                    }
-                }
-                InetSocketAddress socketAddr = new InetSocketAddress(MULTI_ADDR, UPNP_PORT_RECV);
-                recvSocket = new MulticastSocket(UPNP_PORT_RECV);
-                recvSocket.joinGroup(socketAddr, NetworkInterface.getByInetAddress(address));
-                sendSocket = new DatagramSocket();
-                while (running) {
-                    recvSocket.receive(recv);
-                    if (recv.getLength() > 0) {
-                        String data = new String(recv.getData());
-                        logger.trace("Got SSDP Discovery packet from " + recv.getAddress().getHostAddress() + ":"
-                                + recv.getPort());
-                        if (data.startsWith("M-SEARCH")) {
-                            String msg = String
-                                    .format(discoString,
-                                            "http://" + address.getHostAddress().toString() + ":"
-                                                    + System.getProperty("org.osgi.service.http.port") + discoPath,
-                                            usn);
-                            DatagramPacket response = new DatagramPacket(msg.getBytes(), msg.length(),
-                                    recv.getAddress(), recv.getPort());
-                            try {
-                                logger.trace("Sending to " + recv.getAddress().getHostAddress() + " : " + msg);
-                                sendSocket.send(response);
-                            } catch (IOException e) {
-                                logger.error("Could not send UPNP response", e);
-                            }
-                        }
-                    }
-                }
-            } catch (SocketException e) {
-                logger.error("Socket error with UPNP server", e);
+                open();
+                serve();
             } catch (IOException e) {
                 logger.error("IO Error with UPNP server", e);
             } finally {
-                IOUtils.closeQuietly(recvSocket);
-                IOUtils.closeQuietly(sendSocket);
+                close();
                 if (running) {
                     try {
                         Thread.sleep(3000);
@@ -141,4 +144,289 @@ public class HueEmulationUpnpServer extends Thread {
     public InetAddress getAddress() {
         return address;
     }
+
+    /**
+     * Opens the channels, the multicast group is joined on the next interface check.
+     */
+    private void open() throws IOException {
+        selector = Selector.open();
+        recvChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+        recvChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        recvChannel.bind(new InetSocketAddress(UPNP_PORT_RECV));
+        recvChannel.configureBlocking(false);
+        recvChannel.register(selector, SelectionKey.OP_READ);
+        sendChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+        sendChannel.configureBlocking(false);
+        if (!running) {
+            // shutdown has been called before the selector was available
+            selector.wakeup();
+        }
+    }
+
+    private void close() {
+        memberships.clear();
+        pendingReplies.clear();
+        IOUtils.closeQuietly(recvChannel);
+        IOUtils.closeQuietly(sendChannel);
+        IOUtils.closeQuietly(selector);
+        recvChannel = null;
+        sendChannel = null;
+    }
+
+    /**
+     * Receives the search requests and sends the due replies until the server is stopped.
+     */
+    private void serve() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        long nextInterfaceCheck = 0;
+        while (running) {
+            long now = System.currentTimeMillis();
+            if (now >= nextInterfaceCheck) {
+                updateInterfaces();
+                nextInterfaceCheck = now + INTERFACE_CHECK_INTERVAL;
+            }
+            sendDueReplies(now);
+
+            long timeout = nextInterfaceCheck - now;
+            PendingReply next = pendingReplies.peek();
+            if (next != null) {
+                timeout = Math.min(timeout, next.time - now);
+            }
+            selector.select(Math.max(1, timeout));
+            selector.selectedKeys().clear();
+
+            SocketAddress sender;
+            while ((sender = recvChannel.receive(buffer)) != null) {
+                buffer.flip();
+                handleRequest(buffer, (InetSocketAddress) sender, System.currentTimeMillis());
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Queues a reply with a random delay, if the packet is a search request and the requester did not get a reply
+     * within the last second.
+     */
+    private void handleRequest(ByteBuffer packet, InetSocketAddress sender, long now) {
+        logger.trace("Got SSDP Discovery packet from {}:{}", sender.getAddress().getHostAddress(), sender.getPort());
+        if (!startsWith(packet, M_SEARCH) || responses.isEmpty()) {
+            return;
+        }
+        Long lastReply = lastReplies.get(sender.getAddress());
+        if (lastReply != null && now - lastReply < REQUESTER_MIN_INTERVAL) {
+            logger.trace("Ignoring repeated SSDP search from {}", sender);
+            return;
+        }
+        if (pendingReplies.size() >= MAX_PENDING_REPLIES) {
+            logger.debug("Too many pending SSDP replies, ignoring search from {}", sender);
+            return;
+        }
+        lastReplies.put(sender.getAddress(), now);
+
+        String request = CHARSET.decode(packet).toString();
+        int jitter = (int) Math.min(getMaxWait(request) * 1000L, MAX_JITTER);
+        pendingReplies.add(new PendingReply(now + random.nextInt(jitter + 1), sender, getResponse(sender)));
+    }
+
+    private void sendDueReplies(long now) {
+        PendingReply reply = pendingReplies.peek();
+        while (reply != null && reply.time <= now) {
+            pendingReplies.poll();
+            try {
+                logger.trace("Sending SSDP response to {}", reply.target);
+                if (sendChannel.send(ByteBuffer.wrap(reply.data), reply.target) == 0) {
+                    logger.debug("Send buffer full, dropped SSDP response to {}", reply.target);
+                }
+            } catch (IOException e) {
+                logger.error("Could not send UPNP response", e);
+            }
+            reply = pendingReplies.peek();
+        }
+    }
+
+    /**
+     * Joins the multicast group on new interfaces, leaves it on removed interfaces and renders the responses for the
+     * current interface addresses.
+     */
+    private void updateInterfaces() throws IOException {
+        InetAddress group = InetAddress.getByName(MULTI_ADDR);
+        Map<String, NetworkInterface> interfaces = new HashMap<String, NetworkInterface>();
+        List<InterfaceResponse> newResponses = new ArrayList<InterfaceResponse>();
+        InetAddress primary = null;
+
+        if (discoveryIp != null && discoveryIp.trim().length() > 0) {
+            primary = InetAddress.getByName(discoveryIp.trim());
+            NetworkInterface ni = NetworkInterface.getByInetAddress(primary);
+            if (ni != null) {
+                interfaces.put(ni.getName(), ni);
+                discoveryInterfaceMissing = false;
+            } else {
+                // the address may be forwarded to this host, listen on all interfaces instead of none
+                if (!discoveryInterfaceMissing) {
+                    logger.warn("No network interface has the discovery address {}, "
+                            + "joining the SSDP multicast group on all interfaces", primary.getHostAddress());
+                    discoveryInterfaceMissing = true;
+                }
+                for (NetworkInterface multicastNi : getMulticastInterfaces()) {
+                    interfaces.put(multicastNi.getName(), multicastNi);
+                }
+            }
+            newResponses.add(new InterfaceResponse(primary, 0, renderResponse(primary)));
+        } else {
+            for (NetworkInterface ni : getMulticastInterfaces()) {
+                for (InterfaceAddress ia : ni.getInterfaceAddresses()) {
+                    InetAddress addr = ia.getAddress();
+                    if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
+                        interfaces.put(ni.getName(), ni);
+                        newResponses.add(
+                                new InterfaceResponse(addr, ia.getNetworkPrefixLength(), renderResponse(addr)));
+                        if (primary == null) {
+                            primary = addr;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Iterator<Map.Entry<String, MembershipKey>> it = memberships.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, MembershipKey> entry = it.next();
+            if (!interfaces.containsKey(entry.getKey()) || !entry.getValue().isValid()) {
+                entry.getValue().drop();
+                it.remove();
+                logger.debug("Left SSDP multicast group on interface {}", entry.getKey());
+            }
+        }
+        for (NetworkInterface ni : interfaces.values()) {
+            if (!memberships.containsKey(ni.getName())) {
+                try {
+                    memberships.put(ni.getName(), recvChannel.join(group, ni));
+                    logger.debug("Joined SSDP multicast group on interface {}", ni.getName());
+                } catch (IOException e) {
+                    logger.warn("Could not join SSDP multicast group on interface {}: {}", ni.getName(),
+                            e.getMessage());
+                }
+            }
+        }
+
+        address = primary;
+        responses = newResponses;
+    }
+
+    /**
+     * Returns the interfaces which are up, support multicast and have an IPv4 address, except the loopback interface.
+     */
+    private List<NetworkInterface> getMulticastInterfaces() throws IOException {
+        List<NetworkInterface> result = new ArrayList<NetworkInterface>();
+        Enumeration<NetworkInterface> nis = NetworkInterface.getNetworkInterfaces();
+        while (nis != null && nis.hasMoreElements()) {
+            NetworkInterface ni = nis.nextElement();
+            if (!ni.isUp() || ni.isLoopback() || !ni.supportsMulticast()) {
+                continue;
+            }
+            for (InterfaceAddress ia : ni.getInterfaceAddresses()) {
+                if (ia.getAddress() instanceof Inet4Address && !ia.getAddress().isLoopbackAddress()) {
+                    result.add(ni);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private byte[] renderResponse(InetAddress addr) {
+        String location = "http://" + addr.getHostAddress() + ":" + System.getProperty("org.osgi.service.http.port")
+                + discoPath;
+        return String.format(discoString, location, usn).getBytes(CHARSET);
+    }
+
+    /**
+     * Returns the response of the interface address in the subnet of the requester, the first one if there's none.
+     */
+    private byte[] getResponse(InetSocketAddress requester) {
+        byte[] requesterAddress = requester.getAddress().getAddress();
+        for (InterfaceResponse response : responses) {
+            if (response.isInSubnet(requesterAddress)) {
+                return response.data;
+            }
+        }
+        return responses.get(0).data;
+    }
+
+    /**
+     * Returns the MX header value of the request, the maximum number of seconds to wait before replying.
+     */
+    private int getMaxWait(String request) {
+        for (String line : request.split("\r\n")) {
+            if (line.regionMatches(true, 0, "MX:", 0, 3)) {
+                try {
+                    return Math.max(0, Integer.parseInt(line.substring(3).trim()));
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(buffer.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rendered response of an interface address.
+     */
+    private static class InterfaceResponse {
+        private final byte[] address;
+        private final int prefixLength;
+        private final byte[] data;
+
+        private InterfaceResponse(InetAddress address, int prefixLength, byte[] data) {
+            this.address = address.getAddress();
+            this.prefixLength = prefixLength;
+            this.data = data;
+        }
+
+        private boolean isInSubnet(byte[] other) {
+            if (prefixLength <= 0 || other.length != address.length) {
+                return false;
+            }
+            int bits = Math.min(prefixLength, address.length * 8);
+            for (int i = 0; i < bits; i++) {
+                int mask = 0x80 >> (i % 8);
+                if ((address[i / 8] & mask) != (other[i / 8] & mask)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A reply waiting for its jittered send time.
+     */
+    private static class PendingReply implements Comparable<PendingReply> {
+        private final long time;
+        private final InetSocketAddress target;
+        private final byte[] data;
+
+        private PendingReply(long time, InetSocketAddress target, byte[] data) {
+            this.time = time;
+            this.target = target;
+            this.data = data;
+        }
+
+        @Override
+        public int compareTo(PendingReply other) {
+            return time < other.time ? -1 : (time == other.time ? 0 : 1);
+        }
+    }
 }
@@ -8,32 +8,33 @@
  */
 package org.openhab.io.imperihome.internal.handler;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLDecoder;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.regex.Matcher;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
 import org.eclipse.smarthome.core.persistence.HistoricItem;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
 import org.eclipse.smarthome.core.persistence.PersistenceServiceRegistry;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.core.types.State;
-import org.openhab.io.imperihome.internal.model.HistoryItem;
-import org.openhab.io.imperihome.internal.model.HistoryList;
+import org.openhab.io.imperihome.internal.io.HistoryStreamWriter;
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
 import org.openhab.io.imperihome.internal.processor.DeviceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Device history request handler.
+ * Device history request handler. Persistence is queried page by page and the values are downsampled to
+ * {@link #BUCKETS} minimum/maximum pairs while they are written to the response, so the memory used by a request does
+ * not depend on the requested period.
  *
  * @author Pepijn de Geus - Initial contribution
  */
@@ -41,6 +42,17 @@ public class DeviceHistoryHandler {
 
     private static final String CHARSET = "UTF-8";
 
+    /**
+     * Number of buckets the requested period is divided into, at most two values are returned per bucket. This is
+     * about the horizontal resolution of the graphs on a tablet.
+     */
+    static final int BUCKETS = 500;
+
+    /**
+     * Number of values queried from persistence at once.
+     */
+    private static final int PAGE_SIZE = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(DeviceHistoryHandler.class);
 
     private final DeviceRegistry deviceRegistry;
@@ -51,7 +63,11 @@ public class DeviceHistoryHandler {
         this.persistenceServiceRegistry = persistenceServiceRegistry;
     }
 
-    public HistoryList handle(HttpServletRequest req, Matcher urlMatcher) {
+    /**
+     * Writes the history of the requested device to the writer. If the history can't be served, {@code null} is written
+     * instead.
+     */
+    public void handle(HttpServletRequest req, Matcher urlMatcher, Writer writer) throws IOException {
         String deviceId, field;
         long start, end;
         try {
@@ -68,52 +84,85 @@ public class DeviceHistoryHandler {
         AbstractDevice device = deviceRegistry.getDevice(deviceId);
         if (device == null) {
             logger.warn("Received history request for unknown device: {}", urlMatcher.group(0));
-            return null;
+            writer.write("null");
+            return;
         }
 
         PersistenceService persistence = persistenceServiceRegistry.getDefault();
         if (persistence == null) {
             logger.warn("Could not retrieve default persistence service; can't serve history request");
-            return null;
+            writer.write("null");
+            return;
         }
         if (!(persistence instanceof QueryablePersistenceService)) {
             logger.warn("Default persistence service is not queryable; can't serve history request");
-            return null;
+            writer.write("null");
+            return;
         }
 
-        return serveHistory(device, (QueryablePersistenceService) persistence, start, end);
+        serveHistory(device, (QueryablePersistenceService) persistence, start, end, writer);
     }
 
-    private HistoryList serveHistory(AbstractDevice device, QueryablePersistenceService persistence, long start,
-            long end) {
+    private void serveHistory(AbstractDevice device, QueryablePersistenceService persistence, long start, long end,
+            Writer writer) throws IOException {
         logger.info("Querying persistence for history of Item {}, from {} to {}", device.getItemName(), start, end);
 
-        FilterCriteria criteria = new FilterCriteria().setItemName(device.getItemName()).setBeginDate(new Date(start))
-                .setEndDate(new Date(end));
-
-        List<HistoryItem> resultItems = new LinkedList<>();
-        Iterable<HistoricItem> historicItems = persistence.query(criteria);
-
-        Iterator<HistoricItem> iterator = historicItems.iterator();
-        if (!iterator.hasNext()) {
-            logger.info("Persistence returned no results for history query");
-        } else {
-            while (iterator.hasNext()) {
-                HistoricItem historicItem = iterator.next();
+        HistoryStreamWriter historyWriter = new HistoryStreamWriter(writer, start, end, BUCKETS);
+        FilterCriteria criteria = new FilterCriteria().setItemName(device.getItemName()).setEndDate(new Date(end))
+                .setOrdering(Ordering.ASCENDING).setPageSize(PAGE_SIZE).setPageNumber(0);
+
+        int resultCount = 0;
+        long pageStart = start;
+        int emittedAtPageStart = 0;
+        int pageCount;
+        do {
+            // the next page starts at the timestamp of the last value of the previous one, which also works with
+            // persistence services that ignore the page number. Several values may share this timestamp, so the page
+            // start is inclusive and the values already written are skipped.
+            criteria.setBeginDate(new Date(pageStart));
+            pageCount = 0;
+            int newCount = 0;
+            int skipped = 0;
+            long lastDate = pageStart;
+            int emittedAtLastDate = emittedAtPageStart;
+            for (HistoricItem historicItem : persistence.query(criteria)) {
+                pageCount++;
+                long time = historicItem.getTimestamp().getTime();
+                if (time <= pageStart && skipped < emittedAtPageStart) {
+                    skipped++;
+                    continue;
+                }
+                newCount++;
+                if (time > lastDate) {
+                    lastDate = time;
+                    emittedAtLastDate = 1;
+                } else if (time == lastDate) {
+                    emittedAtLastDate++;
+                }
                 State state = historicItem.getState();
                 if (state instanceof DecimalType) {
-                    Number value = ((DecimalType) state).toBigDecimal();
-                    resultItems.add(new HistoryItem(historicItem.getTimestamp(), value));
+                    historyWriter.add(time, ((DecimalType) state).toBigDecimal());
                 }
             }
-
-            if (resultItems.isEmpty()) {
-                logger.warn(
-                        "Persistence returned results for history query, but could not be interpreted as DecimalTypes");
+            resultCount += newCount;
+            if (newCount == 0) {
+                // a full page of values with the same timestamp, which have all been written before
+                break;
             }
-        }
+            pageStart = lastDate;
+            emittedAtPageStart = emittedAtLastDate;
+        } while (pageCount == PAGE_SIZE && pageStart <= end);
+
+        historyWriter.finish();
 
-        return new HistoryList(resultItems);
+        if (resultCount == 0) {
+            logger.info("Persistence returned no results for history query");
+        } else if (historyWriter.getValueCount() == 0) {
+            logger.warn("Persistence returned results for history query, but could not be interpreted as DecimalTypes");
+        } else {
+            logger.debug("Served {} of {} history values of Item {}", historyWriter.getWrittenCount(),
+                    historyWriter.getValueCount(), device.getItemName());
+        }
     }
 
 }
@@ -8,43 +8,117 @@
  */
 package org.openhab.io.imperihome.internal.handler;
 
-import java.util.Collection;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
-import org.openhab.io.imperihome.internal.model.device.DeviceList;
 import org.openhab.io.imperihome.internal.processor.DeviceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.Gson;
+
 /**
- * Device list request handler.
+ * Device list request handler. Keeps the serialized JSON of each device and only serializes the devices again, that
+ * changed since the previous request. The response is assembled from these fragments and cached until the next
+ * change. The ETag only changes if a fragment actually differs, a device marked as changed may well serialize to the
+ * same JSON, e.g. when updateParams() derives its parameters again.
  *
  * @author Pepijn de Geus - Initial contribution
  */
 public class DevicesListHandler {
 
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
     private final Logger logger = LoggerFactory.getLogger(DevicesListHandler.class);
 
     private final DeviceRegistry deviceRegistry;
+    private final Gson gson;
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    private final Map<String, String> fragments = new HashMap<>();
+    private String response;
+    private String responseETag;
+    private long responseVersion = -1;
+    private long contentVersion;
 
-    public DevicesListHandler(DeviceRegistry deviceRegistry) {
+    public DevicesListHandler(DeviceRegistry deviceRegistry, Gson gson) {
         this.deviceRegistry = deviceRegistry;
+        this.gson = gson;
     }
 
-    public DeviceList handle(HttpServletRequest req) {
-        DeviceList response = new DeviceList();
+    public void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String body;
+        String etag;
+        synchronized (this) {
+            long version = deviceRegistry.getVersion();
+            if (response == null || version != responseVersion) {
+                if (updateFragments() || response == null) {
+                    response = buildResponse();
+                    contentVersion++;
+                    responseETag = "\"" + etagPrefix + contentVersion + "\"";
+                }
+                responseVersion = version;
+            }
+            body = response;
+            etag = responseETag;
+        }
 
-        Collection<AbstractDevice> devices = deviceRegistry.getDevices().values();
-        for (AbstractDevice device : devices) {
-            device.updateParams();
+        resp.setHeader(HEADER_ETAG, etag);
+        if (etag.equals(req.getHeader(HEADER_IF_NONE_MATCH))) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
         }
 
-        response.setDevices(devices);
+        logger.trace("Device list response: {}", body);
+        resp.getWriter().write(body);
+    }
 
-        logger.debug("Device list response: {}", response);
-        return response;
+    /**
+     * Serializes the changed devices and the devices linking to them.
+     *
+     * @return true, if a fragment has been added, removed or changed
+     */
+    private boolean updateFragments() {
+        Set<String> changed = deviceRegistry.takeChangedDeviceIds();
+        Set<String> affected = new HashSet<>(changed);
+        for (String deviceId : changed) {
+            affected.addAll(deviceRegistry.getLinkingDeviceIds(deviceId));
+        }
+
+        boolean modified = false;
+        for (String deviceId : affected) {
+            AbstractDevice device = deviceRegistry.getDevice(deviceId);
+            if (device == null) {
+                modified |= fragments.remove(deviceId) != null;
+            } else {
+                device.updateParams();
+                String fragment = gson.toJson(device);
+                modified |= !fragment.equals(fragments.put(deviceId, fragment));
+            }
+        }
+        logger.debug("Serialized {} changed devices, device list modified: {}", affected.size(), modified);
+        return modified;
+    }
+
+    private String buildResponse() {
+        StringBuilder builder = new StringBuilder("{\"devices\":[");
+        boolean first = true;
+        for (String fragment : fragments.values()) {
+            if (!first) {
+                builder.append(',');
+            }
+            builder.append(fragment);
+            first = false;
+        }
+        return builder.append("]}").toString();
     }
 
 }
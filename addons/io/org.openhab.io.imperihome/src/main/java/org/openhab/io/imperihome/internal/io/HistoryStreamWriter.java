@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.imperihome.internal.io;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.openhab.io.imperihome.internal.model.HistoryItem;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a history value list as JSON while the values are read from persistence. The requested period is divided
+ * into a fixed number of buckets; of each bucket only the minimum and maximum value are written, in chronological
+ * order. Values must be added in ascending order of their date.
+ *
+ * @author agent - Initial contribution
+ */
+public class HistoryStreamWriter {
+
+    private final JsonWriter jsonWriter;
+    private final long start;
+    private final double bucketWidth;
+
+    private long currentBucket = Long.MIN_VALUE;
+    private HistoryItem min;
+    private HistoryItem max;
+    private int valueCount;
+    private int writtenCount;
+
+    public HistoryStreamWriter(Writer writer, long start, long end, int buckets) throws IOException {
+        this.start = start;
+        this.bucketWidth = Math.max(1, (end - start) / (double) Math.max(1, buckets));
+        this.jsonWriter = new JsonWriter(writer);
+        jsonWriter.beginObject();
+        jsonWriter.name("values");
+        jsonWriter.beginArray();
+    }
+
+    /**
+     * Adds a value to the bucket of its date, the previous bucket is written if the value starts a new one.
+     */
+    public void add(long date, Number value) throws IOException {
+        long bucket = (long) Math.floor((date - start) / bucketWidth);
+        if (bucket != currentBucket) {
+            writeBucket();
+            currentBucket = bucket;
+        }
+        double doubleValue = value.doubleValue();
+        if (min == null || doubleValue < min.getValue().doubleValue()) {
+            min = new HistoryItem(date, value);
+        }
+        if (max == null || doubleValue > max.getValue().doubleValue()) {
+            max = new HistoryItem(date, value);
+        }
+        valueCount++;
+    }
+
+    /**
+     * Writes the last bucket and completes the JSON document. The underlying writer is flushed, but not closed.
+     */
+    public void finish() throws IOException {
+        writeBucket();
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+        jsonWriter.flush();
+    }
+
+    /**
+     * Returns the number of values added.
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Returns the number of values written.
+     */
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+
+    private void writeBucket() throws IOException {
+        if (min == null) {
+            return;
+        }
+        if (min.getDate() == max.getDate()) {
+            writeItem(min);
+        } else if (min.getDate() < max.getDate()) {
+            writeItem(min);
+            writeItem(max);
+        } else {
+            writeItem(max);
+            writeItem(min);
+        }
+        min = null;
+        max = null;
+    }
+
+    private void writeItem(HistoryItem item) throws IOException {
+        jsonWriter.beginObject();
+        jsonWriter.name("date").value(item.getDate());
+        jsonWriter.name("value").value(item.getValue());
+        jsonWriter.endObject();
+        writtenCount++;
+    }
+
+}
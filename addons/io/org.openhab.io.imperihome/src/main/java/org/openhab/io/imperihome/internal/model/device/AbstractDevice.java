@@ -125,7 +125,11 @@ public abstract class AbstractDevice implements StateChangeListener {
 
     public void addParam(DeviceParam param) {
         logger.trace("Setting param for device {}: {}", this, param);
+        DeviceParam previous = params.get(param.getKey());
         params.set(param);
+        if (!param.equals(previous)) {
+            markChanged();
+        }
     }
 
     public Map<String, String> getLinks() {
@@ -164,6 +168,23 @@ public abstract class AbstractDevice implements StateChangeListener {
         return item;
     }
 
+    /**
+     * Returns true, if this device has been created for the given Item instance.
+     */
+    public boolean isDeviceOf(Item item) {
+        return this.item == item;
+    }
+
+    /**
+     * Notifies the device registry, that the JSON representation of this device may have changed.
+     */
+    protected void markChanged() {
+        DeviceRegistry registry = deviceRegistry;
+        if (registry != null && id != null) {
+            registry.deviceChanged(id);
+        }
+    }
+
     public String getItemName() {
         return item.getName();
     }
@@ -201,6 +222,8 @@ public abstract class AbstractDevice implements StateChangeListener {
 
     @Override
     public void stateChanged(Item item, State oldState, State newState) {
+        // parameters derived in updateParams() may depend on the new state
+        markChanged();
     }
 
     @Override
@@ -9,18 +9,21 @@
 package org.openhab.io.imperihome.internal.processor;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openhab.io.imperihome.internal.model.Room;
 import org.openhab.io.imperihome.internal.model.device.AbstractDevice;
 
 /**
- * The device registry stores created devices by ID.
+ * The device registry stores created devices by ID. It tracks the IDs of added, removed and changed devices and
+ * counts a version, which is incremented on every change.
  *
  * @author Pepijn de Geus - Initial contribution
  */
@@ -29,6 +32,10 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
     private final Map<String, AbstractDevice> devices;
     private Set<Room> rooms;
 
+    private final Set<String> changedDeviceIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<String, Set<String>> linkingDeviceIds = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
     public DeviceRegistry() {
         devices = new ConcurrentHashMap<>();
     }
@@ -54,23 +61,83 @@ public class DeviceRegistry implements Iterable<AbstractDevice> {
     }
 
     public void add(AbstractDevice device) {
+        device.setDeviceRegistry(this);
         devices.put(device.getId(), device);
+        for (String linkedItemName : device.getLinks().values()) {
+            String linkedDeviceId = ItemProcessor.getDeviceId(linkedItemName);
+            Set<String> linking = linkingDeviceIds.get(linkedDeviceId);
+            if (linking == null) {
+                linking = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                linkingDeviceIds.put(linkedDeviceId, linking);
+            }
+            linking.add(device.getId());
+        }
         updateRooms();
+        deviceChanged(device.getId());
     }
 
     public AbstractDevice remove(String deviceId) {
         AbstractDevice removed = devices.remove(deviceId);
+        if (removed != null) {
+            for (String linkedItemName : removed.getLinks().values()) {
+                Set<String> linking = linkingDeviceIds.get(ItemProcessor.getDeviceId(linkedItemName));
+                if (linking != null) {
+                    linking.remove(deviceId);
+                }
+            }
+        }
         updateRooms();
+        deviceChanged(deviceId);
         return removed;
     }
 
+    /**
+     * Marks the device as changed, called by devices when their parameters change.
+     */
+    public void deviceChanged(String deviceId) {
+        changedDeviceIds.add(deviceId);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns the IDs of all devices added, removed or changed since the last call.
+     */
+    public Set<String> takeChangedDeviceIds() {
+        Set<String> changed = new HashSet<>();
+        Iterator<String> iterator = changedDeviceIds.iterator();
+        while (iterator.hasNext()) {
+            changed.add(iterator.next());
+            iterator.remove();
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the IDs of the devices with a link to the given device.
+     */
+    public Set<String> getLinkingDeviceIds(String deviceId) {
+        Set<String> linking = linkingDeviceIds.get(deviceId);
+        return linking == null ? Collections.<String> emptySet() : linking;
+    }
+
+    /**
+     * Returns the version of the registry, which changes whenever a device is added, removed or changed.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     @Override
     public Iterator<AbstractDevice> iterator() {
         return devices.values().iterator();
     }
 
     public void clear() {
+        for (String deviceId : devices.keySet()) {
+            deviceChanged(deviceId);
+        }
         devices.clear();
+        linkingDeviceIds.clear();
 
         if (rooms != null) {
             rooms.clear();
@@ -9,11 +9,14 @@
 package org.openhab.io.imperihome.internal.processor;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
@@ -55,6 +58,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Processor of openHAB Items. Parses ISS tags and creates and registers {@link AbstractDevice} implementations where
  * applicable.
+ * The parsed tags are kept per Item and only parsed again if the tags of the Item change. Registry changes only
+ * touch the devices of the changed Items; links to Items without a device are resolved as soon as the device of the
+ * linked Item is registered.
  *
  * @author Pepijn de Geus - Initial contribution
  */
@@ -68,6 +74,8 @@ public class ItemProcessor implements ItemRegistryChangeListener {
     private final DeviceRegistry deviceRegistry;
     private final ActionRegistry actionRegistry;
 
+    private final Map<String, ItemTags> itemTags = new HashMap<>();
+
     public ItemProcessor(ItemRegistry itemRegistry, DeviceRegistry deviceRegistry, ActionRegistry actionRegistry) {
         this.itemRegistry = itemRegistry;
         this.deviceRegistry = deviceRegistry;
@@ -77,20 +85,19 @@ public class ItemProcessor implements ItemRegistryChangeListener {
         itemRegistry.addRegistryChangeListener(this);
     }
 
-    public void destroy() {
+    public synchronized void destroy() {
         itemRegistry.removeRegistryChangeListener(this);
 
         // Destroy all Devices (unregisters state listeners)
-        for (Item item : itemRegistry.getItems()) {
-            String deviceId = getDeviceId(item);
-            if (deviceRegistry.hasDevice(deviceId)) {
-                deviceRegistry.remove(deviceId).destroy();
-            }
+        for (AbstractDevice device : deviceRegistry) {
+            deviceRegistry.remove(device.getId()).destroy();
         }
+        itemTags.clear();
     }
 
     private void parseItem(Item item) {
-        Map<TagType, List<String>> issTags = getIssTags(item);
+        ItemTags tags = getItemTags(item);
+        Map<TagType, List<String>> issTags = tags.issTags;
         if (!issTags.isEmpty()) {
             logger.debug("Found item {} with ISS tags: {}", item, issTags);
 
@@ -106,7 +113,7 @@ public class ItemProcessor implements ItemRegistryChangeListener {
 
                 setDeviceRoom(device, issTags);
                 setDeviceLinks(device, item, issTags);
-                setMapping(device, item, issTags);
+                setMapping(device, item, tags);
                 setUnit(device, issTags);
 
                 // Set initial state
@@ -114,6 +121,33 @@ public class ItemProcessor implements ItemRegistryChangeListener {
 
                 logger.debug("Item parsed to device: {}", device);
                 deviceRegistry.add(device);
+                logUnresolvedLinks(device);
+            }
+        }
+    }
+
+    /**
+     * Returns the parsed tags of the Item, the tags are only parsed again if they changed. The tags of Items without
+     * ISS tags are kept as well, so they are not parsed again on every registry change.
+     */
+    private ItemTags getItemTags(Item item) {
+        ItemTags tags = itemTags.get(item.getName());
+        if (tags == null || !tags.tags.equals(item.getTags())) {
+            tags = new ItemTags(new HashSet<>(item.getTags()), getIssTags(item));
+            itemTags.put(item.getName(), tags);
+        }
+        return tags;
+    }
+
+    /**
+     * Links are resolved when the device is serialized, so a link to an Item without device resolves itself once the
+     * device of the linked Item is registered.
+     */
+    private void logUnresolvedLinks(AbstractDevice device) {
+        for (String linkedItemName : device.getLinks().values()) {
+            if (!deviceRegistry.hasDevice(getDeviceId(linkedItemName))) {
+                logger.debug("Link of device {} to Item {} is resolved once the Item is available", device.getName(),
+                        linkedItemName);
             }
         }
     }
@@ -217,24 +251,34 @@ public class ItemProcessor implements ItemRegistryChangeListener {
     }
 
     /**
-     * Parses a mapping tag, if it exists. Format: "iss:mapping:1=Foo,2=Bar,3=Foobar".
+     * Sets the mapping parsed from the mapping tag, if it exists.
      */
-    private void setMapping(AbstractDevice device, Item item, Map<TagType, List<String>> issTags) {
-        if (issTags.containsKey(TagType.MAPPING)) {
-            String mapItems = issTags.get(TagType.MAPPING).get(0);
-
-            Map<String, String> mapping = new HashMap<>();
-            for (String mapItem : mapItems.split(",")) {
-                String[] keyVal = mapItem.split("=", 2);
-                if (keyVal.length != 2) {
-                    logger.error("Invalid mapping syntax for Item {}", item);
-                    return;
-                }
-                mapping.put(keyVal[0].trim(), keyVal[1].trim());
+    private void setMapping(AbstractDevice device, Item item, ItemTags tags) {
+        if (tags.issTags.containsKey(TagType.MAPPING)) {
+            if (!tags.mappingParsed) {
+                tags.mapping = parseMapping(item, tags.issTags.get(TagType.MAPPING).get(0));
+                tags.mappingParsed = true;
             }
+            if (tags.mapping != null) {
+                device.setMapping(tags.mapping);
+            }
+        }
+    }
 
-            device.setMapping(mapping);
+    /**
+     * Parses a mapping tag. Format: "iss:mapping:1=Foo,2=Bar,3=Foobar".
+     */
+    private Map<String, String> parseMapping(Item item, String mapItems) {
+        Map<String, String> mapping = new HashMap<>();
+        for (String mapItem : mapItems.split(",")) {
+            String[] keyVal = mapItem.split("=", 2);
+            if (keyVal.length != 2) {
+                logger.error("Invalid mapping syntax for Item {}", item);
+                return null;
+            }
+            mapping.put(keyVal[0].trim(), keyVal[1].trim());
         }
+        return Collections.unmodifiableMap(mapping);
     }
 
     /**
@@ -353,37 +397,74 @@ public class ItemProcessor implements ItemRegistryChangeListener {
     }
 
     @Override
-    public void added(Item item) {
+    public synchronized void added(Item item) {
         parseItem(item);
     }
 
     @Override
-    public void removed(Item item) {
+    public synchronized void removed(Item item) {
         removeItem(item);
+        itemTags.remove(item.getName());
     }
 
     @Override
-    public void updated(Item oldItem, Item newItem) {
+    public synchronized void updated(Item oldItem, Item newItem) {
+        if (!oldItem.getName().equals(newItem.getName())) {
+            itemTags.remove(oldItem.getName());
+        }
         removeItem(oldItem);
         parseItem(newItem);
     }
 
     @Override
-    public void allItemsChanged(Collection<String> oldItems) {
-        if (oldItems != null) {
-            for (String oldItem : oldItems) {
-                removeItem(oldItem);
+    public synchronized void allItemsChanged(Collection<String> oldItems) {
+        Set<String> itemNames = new HashSet<>();
+        for (Item item : itemRegistry.getItems()) {
+            itemNames.add(item.getName());
+            if (!isUpToDate(item)) {
+                removeItem(item);
+                parseItem(item);
             }
         }
 
-        if (deviceRegistry.hasDevices()) {
-            logger.warn("There are still Devices left after processing all Items from allItemsChanged(): "
-                    + deviceRegistry.getDevices());
-            deviceRegistry.clear();
+        // remove the devices and parsed tags of Items which no longer exist
+        for (AbstractDevice device : deviceRegistry) {
+            if (!itemNames.contains(device.getItemName())) {
+                removeItem(device.getItemName());
+            }
         }
+        itemTags.keySet().retainAll(itemNames);
+    }
 
-        for (Item item : itemRegistry.getItems()) {
-            parseItem(item);
+    /**
+     * Returns true, if the Item has been parsed with the same tags and its device has been created for the same Item
+     * instance. Items without ISS tags are up to date if they have no device. The cached tags are compared only, they
+     * are not parsed again.
+     */
+    private boolean isUpToDate(Item item) {
+        ItemTags tags = itemTags.get(item.getName());
+        if (tags == null || !tags.tags.equals(item.getTags())) {
+            return false;
+        }
+        AbstractDevice device = deviceRegistry.getDevice(getDeviceId(item));
+        if (tags.issTags.isEmpty()) {
+            return device == null;
+        }
+        return device != null && device.isDeviceOf(item);
+    }
+
+    /**
+     * The parsed ISS tags of an Item, together with the tags they have been parsed from.
+     */
+    private static class ItemTags {
+        private final Set<String> tags;
+        private final Map<TagType, List<String>> issTags;
+        private Map<String, String> mapping;
+        private boolean mappingParsed;
+
+        private ItemTags(Set<String> tags, Map<TagType, List<String>> issTags) {
+            this.tags = tags;
+            this.issTags = issTags;
         }
     }
 
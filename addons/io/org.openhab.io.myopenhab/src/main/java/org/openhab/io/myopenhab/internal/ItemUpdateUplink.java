@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class queues item updates on their way to my.openHAB. Updates of the same item are coalesced, only the latest
+ * state is sent. The queue is flushed in batches, at most once per flush interval, and the state of an item is sent
+ * at most once per item interval. Updates of items which have just been commanded through my.openHAB bypass the item
+ * interval and are flushed immediately, so the user gets a fast feedback.
+ *
+ * The queue holds at most one update per item, so its size is bounded by the number of items and no update needs to
+ * be dropped. While the connection is down, the latest state of every changed item is kept and sent on reconnect.
+ *
+ * @author agent - Initial contribution
+ */
+public class ItemUpdateUplink {
+
+    private static Logger logger = LoggerFactory.getLogger(ItemUpdateUplink.class);
+
+    /*
+     * Delay between an update and the flush of the queue, further updates within this delay are sent in the same batch
+     */
+    private static final long FLUSH_INTERVAL = 200;
+
+    /*
+     * Minimum time between two updates of the same item
+     */
+    private static final long ITEM_INTERVAL = 1000;
+
+    /*
+     * Time after a command from my.openHAB in which the updates of the commanded item are prioritized
+     */
+    private static final long PRIORITY_TIMEOUT = 5000;
+
+    /*
+     * Maximum number of updates sent in one batch
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /*
+     * Number of send timestamps above which the stale ones are removed
+     */
+    private static final int MAX_TIMESTAMPS = 2000;
+
+    private final MyOpenHABClient client;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "myopenhab-uplink");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final LinkedHashMap<String, String> queue = new LinkedHashMap<String, String>();
+    private final Map<String, Long> lastSent = new HashMap<String, Long>();
+    private final Map<String, Long> priorityItems = new HashMap<String, Long>();
+    private ScheduledFuture<?> flushFuture;
+    private long flushTime;
+
+    private long sentCount;
+    private long coalescedCount;
+
+    public ItemUpdateUplink(MyOpenHABClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Queues the update of an item, replaces a queued update of the same item.
+     */
+    public synchronized void offer(String itemName, String itemState) {
+        if (queue.put(itemName, itemState) != null) {
+            coalescedCount++;
+        }
+        if (isPriority(itemName, System.currentTimeMillis())) {
+            scheduleFlush(0);
+        } else {
+            scheduleFlush(queue.size() >= MAX_BATCH_SIZE ? 0 : FLUSH_INTERVAL);
+        }
+    }
+
+    /**
+     * Prioritizes the updates of an item for a short time, called when a command for the item has been received.
+     */
+    public synchronized void prioritize(String itemName) {
+        priorityItems.put(itemName, System.currentTimeMillis() + PRIORITY_TIMEOUT);
+    }
+
+    /**
+     * Discards all queued updates and stops the uplink.
+     */
+    public synchronized void stop() {
+        scheduler.shutdownNow();
+        queue.clear();
+        priorityItems.clear();
+    }
+
+    /**
+     * Returns the number of item updates waiting to be sent.
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of item updates sent since the uplink has been created.
+     */
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Returns the number of queued item updates which have been dropped, because a newer state of the item replaced
+     * them before they were sent.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Schedules a flush after the delay, unless a flush is already scheduled at or before that time.
+     */
+    private void scheduleFlush(long delay) {
+        long time = System.currentTimeMillis() + delay;
+        if (flushFuture != null && !flushFuture.isDone()) {
+            if (flushTime <= time) {
+                return;
+            }
+            flushFuture.cancel(false);
+        }
+        try {
+            flushFuture = scheduler.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+            flushTime = time;
+        } catch (RejectedExecutionException e) {
+            logger.debug("Item update uplink already stopped");
+        }
+    }
+
+    private void flush() {
+        List<String[]> batch = new ArrayList<String[]>();
+        synchronized (this) {
+            flushFuture = null;
+            if (queue.isEmpty()) {
+                return;
+            }
+            if (!client.isConnected()) {
+                // the latest states are kept and sent once the connection is established again
+                scheduleFlush(ITEM_INTERVAL);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            removeExpiredPriorities(now);
+            long nextDue = Long.MAX_VALUE;
+            Iterator<Entry<String, String>> iterator = queue.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                Entry<String, String> entry = iterator.next();
+                String itemName = entry.getKey();
+                Long last = lastSent.get(itemName);
+                long due = last == null || isPriority(itemName, now) ? now : last + ITEM_INTERVAL;
+                if (due <= now) {
+                    batch.add(new String[] { itemName, entry.getValue() });
+                    lastSent.put(itemName, now);
+                    iterator.remove();
+                } else {
+                    nextDue = Math.min(nextDue, due);
+                }
+            }
+            sentCount += batch.size();
+            removeStaleTimestamps(now);
+            if (!queue.isEmpty()) {
+                scheduleFlush(iterator.hasNext() ? FLUSH_INTERVAL : Math.max(nextDue - now, FLUSH_INTERVAL));
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sending {} item updates, {} queued, {} sent and {} coalesced in total", batch.size(),
+                        queue.size(), sentCount, coalescedCount);
+            }
+        }
+        for (String[] update : batch) {
+            client.emitItemUpdate(update[0], update[1]);
+        }
+    }
+
+    private boolean isPriority(String itemName, long now) {
+        Long until = priorityItems.get(itemName);
+        return until != null && until > now;
+    }
+
+    private void removeExpiredPriorities(long now) {
+        Iterator<Long> iterator = priorityItems.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /*
+     * Timestamps older than the item interval are no longer needed, they are removed once the map grows large
+     */
+    private void removeStaleTimestamps(long now) {
+        if (lastSent.size() <= MAX_TIMESTAMPS) {
+            return;
+        }
+        Set<String> stale = new HashSet<String>();
+        for (Entry<String, Long> entry : lastSent.entrySet()) {
+            if (entry.getValue() + ITEM_INTERVAL <= now) {
+                stale.add(entry.getKey());
+            }
+        }
+        lastSent.keySet().removeAll(stale);
+    }
+}
@@ -12,25 +12,19 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
-import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
-import org.eclipse.jetty.client.api.Request.FailureListener;
-import org.eclipse.jetty.client.api.Response;
-import org.eclipse.jetty.client.api.Response.ContentListener;
-import org.eclipse.jetty.client.api.Response.HeadersListener;
-import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
-import org.eclipse.jetty.http.HttpField;
-import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.URIUtil;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -73,6 +67,11 @@ public class MyOpenHABClient {
      */
     private static final int HTTP_CLIENT_TIMEOUT = 30000;
 
+    /*
+     * This constant defines the total timeout of a proxied request, after which it is aborted
+     */
+    private static final int REQUEST_TIMEOUT = 300000;
+
     /*
      * This variable holds base URL for my.openHAB cloud connections
      */
@@ -98,9 +97,13 @@ public class MyOpenHABClient {
      */
     private HttpClient jettyClient;
     /*
-     * This hashmap holds HTTP requests to local openHAB which are currently running
+     * This map holds HTTP requests to local openHAB which are currently running
+     */
+    private ConcurrentMap<Integer, ProxyResponseStream> runningRequests;
+    /*
+     * This variable holds the cache of static responses of local openHAB
      */
-    private HashMap<Integer, Request> runningRequests;
+    private ResponseCache responseCache = new ResponseCache();
     /*
      * This variable indicates if connection to my.openHAB cloud is currently in an established state
      */
@@ -119,6 +122,10 @@ public class MyOpenHABClient {
      * certain events from my.openHAB cloud back to openHAB
      */
     private MyOpenHABClientListener listener;
+    /*
+     * This variable holds the queue which coalesces and batches item updates sent to my.openHAB
+     */
+    private ItemUpdateUplink itemUpdateUplink;
 
     /**
      * Constructor of MyOHClient
@@ -131,10 +138,11 @@ public class MyOpenHABClient {
         this.uuid = uuid;
         this.secret = secret;
         this.baseURL = baseURL;
-        runningRequests = new HashMap<Integer, Request>();
+        runningRequests = new ConcurrentHashMap<Integer, ProxyResponseStream>();
         jettyClient = new HttpClient();
         jettyClient.setMaxConnectionsPerDestination(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST);
         jettyClient.setConnectTimeout(HTTP_CLIENT_TIMEOUT);
+        itemUpdateUplink = new ItemUpdateUplink(this);
     }
 
     /**
@@ -152,6 +160,15 @@ public class MyOpenHABClient {
             public void call(Object... args) {
                 logger.trace("Manager.EVENT_TRANSPORT");
                 Transport transport = (Transport) args[0];
+                transport.on(Transport.EVENT_DRAIN, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        // the transport has written the buffered packets, resume the suspended responses
+                        for (ProxyResponseStream stream : runningRequests.values()) {
+                            stream.drained();
+                        }
+                    }
+                });
                 transport.on(Transport.EVENT_REQUEST_HEADERS, new Emitter.Listener() {
                     @Override
                     public void call(Object... args) {
@@ -237,10 +254,15 @@ public class MyOpenHABClient {
                 logger.error("Could not stop Jetty client: {}", e.getMessage());
             }
         }
-        // And clean up the list of running requests
+        // And clean up the list of running requests, responses waiting for the transport can't be forwarded anymore
         if (runningRequests != null) {
+            for (ProxyResponseStream stream : runningRequests.values()) {
+                stream.disconnected();
+            }
             runningRequests.clear();
         }
+        logger.debug("Response cache answered {} of {} requests", responseCache.getHits(),
+                responseCache.getHits() + responseCache.getMisses());
     }
 
     /**
@@ -321,11 +343,53 @@ public class MyOpenHABClient {
                 logger.error("Unsupported request method " + requestMethod);
                 return;
             }
-            ResponseListener listener = new ResponseListener(requestId);
-            request.onResponseHeaders(listener).onResponseContent(listener).onRequestFailure(listener).send(listener);
-            // If successfully submitted request to http client, add it to the list of currently
-            // running requests to be able to cancel it if needed
-            runningRequests.put(requestId, request);
+            request.timeout(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+            boolean gzip = acceptsGzip(requestHeadersJson);
+            final ProxyResponseStream stream = new ProxyResponseStream(requestId, socket, gzip);
+            final int id = requestId;
+            stream.setFinishedListener(new Runnable() {
+                @Override
+                public void run() {
+                    // Remove this request from list of running requests
+                    runningRequests.remove(id, stream);
+                }
+            });
+            if (request.getMethod() == HttpMethod.GET && ResponseCache.isCacheableRequest(requestHeadersJson)) {
+                String cacheKey = ResponseCache.key(newPath, gzip,
+                        ResponseCache.getHeader(requestHeadersJson, "Accept-Language"));
+                ResponseCache.Entry entry = responseCache.get(cacheKey);
+                if (entry != null) {
+                    boolean notModified = entry.isNotModified(
+                            ResponseCache.getHeader(requestHeadersJson, "If-None-Match"),
+                            ResponseCache.getHeader(requestHeadersJson, "If-Modified-Since"));
+                    if (entry.isFresh()) {
+                        // Answer the request from the cache without asking local openHAB
+                        // The request is running until the cached content has been sent
+                        runningRequests.put(requestId, stream);
+                        if (notModified) {
+                            stream.sendNotModified(entry);
+                        } else {
+                            stream.sendCachedResponse(entry);
+                        }
+                        return;
+                    }
+                    // Revalidate the cached response with the validators of the cache
+                    request.getHeaders().remove(HttpHeader.IF_NONE_MATCH);
+                    request.getHeaders().remove(HttpHeader.IF_MODIFIED_SINCE);
+                    if (entry.getETag() != null) {
+                        request.header(HttpHeader.IF_NONE_MATCH, entry.getETag());
+                    }
+                    if (entry.getLastModified() != null) {
+                        request.header(HttpHeader.IF_MODIFIED_SINCE, entry.getLastModified());
+                    }
+                    stream.cacheAs(responseCache, cacheKey, entry, notModified);
+                } else {
+                    stream.cacheAs(responseCache, cacheKey, null, false);
+                }
+            }
+            // Add the request to the list of currently running requests to be able to cancel it if needed
+            runningRequests.put(requestId, stream);
+            stream.send(request);
         } catch (JSONException e) {
             logger.error(e.getMessage());
         } catch (IOException e) {
@@ -354,15 +418,26 @@ public class MyOpenHABClient {
         }
     }
 
+    private boolean acceptsGzip(JSONObject requestHeadersJson) {
+        @SuppressWarnings("unchecked")
+        Iterator<String> headersIterator = requestHeadersJson.keys();
+        while (headersIterator.hasNext()) {
+            String headerName = headersIterator.next();
+            if (headerName.equalsIgnoreCase("Accept-Encoding")) {
+                return requestHeadersJson.optString(headerName).toLowerCase().contains("gzip");
+            }
+        }
+        return false;
+    }
+
     private void handleCancelEvent(JSONObject data) {
         try {
             int requestId = data.getInt("id");
             logger.debug("Received cancel for request {}", requestId);
             // Find and abort running request
-            if (runningRequests.containsKey(requestId)) {
-                Request request = runningRequests.get(requestId);
-                request.abort(new InterruptedException());
-                runningRequests.remove(requestId);
+            ProxyResponseStream stream = runningRequests.remove(requestId);
+            if (stream != null) {
+                stream.abort();
             }
         } catch (JSONException e) {
             logger.error(e.getMessage());
@@ -372,6 +447,7 @@ public class MyOpenHABClient {
     private void handleCommandEvent(JSONObject data) {
         try {
             logger.debug("Received command " + data.getString("command") + " for item " + data.getString("item"));
+            itemUpdateUplink.prioritize(data.getString("item"));
             if (this.listener != null) {
                 this.listener.sendCommand(data.getString("item"), data.getString("command"));
             }
@@ -481,7 +557,7 @@ public class MyOpenHABClient {
     }
 
     /**
-     * Send item update to my.openHAB
+     * Queue item update to be sent to my.openHAB
      *
      * @param itemName the name of the item
      * @param itemState updated item state
@@ -489,6 +565,18 @@ public class MyOpenHABClient {
      */
 
     public void sendItemUpdate(String itemName, String itemState) {
+        itemUpdateUplink.offer(itemName, itemState);
+    }
+
+    /**
+     * Send item update to my.openHAB, called by the {@link ItemUpdateUplink}
+     *
+     * @param itemName the name of the item
+     * @param itemState updated item state
+     *
+     */
+
+    void emitItemUpdate(String itemName, String itemState) {
         if (isConnected()) {
             logger.debug("Sending update '{}' for item '{}'", itemState, itemName);
             JSONObject itemUpdateMessage = new JSONObject();
@@ -518,6 +606,8 @@ public class MyOpenHABClient {
 
     public void shutdown() {
         logger.info("Shutting down my.openHAB service connection");
+        itemUpdateUplink.stop();
+        responseCache.clear();
         try {
             jettyClient.stop();
         } catch (Exception e) {
@@ -526,6 +616,13 @@ public class MyOpenHABClient {
         socket.disconnect();
     }
 
+    /**
+     * Returns the queue of the item updates sent to my.openHAB, e.g. to read its statistics.
+     */
+    public ItemUpdateUplink getItemUpdateUplink() {
+        return itemUpdateUplink;
+    }
+
     public String getOpenHABVersion() {
         return openHABVersion;
     }
@@ -537,102 +634,4 @@ public class MyOpenHABClient {
     public void setListener(MyOpenHABClientListener listener) {
         this.listener = listener;
     }
-
-    /*
-     * An internal class which extends ContentExchange and forwards response
-     * headers and data back to my.openHAB
-     *
-     */
-
-    private class ResponseListener
-            implements Response.CompleteListener, HeadersListener, ContentListener, FailureListener {
-
-        private int mRequestId;
-        private boolean mHeadersSent = false;
-
-        public ResponseListener(int requestId) {
-            mRequestId = requestId;
-        }
-
-        public JSONObject getJSONHeaders(HttpFields httpFields) {
-            JSONObject headersJSON = new JSONObject();
-            try {
-                for (HttpField field : httpFields) {
-                    headersJSON.put(field.getName(), field.getValue());
-                }
-            } catch (JSONException e) {
-                logger.error("Error forming response headers: {}", e.getMessage());
-            }
-            return headersJSON;
-        }
-
-        @Override
-        public void onComplete(Result result) {
-            // Remove this request from list of running requests
-            runningRequests.remove(mRequestId);
-            if (result.isFailed()) {
-                logger.warn("Jetty request {} failed: {}", mRequestId, result.getFailure().getMessage());
-                logger.warn(result.getRequestFailure().getMessage());
-                logger.warn(result.getResponseFailure().getMessage());
-            }
-            JSONObject responseJson = new JSONObject();
-            try {
-                responseJson.put("id", mRequestId);
-                socket.emit("responseFinished", responseJson);
-                logger.debug("Finished responding to request {}", mRequestId);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
-            }
-
-        }
-
-        @Override
-        public void onFailure(Request request, Throwable failure) {
-            logger.error(failure.getMessage());
-            JSONObject responseJson = new JSONObject();
-            try {
-                responseJson.put("id", mRequestId);
-                responseJson.put("responseStatusText", "openHAB connection error: " + failure.getMessage());
-                socket.emit("responseError", responseJson);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
-            }
-        }
-
-        @Override
-        public void onContent(Response response, ByteBuffer content) {
-            logger.debug("Jetty received response content of size " + String.valueOf(content.remaining()));
-            JSONObject responseJson = new JSONObject();
-            try {
-                responseJson.put("id", mRequestId);
-                responseJson.put("body", BufferUtil.toArray(content));
-                socket.emit("responseContentBinary", responseJson);
-                logger.debug("Sent content to request {}", mRequestId);
-            } catch (JSONException e) {
-                logger.error(e.getMessage());
-            }
-        }
-
-        @Override
-        public void onHeaders(Response response) {
-            if (!mHeadersSent) {
-                logger.debug("Jetty finished receiving response header");
-                JSONObject responseJson = new JSONObject();
-                mHeadersSent = true;
-                try {
-                    responseJson.put("id", mRequestId);
-                    responseJson.put("headers", getJSONHeaders(response.getHeaders()));
-                    responseJson.put("responseStatusCode", response.getStatus());
-                    responseJson.put("responseStatusText", "OK");
-                    socket.emit("responseHeader", responseJson);
-                    logger.debug("Sent headers to request {}", mRequestId);
-                    logger.debug(responseJson.toString());
-                } catch (JSONException e) {
-                    logger.error(e.getMessage());
-                }
-            } else {
-                // We should not send headers for the second time...
-            }
-        }
-    }
 }
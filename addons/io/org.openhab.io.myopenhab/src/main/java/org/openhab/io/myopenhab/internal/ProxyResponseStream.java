@@ -0,0 +1,488 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Request.FailureListener;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Response.AsyncContentListener;
+import org.eclipse.jetty.client.api.Response.HeadersListener;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.socket.client.Socket;
+
+/**
+ * This class forwards the response of a local openHAB request to my.openHAB. Every content buffer received from the
+ * local server is forwarded as soon as it has been processed, so streaming responses like server-sent events or long
+ * polling are not delayed. Reading the response from the local server is suspended as long as more than
+ * {@link #MAX_IN_FLIGHT_BYTES} bytes have been handed to the Socket.IO connection and not yet been written by its
+ * transport. Text content is compressed on the fly, if the remote client accepts gzip encoding. The compressor is
+ * flushed after every buffer. Event streams are neither compressed nor cached.
+ *
+ * If a {@link ResponseCache} is set, a cacheable response is recorded as it is sent and stored in the cache once it
+ * is complete. A request revalidating a cached response is answered from the cache, if the local server responds
+ * with 304. Cached content is sent with the same flow control as content read from the local server.
+ *
+ * @author Victor Belov - Initial contribution
+ * @author agent - Streaming with flow control and on-the-fly gzip
+ */
+class ProxyResponseStream implements Response.CompleteListener, HeadersListener, AsyncContentListener, FailureListener {
+
+    private static Logger logger = LoggerFactory.getLogger(ProxyResponseStream.class);
+
+    /*
+     * Initial size of the content chunk buffer and size of the gzip buffer
+     */
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    /*
+     * Maximum number of bytes sent to my.openHAB which are not yet written by the transport
+     */
+    static final int MAX_IN_FLIGHT_BYTES = 128 * 1024;
+
+    private static final String[] COMPRESSIBLE_TYPES = { "text/", "application/json", "application/javascript",
+            "application/xml", "image/svg+xml" };
+
+    private static final String EVENT_STREAM_TYPE = "text/event-stream";
+
+    private final int requestId;
+    private final Socket socket;
+    private final boolean acceptsGzip;
+    private Request request;
+
+    private boolean headersSent = false;
+    private ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_SIZE);
+    private GZIPOutputStream gzip;
+    private int inFlightBytes;
+    private Callback suspendedCallback;
+    private boolean disconnected;
+    private Iterator<byte[]> cachedChunks;
+    private Runnable finishedListener;
+
+    private ResponseCache cache;
+    private String cacheKey;
+    private ResponseCache.Entry revalidating;
+    private boolean notModified;
+    private boolean fromCache;
+    private long maxAge = -1;
+    private JSONObject recordedHeaders;
+    private String recordedETag;
+    private String recordedLastModified;
+    private final List<byte[]> recordedChunks = new ArrayList<byte[]>();
+    private int recordedSize;
+
+    ProxyResponseStream(int requestId, Socket socket, boolean acceptsGzip) {
+        this.requestId = requestId;
+        this.socket = socket;
+        this.acceptsGzip = acceptsGzip;
+    }
+
+    /**
+     * Records the response for the cache.
+     *
+     * @param revalidating the cached response which is revalidated by the request, or null
+     * @param notModified true, if the remote client has the revalidated response and is answered with 304
+     */
+    void cacheAs(ResponseCache cache, String cacheKey, ResponseCache.Entry revalidating, boolean notModified) {
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+        this.revalidating = revalidating;
+        this.notModified = notModified;
+    }
+
+    /**
+     * Sets the listener called when the response has been finished.
+     */
+    void setFinishedListener(Runnable finishedListener) {
+        this.finishedListener = finishedListener;
+    }
+
+    /**
+     * Sends a cached response to my.openHAB, without a local request.
+     */
+    void sendCachedResponse(ResponseCache.Entry entry) {
+        try {
+            sendHeaders(entry.getHeaders(), 200, "OK");
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+        logger.debug("Sending cached response to request {}", requestId);
+        sendCachedChunks(entry.getChunks());
+    }
+
+    /**
+     * Answers a conditional request matching a cached response with 304, without a local request.
+     */
+    void sendNotModified(ResponseCache.Entry entry) {
+        try {
+            sendHeaders(entry.getNotModifiedHeaders(), 304, "Not Modified");
+            sendFinished();
+            logger.debug("Sent not modified to request {}", requestId);
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the request and forwards its response.
+     */
+    void send(Request request) {
+        this.request = request;
+        request.onResponseHeaders(this).onResponseContentAsync(this).onRequestFailure(this).send(this);
+    }
+
+    /**
+     * Aborts the request, called when my.openHAB cancels it.
+     */
+    void abort() {
+        synchronized (this) {
+            cachedChunks = null;
+        }
+        if (request != null) {
+            request.abort(new InterruptedException());
+        }
+    }
+
+    /**
+     * Called when the connection to my.openHAB is lost. The response can't be forwarded anymore, so a suspended read
+     * is failed and the local request is aborted.
+     */
+    void disconnected() {
+        Callback callback;
+        synchronized (this) {
+            disconnected = true;
+            cachedChunks = null;
+            callback = suspendedCallback;
+            suspendedCallback = null;
+        }
+        if (callback != null) {
+            callback.failed(new IOException("Connection to my.openHAB lost"));
+        }
+        if (request != null) {
+            request.abort(new IOException("Connection to my.openHAB lost"));
+        }
+    }
+
+    /**
+     * Called when the Socket.IO transport has written its buffered packets, resumes reading the response.
+     */
+    void drained() {
+        Callback callback;
+        synchronized (this) {
+            inFlightBytes = 0;
+            callback = suspendedCallback;
+            suspendedCallback = null;
+        }
+        if (callback != null) {
+            callback.succeeded();
+        }
+        continueCachedChunks();
+    }
+
+    public JSONObject getJSONHeaders(HttpFields httpFields) {
+        JSONObject headersJSON = new JSONObject();
+        try {
+            for (HttpField field : httpFields) {
+                if (gzip != null && (field.getHeader() == HttpHeader.CONTENT_LENGTH
+                        || field.getHeader() == HttpHeader.CONTENT_ENCODING)) {
+                    continue;
+                }
+                headersJSON.put(field.getName(), field.getValue());
+            }
+            if (gzip != null) {
+                headersJSON.put(HttpHeader.CONTENT_ENCODING.asString(), "gzip");
+                headersJSON.put(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+            }
+        } catch (JSONException e) {
+            logger.error("Error forming response headers: {}", e.getMessage());
+        }
+        return headersJSON;
+    }
+
+    @Override
+    public void onHeaders(Response response) {
+        if (!headersSent) {
+            logger.debug("Jetty finished receiving response header");
+            headersSent = true;
+            if (revalidating != null && response.getStatus() == 304) {
+                // the cached response is still valid
+                fromCache = true;
+                revalidating.refresh(Math.max(0, ResponseCache.getMaxAge(200, response.getHeaders())));
+                try {
+                    if (notModified) {
+                        sendHeaders(revalidating.getNotModifiedHeaders(), 304, "Not Modified");
+                    } else {
+                        sendHeaders(revalidating.getHeaders(), 200, "OK");
+                    }
+                } catch (JSONException e) {
+                    logger.error(e.getMessage());
+                }
+                return;
+            }
+            if (acceptsGzip && hasBody(response) && isCompressible(response.getHeaders())) {
+                try {
+                    // sync flush, so every buffer can be forwarded as soon as it has been received
+                    gzip = new GZIPOutputStream(chunk, CHUNK_SIZE, true);
+                } catch (IOException e) {
+                    logger.debug("Could not create gzip stream: {}", e.getMessage());
+                }
+            }
+            JSONObject headers = getJSONHeaders(response.getHeaders());
+            if (cache != null && !isEventStream(response.getHeaders())) {
+                maxAge = ResponseCache.getMaxAge(response.getStatus(), response.getHeaders());
+                if (maxAge >= 0) {
+                    recordedHeaders = headers;
+                    recordedETag = response.getHeaders().get(HttpHeader.ETAG);
+                    recordedLastModified = response.getHeaders().get(HttpHeader.LAST_MODIFIED);
+                }
+            }
+            try {
+                sendHeaders(headers, response.getStatus(), "OK");
+            } catch (JSONException e) {
+                logger.error(e.getMessage());
+            }
+        } else {
+            // We should not send headers for the second time...
+        }
+    }
+
+    @Override
+    public void onContent(Response response, ByteBuffer content, Callback callback) {
+        logger.debug("Jetty received response content of size {}", content.remaining());
+        if (fromCache) {
+            callback.succeeded();
+            return;
+        }
+        boolean suspend;
+        synchronized (this) {
+            if (disconnected) {
+                callback.failed(new IOException("Connection to my.openHAB lost"));
+                return;
+            }
+            try {
+                if (gzip != null) {
+                    gzip.write(BufferUtil.toArray(content));
+                    gzip.flush();
+                    sendChunk();
+                } else {
+                    sendContent(BufferUtil.toArray(content));
+                }
+            } catch (IOException e) {
+                callback.failed(e);
+                return;
+            }
+            suspend = inFlightBytes >= MAX_IN_FLIGHT_BYTES;
+            if (suspend) {
+                logger.debug("Suspended reading response of request {} until the transport is drained", requestId);
+                suspendedCallback = callback;
+            }
+        }
+        if (!suspend) {
+            callback.succeeded();
+        }
+    }
+
+    @Override
+    public void onComplete(Result result) {
+        if (result.isFailed()) {
+            logger.warn("Jetty request {} failed: {}", requestId, result.getFailure().getMessage());
+        } else if (fromCache) {
+            if (!notModified) {
+                // finished once the cached content has been sent
+                sendCachedChunks(revalidating.getChunks());
+                return;
+            }
+        } else {
+            synchronized (this) {
+                try {
+                    if (gzip != null) {
+                        gzip.finish();
+                    }
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                }
+                sendChunk();
+                if (cache != null) {
+                    if (maxAge >= 0) {
+                        cache.put(cacheKey, new ResponseCache.Entry(recordedHeaders, recordedChunks, recordedETag,
+                                recordedLastModified, maxAge));
+                    } else if (revalidating != null) {
+                        cache.remove(cacheKey);
+                    }
+                }
+            }
+        }
+        sendFinished();
+    }
+
+    @Override
+    public void onFailure(Request request, Throwable failure) {
+        logger.error(failure.getMessage());
+        JSONObject responseJson = new JSONObject();
+        try {
+            responseJson.put("id", requestId);
+            responseJson.put("responseStatusText", "openHAB connection error: " + failure.getMessage());
+            socket.emit("responseError", responseJson);
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
+    private void sendCachedChunks(List<byte[]> chunks) {
+        synchronized (this) {
+            if (disconnected) {
+                return;
+            }
+            cachedChunks = chunks.iterator();
+        }
+        continueCachedChunks();
+    }
+
+    /**
+     * Sends cached content until too many bytes are in flight, the remaining content is sent when the transport has
+     * been drained. Finishes the response after the last chunk.
+     */
+    private void continueCachedChunks() {
+        synchronized (this) {
+            if (cachedChunks == null) {
+                return;
+            }
+            while (cachedChunks.hasNext() && inFlightBytes < MAX_IN_FLIGHT_BYTES) {
+                byte[] body = cachedChunks.next();
+                sendBody(body);
+                inFlightBytes += body.length;
+            }
+            if (cachedChunks.hasNext()) {
+                logger.debug("Suspended sending cached response to request {} until the transport is drained",
+                        requestId);
+                return;
+            }
+            cachedChunks = null;
+        }
+        sendFinished();
+    }
+
+    private void sendChunk() {
+        if (chunk.size() == 0) {
+            return;
+        }
+        byte[] body = chunk.toByteArray();
+        chunk.reset();
+        sendContent(body);
+    }
+
+    /**
+     * Sends content to my.openHAB and records it for the cache.
+     */
+    private void sendContent(byte[] body) {
+        if (body.length == 0) {
+            return;
+        }
+        if (maxAge >= 0) {
+            recordedSize += body.length;
+            if (recordedSize > ResponseCache.MAX_ENTRY_SIZE) {
+                // too large to be cached
+                maxAge = -1;
+                recordedChunks.clear();
+            } else {
+                recordedChunks.add(body);
+            }
+        }
+        sendBody(body);
+        inFlightBytes += body.length;
+    }
+
+    private void sendHeaders(JSONObject headers, int status, String statusText) throws JSONException {
+        JSONObject responseJson = new JSONObject();
+        responseJson.put("id", requestId);
+        responseJson.put("headers", headers);
+        responseJson.put("responseStatusCode", status);
+        responseJson.put("responseStatusText", statusText);
+        socket.emit("responseHeader", responseJson);
+        logger.debug("Sent headers to request {}", requestId);
+        logger.debug(responseJson.toString());
+    }
+
+    private void sendBody(byte[] body) {
+        JSONObject responseJson = new JSONObject();
+        try {
+            responseJson.put("id", requestId);
+            responseJson.put("body", body);
+            socket.emit("responseContentBinary", responseJson);
+            logger.debug("Sent {} bytes of content to request {}", body.length, requestId);
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
+    private void sendFinished() {
+        JSONObject responseJson = new JSONObject();
+        try {
+            responseJson.put("id", requestId);
+            socket.emit("responseFinished", responseJson);
+            logger.debug("Finished responding to request {}", requestId);
+        } catch (JSONException e) {
+            logger.error(e.getMessage());
+        }
+        if (finishedListener != null) {
+            finishedListener.run();
+        }
+    }
+
+    /**
+     * Checks whether the response carries a body. HEAD responses and 1xx, 204, 205 and 304 responses must not have
+     * one, even though they may contain the content headers of the resource.
+     */
+    private boolean hasBody(Response response) {
+        if (HttpMethod.HEAD.is(response.getRequest().getMethod())) {
+            return false;
+        }
+        int status = response.getStatus();
+        return status >= 200 && status < 300 && status != 204 && status != 205;
+    }
+
+    private boolean isCompressible(HttpFields headers) {
+        if (headers.containsKey(HttpHeader.CONTENT_ENCODING.asString())) {
+            return false;
+        }
+        String contentType = headers.get(HttpHeader.CONTENT_TYPE);
+        if (contentType == null || isEventStream(headers)) {
+            return false;
+        }
+        for (String type : COMPRESSIBLE_TYPES) {
+            if (contentType.startsWith(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isEventStream(HttpFields headers) {
+        String contentType = headers.get(HttpHeader.CONTENT_TYPE);
+        return contentType != null && contentType.startsWith(EVENT_STREAM_TYPE);
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.myopenhab.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class caches cacheable responses of the local openHAB server as they have been sent to my.openHAB, so they
+ * can be sent again without requesting them from the local server. The cache is bounded by the total size of the
+ * cached bodies and evicts the least recently used responses first.
+ *
+ * A response is cacheable if it is a successful response to a GET request without credentials, carries a validator
+ * or a max-age, neither sets a cookie nor forbids caching and only varies by the request headers the cache key is made
+ * of: the path, the content coding sent to the remote client and the accepted languages. Cached responses are served
+ * without a local request while they are fresh and revalidated with the local server otherwise. Conditional requests
+ * matching a cached response are answered with 304 directly.
+ *
+ * @author agent - Initial contribution
+ */
+class ResponseCache {
+
+    private static Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    /*
+     * Maximum total size of the cached bodies
+     */
+    private static final int MAX_CACHE_SIZE = 8 * 1024 * 1024;
+
+    /*
+     * Maximum size of a single cached body
+     */
+    static final int MAX_ENTRY_SIZE = 512 * 1024;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private int size;
+    private long hits;
+    private long misses;
+
+    /*
+     * Request headers a cached response may vary by, they are part of the cache key
+     */
+    private static final String[] KEY_HEADERS = { "accept-encoding", "accept-language" };
+
+    /**
+     * Returns the cache key of a request.
+     *
+     * @param uri the local request URI, including the query
+     * @param gzip true, if the response is gzipped for the remote client
+     * @param acceptLanguage the Accept-Language header of the request, or null
+     */
+    static String key(String uri, boolean gzip, String acceptLanguage) {
+        return uri + '\n' + (gzip ? "gzip" : "identity") + '\n' + (acceptLanguage == null ? "" : acceptLanguage);
+    }
+
+    /**
+     * Returns the cached response, a request is counted as hit if the response is fresh.
+     */
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isFresh()) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    synchronized void put(String key, Entry entry) {
+        if (entry.size > MAX_ENTRY_SIZE) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += entry.size;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > MAX_CACHE_SIZE && iterator.hasNext()) {
+            size -= iterator.next().size;
+            iterator.remove();
+        }
+        logger.debug("Cached response for {}, {} responses with {} bytes cached", key, entries.size(), size);
+    }
+
+    synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns true, if the request carries no credentials and may be answered from the cache.
+     */
+    static boolean isCacheableRequest(JSONObject requestHeadersJson) {
+        return getHeader(requestHeadersJson, "Authorization") == null
+                && getHeader(requestHeadersJson, "Cookie") == null;
+    }
+
+    /**
+     * Returns the max-age of a cacheable response in milliseconds, 0 if it has to be revalidated and -1 if the
+     * response must not be cached.
+     */
+    static long getMaxAge(int status, HttpFields headers) {
+        if (status != 200 || headers.containsKey(HttpHeader.SET_COOKIE.asString()) || !isKeyedVary(headers)) {
+            return -1;
+        }
+        long maxAge = 0;
+        String cacheControl = headers.get(HttpHeader.CACHE_CONTROL);
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase().split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-store") || directive.equals("no-cache") || directive.equals("private")) {
+                    return -1;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8).trim()) * 1000;
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+            }
+        }
+        if (maxAge == 0 && headers.get(HttpHeader.ETAG) == null && headers.get(HttpHeader.LAST_MODIFIED) == null) {
+            return -1;
+        }
+        return maxAge;
+    }
+
+    /**
+     * Returns true, if the response only varies by request headers which are part of the cache key.
+     */
+    private static boolean isKeyedVary(HttpFields headers) {
+        String vary = headers.get(HttpHeader.VARY);
+        if (vary == null) {
+            return true;
+        }
+        for (String name : vary.toLowerCase(Locale.ENGLISH).split(",")) {
+            name = name.trim();
+            if (!name.isEmpty() && !Arrays.asList(KEY_HEADERS).contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a request header, the name is matched case insensitive.
+     */
+    static String getHeader(JSONObject requestHeadersJson, String name) {
+        @SuppressWarnings("unchecked")
+        Iterator<String> headersIterator = requestHeadersJson.keys();
+        while (headersIterator.hasNext()) {
+            String headerName = headersIterator.next();
+            if (headerName.equalsIgnoreCase(name)) {
+                return requestHeadersJson.optString(headerName, null);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A cached response, with the headers and content chunks as they have been sent to my.openHAB.
+     */
+    static class Entry {
+        private final String headers;
+        private final List<byte[]> chunks;
+        private final int size;
+        private final String etag;
+        private final String lastModified;
+        private volatile long expires;
+
+        Entry(JSONObject headers, List<byte[]> chunks, String etag, String lastModified, long maxAge) {
+            this.headers = headers.toString();
+            this.chunks = Collections.unmodifiableList(new ArrayList<byte[]>(chunks));
+            int size = this.headers.length();
+            for (byte[] chunk : chunks) {
+                size += chunk.length;
+            }
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            refresh(maxAge);
+        }
+
+        /**
+         * Returns true, if the response may be sent without revalidation.
+         */
+        boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+
+        /**
+         * Marks the response as fresh for the given time, called after a successful revalidation.
+         */
+        void refresh(long maxAge) {
+            expires = System.currentTimeMillis() + maxAge;
+        }
+
+        /**
+         * Returns true, if a conditional request with the given validators can be answered with 304.
+         */
+        boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                if (etag == null) {
+                    return false;
+                }
+                for (String tag : ifNoneMatch.split(",")) {
+                    tag = tag.trim();
+                    if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return ifModifiedSince != null && ifModifiedSince.equals(lastModified);
+        }
+
+        String getETag() {
+            return etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        JSONObject getHeaders() throws JSONException {
+            return new JSONObject(headers);
+        }
+
+        List<byte[]> getChunks() {
+            return chunks;
+        }
+
+        /**
+         * Returns the headers of a 304 response for this cached response.
+         */
+        JSONObject getNotModifiedHeaders() throws JSONException {
+            JSONObject all = getHeaders();
+            JSONObject notModified = new JSONObject();
+            @SuppressWarnings("unchecked")
+            Iterator<String> headersIterator = all.keys();
+            while (headersIterator.hasNext()) {
+                String headerName = headersIterator.next();
+                if (headerName.equalsIgnoreCase("ETag") || headerName.equalsIgnoreCase("Last-Modified")
+                        || headerName.equalsIgnoreCase("Cache-Control") || headerName.equalsIgnoreCase("Expires")
+                        || headerName.equalsIgnoreCase("Vary")) {
+                    notModified.put(headerName, all.get(headerName));
+                }
+            }
+            return notModified;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.rrd4j.ConsolFun;
+
+/**
+ * a single chart series, stored as columns of timestamps and values. The timestamps have to be added in ascending
+ * order.
+ *
+ * @author Tobias Bräutigam
+ * @author agent - Series lookup extracted from ChartResource
+ * @since 2.0.0
+ *
+ */
+class ChartSeries {
+
+    private long[] times;
+    private double[] values;
+    private int size;
+
+    ChartSeries(int capacity) {
+        times = new long[Math.max(capacity, 16)];
+        values = new double[times.length];
+    }
+
+    ChartSeries(long[] times, double[] values) {
+        this.times = times;
+        this.values = values;
+        this.size = times.length;
+    }
+
+    void add(long time, double value) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        times[size] = time;
+        values[size] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * consolidates the values into buckets of the given width, the timestamp of a bucket is its start
+     *
+     * @param start
+     *            the start of the first bucket
+     * @param bucketWidth
+     *            the width of a bucket in milliseconds
+     * @param consolidationFunction
+     *            the function used to consolidate the values of a bucket
+     * @return the consolidated series, or this series if it has no more values than buckets
+     */
+    ChartSeries downsample(long start, long bucketWidth, ConsolFun consolidationFunction) {
+        if (bucketWidth <= 0 || size < 2 || (times[size - 1] - times[0]) / bucketWidth + 1 >= size) {
+            return this;
+        }
+        ChartSeries result = new ChartSeries((int) ((times[size - 1] - times[0]) / bucketWidth) + 1);
+        int i = 0;
+        while (i < size) {
+            long bucket = bucketOf(times[i], start, bucketWidth);
+            double consolidated = Double.NaN;
+            int count = 0;
+            double sum = 0;
+            while (i < size && bucketOf(times[i], start, bucketWidth) == bucket) {
+                double value = values[i++];
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                switch (consolidationFunction) {
+                    case MIN:
+                        consolidated = count == 0 ? value : Math.min(consolidated, value);
+                        break;
+                    case MAX:
+                        consolidated = count == 0 ? value : Math.max(consolidated, value);
+                        break;
+                    case FIRST:
+                        consolidated = count == 0 ? value : consolidated;
+                        break;
+                    case LAST:
+                        consolidated = value;
+                        break;
+                    default:
+                        sum += value;
+                        break;
+                }
+                count++;
+            }
+            if (count > 0 && consolidationFunction == ConsolFun.AVERAGE) {
+                consolidated = sum / count;
+            } else if (count > 0 && consolidationFunction == ConsolFun.TOTAL) {
+                consolidated = sum;
+            }
+            result.add(start + bucket * bucketWidth, consolidated);
+        }
+        return result;
+    }
+
+    private static long bucketOf(long time, long start, long bucketWidth) {
+        long bucket = (time - start) / bucketWidth;
+        return time < start && (time - start) % bucketWidth != 0 ? bucket - 1 : bucket;
+    }
+
+    /**
+     * writes the series as JSON array of [[timestamp,[value1,value2,...]],...]. The series are merged by their
+     * timestamps, a series without a value at a timestamp contributes "null".
+     */
+    static void writeJson(List<ChartSeries> series, Writer writer) throws IOException {
+        DecimalFormat format = (DecimalFormat) NumberFormat.getNumberInstance(Locale.ENGLISH);
+        format.applyPattern(ChartResource.PATTERN);
+
+        int[] cursors = new int[series.size()];
+        writer.write('[');
+        boolean first = true;
+        while (true) {
+            // the next timestamp is the smallest one of all series
+            long time = Long.MAX_VALUE;
+            for (int s = 0; s < cursors.length; s++) {
+                ChartSeries current = series.get(s);
+                if (cursors[s] < current.size && current.times[cursors[s]] < time) {
+                    time = current.times[cursors[s]];
+                }
+            }
+            if (time == Long.MAX_VALUE) {
+                break;
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write('[');
+            writer.write(Long.toString(time));
+            writer.write(",[");
+            for (int s = 0; s < cursors.length; s++) {
+                ChartSeries current = series.get(s);
+                if (s > 0) {
+                    writer.write(',');
+                }
+                writer.write('"');
+                if (cursors[s] < current.size && current.times[cursors[s]] == time) {
+                    double value = current.values[cursors[s]++];
+                    writer.write(Double.isNaN(value) ? "null" : format.format(value));
+                } else {
+                    writer.write("null");
+                }
+                writer.write('"');
+            }
+            writer.write("]]");
+        }
+        writer.write(']');
+    }
+}
@@ -11,12 +11,25 @@ package org.openhab.ui.cometvisu.backend;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,7 +48,6 @@ import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
 import org.glassfish.jersey.media.sse.SseFeature;
 import org.openhab.ui.cometvisu.backend.beans.StateBean;
 import org.openhab.ui.cometvisu.internal.Config;
@@ -48,6 +60,15 @@ import org.slf4j.LoggerFactory;
  * handles read request from the CometVisu client every request initializes a
  * SSE communication
  *
+ * Every connection only receives the events of the addresses it has requested. The connections are indexed by the
+ * requested item names, a state change is queued for the interested connections only. Queued states of a connection
+ * are replaced by newer states of the same address, so a slow client does not hold back the others.
+ *
+ * The state changes are dispatched once per tick: the queued states of a connection are written as a single frame
+ * of up to the configured batch size. A state change is serialized once for all connections. The frames are written
+ * by a bounded pool of writer threads, if all of them are busy, the connections are dispatched again after the next
+ * tick, but at least {@link #RETRY_DELAY} ms later, and their states keep being coalesced.
+ *
  * @author Tobias Bräutigam
  * @since 2.0.0
  */
@@ -55,16 +76,60 @@ import org.slf4j.LoggerFactory;
 public class ReadResource implements EventBroadcaster, RESTResource {
     private static final Logger logger = LoggerFactory.getLogger(ReadResource.class);
 
-    private SseBroadcaster broadcaster = new SseBroadcaster();
+    /**
+     * number of threads writing events to the clients
+     */
+    private static final int WRITER_THREADS = 4;
+
+    /**
+     * maximum number of clients waiting for a writer thread
+     */
+    private static final int MAX_PENDING_WRITES = 64;
+
+    /**
+     * minimum delay in ms before clients are dispatched again, if all writer threads were busy
+     */
+    private static final long RETRY_DELAY = 20;
 
     private final ExecutorService executorService;
 
+    private final ScheduledExecutorService dispatcher;
+
+    /**
+     * clients with queued states, which are dispatched in the next tick
+     */
+    private final Set<SseClient> pendingClients = Collections
+            .newSetFromMap(new ConcurrentHashMap<SseClient, Boolean>());
+
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
     private ItemRegistry itemRegistry;
 
     private StateEventListener stateEventListener;
 
-    private List<String> itemNames = new ArrayList<String>();
-    private Map<Item, Map<String, Class<? extends State>>> items = new HashMap<Item, Map<String, Class<? extends State>>>();
+    /**
+     * all connected clients
+     */
+    private final Set<SseClient> clients = new CopyOnWriteArraySet<SseClient>();
+
+    /**
+     * maps the item names to the clients which requested them
+     */
+    private final Map<String, Set<SseClient>> subscribers = new ConcurrentHashMap<String, Set<SseClient>>();
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong fanoutCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
 
     @Context
     private UriInfo uriInfo;
@@ -78,11 +143,28 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     private Collection<ItemFactory> itemFactories = new CopyOnWriteArrayList<ItemFactory>();
 
     public ReadResource() {
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.executorService = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_PENDING_WRITES), new DaemonThreadFactory("cometvisu-sse-writer"));
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("cometvisu-sse-dispatch"));
         this.stateEventListener = new StateEventListener();
         this.stateEventListener.setEventBroadcaster(this);
     }
 
+    /**
+     * stops dispatching and writing, closes the connections and stops listening to the requested items
+     */
+    protected void deactivate() {
+        dispatcher.shutdownNow();
+        executorService.shutdownNow();
+        for (SseClient client : clients) {
+            client.close();
+            unsubscribe(client);
+        }
+        pendingClients.clear();
+        logger.debug("{} events, {} queued, {} written in {} frames, {} dropped, {} deferred", eventCount.get(),
+                fanoutCount.get(), writtenCount.get(), frameCount.get(), droppedCount.get(), deferredCount.get());
+    }
+
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
     }
@@ -115,57 +197,132 @@ public class ReadResource implements EventBroadcaster, RESTResource {
             @QueryParam("t") long time) throws IOException, InterruptedException {
         final EventOutput eventOutput = new EventOutput();
 
-        this.itemNames = itemNames;
+        // map the requested addresses to the items
+        Map<String, Map<String, Class<? extends State>>> items = new LinkedHashMap<String, Map<String, Class<? extends State>>>();
+        for (String cvItemName : itemNames) {
+            String[] parts = cvItemName.split(":");
+            String ohItemName = cvItemName;
+            Class<? extends State> stateClass = null;
+            if (parts.length == 2) {
+                String classPrefix = parts[0].toLowerCase();
+                if (Config.itemTypeMapper.containsKey(classPrefix)) {
+                    stateClass = Config.itemTypeMapper.get(classPrefix);
+                } else {
+                    logger.debug("no type found for '{}'", classPrefix);
+                }
+                ohItemName = parts[1];
+            }
+            if (!items.containsKey(ohItemName)) {
+                items.put(ohItemName, new LinkedHashMap<String, Class<? extends State>>());
+            }
+            items.get(ohItemName).put(cvItemName, stateClass);
+        }
 
-        broadcaster.add(eventOutput);
+        // listen to the items before reading their states, changes in between are queued and written after the
+        // initial states
+        SseClient client = new SseClient(eventOutput, items);
+        client.reserveWriting();
+        subscribe(client);
 
-        // get all requested items and send their states to the client
-        items = new HashMap<Item, Map<String, Class<? extends State>>>();
         // send the current states of all items to the client
-        if (this.itemRegistry != null) {
-            List<StateBean> states = new ArrayList<StateBean>();
-            for (String cvItemName : itemNames) {
-                try {
-                    String[] parts = cvItemName.split(":");
-                    String ohItemName = cvItemName;
-                    Class<? extends State> stateClass = null;
-                    if (parts.length == 2) {
-                        String classPrefix = parts[0].toLowerCase();
-                        if (Config.itemTypeMapper.containsKey(classPrefix)) {
-                            stateClass = Config.itemTypeMapper.get(classPrefix);
-                            classPrefix += ":";
-                        } else {
-                            logger.debug("no type found for '{}'", classPrefix);
-                            classPrefix = "";
+        try {
+            if (this.itemRegistry != null) {
+                List<StateBean> states = new ArrayList<StateBean>();
+                for (Map.Entry<String, Map<String, Class<? extends State>>> entry : items.entrySet()) {
+                    try {
+                        Item item = this.itemRegistry.getItem(entry.getKey());
+                        for (Map.Entry<String, Class<? extends State>> address : entry.getValue().entrySet()) {
+                            StateBean itemState = new StateBean();
+                            itemState.name = address.getKey();
+                            Class<? extends State> stateClass = address.getValue();
+                            if (stateClass != null) {
+                                itemState.state = item.getStateAs(stateClass).toString();
+                                logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, itemState.state);
+                            } else {
+                                itemState.state = item.getState().toString();
+                            }
+                            states.add(itemState);
                         }
-                        ohItemName = parts[1];
+                    } catch (ItemNotFoundException e) {
+                        logger.error(e.getLocalizedMessage());
                     }
-                    Item item = this.itemRegistry.getItem(ohItemName);
-                    if (!items.containsKey(item)) {
-                        items.put(item, new HashMap<String, Class<? extends State>>());
+                }
+                logger.debug("initially sending " + states.size() + "/" + itemNames.size() + " item states");
+                client.write(SseUtil.buildEvent(states));
+            }
+        } catch (IOException e) {
+            client.close();
+            unsubscribe(client);
+            throw e;
+        }
+        client.stopWriting();
+        pendingClients.add(client);
+        scheduleDispatch(0);
+
+        return eventOutput;
+    }
+
+    /**
+     * adds the client to the index and listens to state changes of its items
+     */
+    private void subscribe(SseClient client) {
+        removeClosedClients();
+        synchronized (subscribers) {
+            clients.add(client);
+            for (String itemName : client.getItemNames()) {
+                Set<SseClient> itemClients = subscribers.get(itemName);
+                if (itemClients == null) {
+                    itemClients = new CopyOnWriteArraySet<SseClient>();
+                    subscribers.put(itemName, itemClients);
+                }
+                itemClients.add(client);
+                if (this.itemRegistry != null) {
+                    try {
+                        registerItem(this.itemRegistry.getItem(itemName));
+                    } catch (ItemNotFoundException e) {
+                        // the item is registered once it is added
                     }
-                    items.get(item).put(cvItemName, stateClass);
-                    StateBean itemState = new StateBean();
-                    itemState.name = cvItemName;
-
-                    if (stateClass != null) {
-                        itemState.state = item.getStateAs(stateClass).toString();
-                        logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, itemState.state);
-                    } else {
-                        itemState.state = item.getState().toString();
+                }
+            }
+        }
+        logger.debug("{} clients connected", clients.size());
+    }
+
+    /**
+     * removes the client from the index and stops listening to the items no other client requested
+     */
+    private void unsubscribe(SseClient client) {
+        synchronized (subscribers) {
+            if (!clients.remove(client)) {
+                return;
+            }
+            for (String itemName : client.getItemNames()) {
+                Set<SseClient> itemClients = subscribers.get(itemName);
+                if (itemClients != null) {
+                    itemClients.remove(client);
+                    if (itemClients.isEmpty()) {
+                        subscribers.remove(itemName);
+                        if (this.itemRegistry != null) {
+                            try {
+                                unregisterItem(this.itemRegistry.getItem(itemName));
+                            } catch (ItemNotFoundException e) {
+                                // the item has already been removed
+                            }
+                        }
                     }
-                    states.add(itemState);
-                } catch (ItemNotFoundException e) {
-                    logger.error(e.getLocalizedMessage());
                 }
             }
-            logger.debug("initially broadcasting " + states.size() + "/" + itemNames.size() + " item states");
-            broadcaster.broadcast(SseUtil.buildEvent(states));
         }
-        // listen to state changes of the requested items
-        registerItems();
+        logger.debug("client disconnected, {} clients connected, {} events, {} written, {} dropped", clients.size(),
+                eventCount.get(), writtenCount.get(), droppedCount.get());
+    }
 
-        return eventOutput;
+    private void removeClosedClients() {
+        for (SseClient client : clients) {
+            if (client.isClosed()) {
+                unsubscribe(client);
+            }
+        }
     }
 
     /**
@@ -173,9 +330,14 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItems() {
-        for (Item item : items.keySet()) {
-            if (item instanceof GenericItem) {
-                ((GenericItem) item).addStateChangeListener(stateEventListener);
+        if (this.itemRegistry == null) {
+            return;
+        }
+        for (String itemName : subscribers.keySet()) {
+            try {
+                registerItem(this.itemRegistry.getItem(itemName));
+            } catch (ItemNotFoundException e) {
+                // the item is registered once it is added
             }
         }
     }
@@ -189,52 +351,208 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
+        if (item == null || !subscribers.containsKey(item.getName())) {
             return;
+        }
         if (item instanceof GenericItem) {
             ((GenericItem) item).addStateChangeListener(stateEventListener);
         }
     }
 
     /**
-     * listens to state changes of the given item, if it is part of the
-     * requested items
+     * stops listening to state changes of the given item
      *
      * @param item
-     *            - the new item, that should be listened to
+     *            - the item, that should not be listened to anymore
      */
     @Override
     public void unregisterItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName()))
-            return;
         if (item instanceof GenericItem) {
             ((GenericItem) item).removeStateChangeListener(stateEventListener);
-            items.remove(item);
         }
     }
 
     /**
-     * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * Queues an event for all clients, which requested the address of the event. The event is sent in the next
+     * dispatch tick.
      *
-     * @param item
-     *            - the item which has changed
      * @param eventObject
      *            - bean that can be converted to a JSON object.
      */
     @Override
     public void broadcastEvent(final Object eventObject) {
-        executorService.execute(new Runnable() {
+        if (!(eventObject instanceof StateBean)) {
+            return;
+        }
+        StateBean state = (StateBean) eventObject;
+        String[] parts = state.name.split(":");
+        String ohItemName = parts.length == 2 ? parts[1] : state.name;
+        Set<SseClient> itemClients = subscribers.get(ohItemName);
+        if (itemClients == null || itemClients.isEmpty()) {
+            return;
+        }
+        eventCount.incrementAndGet();
+        SerializedState serialized = null;
+        for (SseClient client : itemClients) {
+            if (!client.getClientItems(ohItemName).containsKey(state.name)) {
+                continue;
+            }
+            if (serialized == null) {
+                serialized = new SerializedState(state);
+            }
+            fanoutCount.incrementAndGet();
+            if (client.offer(serialized)) {
+                droppedCount.incrementAndGet();
+            }
+            pendingClients.add(client);
+        }
+        scheduleDispatch(Config.COMETVISU_SSE_TICK);
+    }
 
-            @Override
-            public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(eventObject));
+    private void scheduleDispatch(long delay) {
+        if (pendingClients.isEmpty() || !dispatchScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (delay > 0) {
+                dispatcher.schedule(dispatchTask, delay, TimeUnit.MILLISECONDS);
+            } else {
+                dispatcher.execute(dispatchTask);
             }
-        });
+        } catch (RejectedExecutionException e) {
+            // deactivated
+            dispatchScheduled.set(false);
+        }
+    }
+
+    /**
+     * hands the clients with queued states to the writer threads, clients which cannot be handed over are
+     * dispatched again in the next tick
+     */
+    private void dispatch() {
+        dispatchScheduled.set(false);
+        final int batchSize = Math.max(1, Config.COMETVISU_SSE_BATCH_SIZE);
+        boolean busy = false;
+        for (final SseClient client : pendingClients) {
+            pendingClients.remove(client);
+            if (!client.startWriting()) {
+                // already written to, the writer takes the queued states as well
+                continue;
+            }
+            try {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            int[] written = client.writeQueued(batchSize);
+                            frameCount.addAndGet(written[0]);
+                            writtenCount.addAndGet(written[1]);
+                        } catch (IOException e) {
+                            logger.debug("client connection closed: {}", e.getMessage());
+                            unsubscribe(client);
+                        } catch (RuntimeException e) {
+                            logger.warn("failed writing to client, closing the connection: {}", e.getMessage());
+                            client.close();
+                            unsubscribe(client);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // all writers are busy, keep coalescing the states of the client
+                client.stopWriting();
+                pendingClients.add(client);
+                deferredCount.incrementAndGet();
+                busy = true;
+                break;
+            }
+        }
+        // don't spin while the writers are busy, also if there's no tick
+        scheduleDispatch(busy ? Math.max(Config.COMETVISU_SSE_TICK, RETRY_DELAY) : Config.COMETVISU_SSE_TICK);
+    }
+
+    /**
+     * Returns the number of open client connections.
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (SseClient client : clients) {
+            if (!client.isClosed()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of state changes of requested items since activation.
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Returns the number of states queued for clients since activation, the fan-out of the state changes.
+     */
+    public long getFanoutCount() {
+        return fanoutCount.get();
+    }
+
+    /**
+     * Returns the number of states written to clients since activation.
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Returns the number of frames written to clients since activation.
+     */
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    /**
+     * Returns the number of queued states which have been replaced by a newer state before they were written.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of times clients have been deferred to a later tick, because all writer threads were busy.
+     */
+    public long getDeferredCount() {
+        return deferredCount.get();
     }
 
     @Override
     public Map<String, Class<? extends State>> getClientItems(Item item) {
-        return items.get(item);
+        Set<SseClient> itemClients = subscribers.get(item.getName());
+        if (itemClients == null || itemClients.isEmpty()) {
+            return null;
+        }
+        if (itemClients.size() == 1) {
+            return itemClients.iterator().next().getClientItems(item.getName());
+        }
+        Map<String, Class<? extends State>> clientItems = new HashMap<String, Class<? extends State>>();
+        for (SseClient client : itemClients) {
+            clientItems.putAll(client.getClientItems(item.getName()));
+        }
+        return clientItems;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
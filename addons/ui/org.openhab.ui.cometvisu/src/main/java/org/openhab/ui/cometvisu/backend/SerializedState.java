@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.util.Collections;
+
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.openhab.ui.cometvisu.backend.beans.StateBean;
+import org.openhab.ui.cometvisu.internal.util.SseUtil;
+
+/**
+ * A state change, which is serialized once for all clients requesting its address. A frame containing only this
+ * state is built once as well and written to all clients receiving it alone.
+ *
+ * @author agent - Initial contribution
+ * @since 2.0.0
+ */
+class SerializedState {
+
+    private final String name;
+
+    private final String json;
+
+    private OutboundEvent event;
+
+    SerializedState(StateBean state) {
+        this.name = state.name;
+        this.json = SseUtil.serializeState(state);
+    }
+
+    /**
+     * Returns the CometVisu address of the state.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the serialized state, which can be combined with other states into a frame.
+     */
+    String getJson() {
+        return json;
+    }
+
+    /**
+     * Returns the frame containing only this state.
+     */
+    synchronized OutboundEvent getEvent() {
+        if (event == null) {
+            event = SseUtil.buildFrame(Collections.singletonList(json));
+        }
+        return event;
+    }
+}
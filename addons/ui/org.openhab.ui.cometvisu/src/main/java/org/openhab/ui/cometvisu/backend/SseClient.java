@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.backend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.smarthome.core.types.State;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.openhab.ui.cometvisu.internal.util.SseUtil;
+
+/**
+ * A connected CometVisu client with the addresses it has requested. State changes for the client are queued until
+ * they are written, a queued state of an address is replaced by a newer one, so a slow client only receives the
+ * latest state of each address. The queued states are written as frames of multiple states, they have been
+ * serialized once for all clients before.
+ *
+ * @author agent - Initial contribution
+ * @since 2.0.0
+ */
+class SseClient {
+
+    private final EventOutput eventOutput;
+
+    /**
+     * maps the openHAB item names to the requested CometVisu addresses and their state class
+     */
+    private final Map<String, Map<String, Class<? extends State>>> items;
+
+    private final LinkedHashMap<String, SerializedState> queue = new LinkedHashMap<String, SerializedState>();
+    private boolean writing;
+    private boolean closed;
+
+    SseClient(EventOutput eventOutput, Map<String, Map<String, Class<? extends State>>> items) {
+        this.eventOutput = eventOutput;
+        this.items = items;
+    }
+
+    /**
+     * Returns the names of all requested openHAB items.
+     */
+    Iterable<String> getItemNames() {
+        return items.keySet();
+    }
+
+    /**
+     * Returns the requested CometVisu addresses of the item with their state class.
+     */
+    Map<String, Class<? extends State>> getClientItems(String itemName) {
+        Map<String, Class<? extends State>> clientItems = items.get(itemName);
+        return clientItems == null ? Collections.<String, Class<? extends State>> emptyMap() : clientItems;
+    }
+
+    /**
+     * Queues a state for the address, a queued state of the same address is replaced.
+     *
+     * @return true, if a queued state has been replaced
+     */
+    synchronized boolean offer(SerializedState state) {
+        return queue.put(state.getName(), state) != null;
+    }
+
+    /**
+     * Marks the client as being written to.
+     *
+     * @return false, if the client is already written to or closed
+     */
+    synchronized boolean startWriting() {
+        if (writing || closed || queue.isEmpty()) {
+            return false;
+        }
+        writing = true;
+        return true;
+    }
+
+    /**
+     * Marks the client as being written to, also without queued states. Used while the initial states are written,
+     * so queued states are not written before them.
+     */
+    synchronized void reserveWriting() {
+        writing = true;
+    }
+
+    /**
+     * Marks the client as not being written to, if writing could not be started or has finished.
+     */
+    synchronized void stopWriting() {
+        writing = false;
+    }
+
+    /**
+     * Writes the queued states until the queue is empty, every frame contains up to batchSize states. The client is
+     * marked as not being written to when this method returns, also if writing fails.
+     *
+     * @return the number of frames and states written
+     * @throws IOException if the connection has been closed
+     */
+    int[] writeQueued(int batchSize) throws IOException {
+        int[] written = new int[2];
+        boolean finished = false;
+        try {
+            while (true) {
+                List<SerializedState> states;
+                synchronized (this) {
+                    if (queue.isEmpty() || closed) {
+                        // reset together with the check, a state queued afterwards starts a new writer
+                        writing = false;
+                        finished = true;
+                        return written;
+                    }
+                    states = new ArrayList<SerializedState>(Math.min(queue.size(), batchSize));
+                    Iterator<SerializedState> iterator = queue.values().iterator();
+                    while (iterator.hasNext() && states.size() < batchSize) {
+                        states.add(iterator.next());
+                        iterator.remove();
+                    }
+                }
+                eventOutput.write(buildFrame(states));
+                written[0]++;
+                written[1] += states.size();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } finally {
+            if (!finished) {
+                stopWriting();
+            }
+        }
+    }
+
+    private OutboundEvent buildFrame(List<SerializedState> states) {
+        if (states.size() == 1) {
+            return states.get(0).getEvent();
+        }
+        List<String> json = new ArrayList<String>(states.size());
+        for (SerializedState state : states) {
+            json.add(state.getJson());
+        }
+        return SseUtil.buildFrame(json);
+    }
+
+    /**
+     * Writes an event directly, used for the initial states.
+     */
+    void write(OutboundEvent event) throws IOException {
+        eventOutput.write(event);
+    }
+
+    synchronized boolean isClosed() {
+        return closed || eventOutput.isClosed();
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            writing = false;
+            queue.clear();
+        }
+        try {
+            eventOutput.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
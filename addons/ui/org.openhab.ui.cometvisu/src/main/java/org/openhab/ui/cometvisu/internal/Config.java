@@ -46,6 +46,20 @@ public class Config {
 
     public static String COMETVISU_WEBAPP_USERFILE_FOLDER = File.separator + "cometvisu";
 
+    /*
+     * state changes are collected for this number of milliseconds and sent to the clients in a single frame
+     */
+    public static final String COMETVISU_SSE_TICK_PROPERTY = "sseTick";
+
+    public static int COMETVISU_SSE_TICK = 50;
+
+    /*
+     * maximum number of state changes sent to a client in a single frame
+     */
+    public static final String COMETVISU_SSE_BATCH_SIZE_PROPERTY = "sseBatchSize";
+
+    public static int COMETVISU_SSE_BATCH_SIZE = 100;
+
     /*
      * path of the cometvisu backend (automatically prefixed by /rest/)
      * all the backend aliases must not be changed as they are hard coded in the CometVisu client
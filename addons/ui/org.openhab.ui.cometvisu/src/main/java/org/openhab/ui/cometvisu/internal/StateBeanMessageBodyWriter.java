@@ -71,14 +71,12 @@ public class StateBeanMessageBodyWriter implements MessageBodyWriter<Object> {
     public String serialize(Object bean) {
         String msg = "{\"d\":{";
         if (bean instanceof StateBean) {
-            StateBean stateBean = (StateBean) bean;
-            msg += "\"" + stateBean.name + "\":\"" + stateBean.state + "\"";
+            msg += serializeState((StateBean) bean);
         } else if (bean instanceof List<?>) {
             List<String> states = new ArrayList<String>();
             for (Object bo : (List<?>) bean) {
                 if (bo instanceof StateBean) {
-                    StateBean stateBean = (StateBean) bo;
-                    states.add("\"" + stateBean.name + "\":\"" + stateBean.state + "\"");
+                    states.add(serializeState((StateBean) bo));
                 }
             }
             if (states.size() > 0) {
@@ -88,4 +86,26 @@ public class StateBeanMessageBodyWriter implements MessageBodyWriter<Object> {
         msg += "}}";
         return msg;
     }
+
+    /**
+     *
+     * @param stateBean
+     *            - StateBean
+     * @return String
+     *         - the state of a single item as a member of a CV-Protocol state update, "item":"state"
+     */
+    public String serializeState(StateBean stateBean) {
+        return "\"" + stateBean.name + "\":\"" + stateBean.state + "\"";
+    }
+
+    /**
+     *
+     * @param serializedStates
+     *            - states serialized by {@link #serializeState(StateBean)}
+     * @return String
+     *         - CV-Protocol state update json format {d:{item:state,...}}
+     */
+    public String serializeStates(List<String> serializedStates) {
+        return "{\"d\":{" + StringUtils.join(serializedStates, ",") + "}}";
+    }
 }
@@ -83,7 +83,19 @@ public class VisuConfig {
     /**
      * relative path to the config XSD schema
      */
-    private final String schemaFile = "visu_config.xsd";
+    static final String SCHEMA_FILE = "visu_config.xsd";
+
+    /**
+     * the JAXB context is thread safe and expensive to create, so it is shared by all configs
+     */
+    private static JAXBContext jaxbContext;
+
+    /**
+     * the compiled XSD schema, compiled again if the schema file changes
+     */
+    private static Schema schema;
+    private static String schemaPath;
+    private static long schemaModified;
 
     private CometVisuApp app;
 
@@ -120,7 +132,7 @@ public class VisuConfig {
         for (int i = 1; i < requestFolders; i++) {
             relXsd += "../";
         }
-        pagesBean.setNoNamespaceSchemaLocation(relXsd + schemaFile);
+        pagesBean.setNoNamespaceSchemaLocation(relXsd + SCHEMA_FILE);
 
         Meta meta = new Meta();
         pagesBean.setMeta(meta);
@@ -128,18 +140,35 @@ public class VisuConfig {
         configHelper = new ConfigHelper(pagesBean, app, sitemap.getName());
         createPages(pagesBean);
 
-        return marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + schemaFile);
+        return marshal(pagesBean, rootFolder.getAbsolutePath() + File.separator + SCHEMA_FILE);
+    }
+
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(SchemaPages.class);
+        }
+        return jaxbContext;
+    }
+
+    private static synchronized Schema getSchema(String xsdSchema) throws SAXException {
+        if (xsdSchema == null || xsdSchema.trim().length() == 0) {
+            return null;
+        }
+        long modified = new File(xsdSchema).lastModified();
+        if (schema == null || !xsdSchema.equals(schemaPath) || modified != schemaModified) {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schema = schemaFactory.newSchema(new File(xsdSchema));
+            schemaPath = xsdSchema;
+            schemaModified = modified;
+        }
+        return schema;
     }
 
     private String marshal(Pages bean, String xsdSchema) {
         String res = "";
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(bean.getClass());
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            Schema schema = (xsdSchema == null || xsdSchema.trim().length() == 0) ? null
-                    : schemaFactory.newSchema(new File(xsdSchema));
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setSchema(schema);
+            Marshaller marshaller = getJaxbContext().createMarshaller();
+            marshaller.setSchema(getSchema(xsdSchema));
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
             StringWriter sw = new StringWriter();
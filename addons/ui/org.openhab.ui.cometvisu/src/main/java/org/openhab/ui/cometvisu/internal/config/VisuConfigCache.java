@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.config;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.model.sitemap.Sitemap;
+import org.openhab.ui.cometvisu.servlet.CometVisuApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the generated visu_config.xml of the sitemaps. A cached config is generated again, if the sitemap has been
+ * reloaded, the item registry has changed or the XSD schema has been modified. The configs are cached per sitemap and
+ * folder depth of the request, the least recently used ones are removed if more than {@link #MAX_CONFIGS} are cached.
+ *
+ * @author agent - Initial contribution
+ * @since 2.0.0
+ */
+public class VisuConfigCache implements ItemRegistryChangeListener {
+    private final Logger logger = LoggerFactory.getLogger(VisuConfigCache.class);
+
+    /**
+     * maximum number of cached configs
+     */
+    private static final int MAX_CONFIGS = 16;
+
+    @SuppressWarnings("serial")
+    private final Map<String, CachedConfig> configs = Collections
+            .synchronizedMap(new LinkedHashMap<String, CachedConfig>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedConfig> eldest) {
+                    return size() > MAX_CONFIGS;
+                }
+            });
+
+    private final AtomicLong itemsVersion = new AtomicLong();
+
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+    private final AtomicLong etagCounter = new AtomicLong();
+
+    /**
+     * returns the config generated from the sitemap, the config is only generated if there is no valid cached one
+     *
+     * @param sitemap
+     *            the sitemap to generate the config from
+     * @param req
+     *            the request of the config, the relative path to the XSD depends on the request path
+     */
+    public CachedConfig getConfig(Sitemap sitemap, HttpServletRequest req, CometVisuApp app, File rootFolder) {
+        // the relative path to the XSD only depends on the folder depth of the request
+        String key = sitemap.getName() + "@" + req.getPathInfo().substring(1).split("/").length;
+        long version = itemsVersion.get();
+        long schemaModified = new File(rootFolder, VisuConfig.SCHEMA_FILE).lastModified();
+        CachedConfig cached = configs.get(key);
+        if (cached != null && cached.sitemap == sitemap && cached.itemsVersion == version
+                && cached.schemaModified == schemaModified) {
+            return cached;
+        }
+        long start = System.currentTimeMillis();
+        String xml = new VisuConfig(sitemap, app, rootFolder).getConfigXml(req);
+        cached = new CachedConfig(sitemap, version, schemaModified, xml,
+                "\"" + etagPrefix + etagCounter.incrementAndGet() + "\"");
+        configs.put(key, cached);
+        logger.debug("generated config for sitemap '{}' in {}ms", sitemap.getName(),
+                System.currentTimeMillis() - start);
+        return cached;
+    }
+
+    /**
+     * removes all cached configs, e.g. because the icon configuration has changed
+     */
+    public void clear() {
+        configs.clear();
+    }
+
+    @Override
+    public void added(Item element) {
+        itemsChanged();
+    }
+
+    @Override
+    public void removed(Item element) {
+        itemsChanged();
+    }
+
+    @Override
+    public void updated(Item oldElement, Item element) {
+        itemsChanged();
+    }
+
+    @Override
+    public void allItemsChanged(Collection<String> oldItemNames) {
+        itemsChanged();
+    }
+
+    private void itemsChanged() {
+        itemsVersion.incrementAndGet();
+    }
+
+    /**
+     * a generated config with the state it has been generated from
+     */
+    public static class CachedConfig {
+        private final Sitemap sitemap;
+        private final long itemsVersion;
+        private final long schemaModified;
+        private final String xml;
+        private final String etag;
+
+        private CachedConfig(Sitemap sitemap, long itemsVersion, long schemaModified, String xml, String etag) {
+            this.sitemap = sitemap;
+            this.itemsVersion = itemsVersion;
+            this.schemaModified = schemaModified;
+            this.xml = xml;
+            this.etag = etag;
+        }
+
+        public String getXml() {
+            return xml;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.rrs;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.events.Event;
+import org.eclipse.smarthome.core.events.EventFilter;
+import org.eclipse.smarthome.core.events.EventSubscriber;
+import org.eclipse.smarthome.core.items.events.ItemCommandEvent;
+import org.eclipse.smarthome.core.items.events.ItemStateEvent;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
+import org.openhab.ui.cometvisu.internal.rrs.beans.Entry;
+import org.openhab.ui.cometvisu.servlet.CometVisuApp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Keeps the recent log entries of the items used by the CometVisu rsslog-plugin in memory, so the log widgets can be
+ * served without querying the persistence services on every refresh.
+ *
+ * An item is indexed once its log has been requested, the initial entries are read from the persistence services.
+ * Afterwards the entries are taken from the commands and state updates sent to the item, entries received while the
+ * persistence services are queried are kept as well. State updates of the autoupdate are skipped, their command has
+ * been logged already. The entries of every item are kept in a ring buffer of {@link #CAPACITY}
+ * entries and saved to a snapshot file, which is read again on startup. The snapshot is written to a temporary file
+ * first and moved into place, so a crash while writing does not corrupt it.
+ *
+ * @author agent - Initial contribution
+ * @since 2.0.0
+ */
+public class RssLogIndex implements EventSubscriber {
+    private static final Logger logger = LoggerFactory.getLogger(RssLogIndex.class);
+
+    // number of entries kept per item
+    private static final int CAPACITY = 100;
+
+    // delay before a snapshot is saved after a change, in seconds
+    private static final int SNAPSHOT_DELAY = 60;
+
+    private static final String SEPARATOR = "\\|";
+
+    private static final Set<String> EVENT_TYPES = Collections
+            .unmodifiableSet(new HashSet<String>(Arrays.asList(ItemCommandEvent.TYPE, ItemStateEvent.TYPE)));
+
+    // source of the state updates following a command
+    private static final String AUTOUPDATE_SOURCE = "org.eclipse.smarthome.core.autoupdate";
+
+    private static final File SNAPSHOT_FILE = new File(ConfigConstants.getUserDataFolder() + File.separator
+            + "cometvisu" + File.separator + "rsslog.json");
+
+    private final ConcurrentMap<String, Log> logs = new ConcurrentHashMap<String, Log>();
+
+    private final Object snapshotLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> snapshotJob;
+
+    protected void activate() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        loadSnapshot();
+    }
+
+    protected void deactivate() {
+        synchronized (this) {
+            if (snapshotJob != null) {
+                snapshotJob.cancel(false);
+                snapshotJob = null;
+            }
+        }
+        scheduler.shutdown();
+        saveSnapshot();
+    }
+
+    @Override
+    public Set<String> getSubscribedEventTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public EventFilter getEventFilter() {
+        return null;
+    }
+
+    @Override
+    public void receive(Event event) {
+        if (event instanceof ItemCommandEvent) {
+            ItemCommandEvent commandEvent = (ItemCommandEvent) event;
+            add(commandEvent.getItemName(), commandEvent.getItemCommand().toString());
+        } else if (event instanceof ItemStateEvent && !AUTOUPDATE_SOURCE.equals(event.getSource())) {
+            ItemStateEvent stateEvent = (ItemStateEvent) event;
+            add(stateEvent.getItemName(), stateEvent.getItemState().toString());
+        }
+    }
+
+    private void add(String itemName, String value) {
+        Log log = logs.get(itemName);
+        if (log != null) {
+            log.add(parse(itemName, System.currentTimeMillis(), value));
+            scheduleSnapshot();
+        }
+    }
+
+    /**
+     * returns the log entries of the items, newest first
+     *
+     * @param itemNames
+     *            the items to return the entries of, the entries of all items are merged in time order
+     * @param since
+     *            only entries published after this time are returned
+     * @param limit
+     *            the maximum number of entries per item, so a busy item does not push out the others
+     */
+    public List<Entry> getEntries(List<String> itemNames, long since, int limit) {
+        List<Entry[]> items = new ArrayList<Entry[]>(itemNames.size());
+        for (String itemName : itemNames) {
+            items.add(getLog(itemName).toArray());
+        }
+
+        // merge the newest entries of the items, every array is sorted by time
+        List<Entry> entries = new ArrayList<Entry>();
+        int[] cursors = new int[items.size()];
+        int[] ends = new int[items.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = items.get(i).length - 1;
+            ends[i] = Math.max(-1, cursors[i] - limit);
+        }
+        while (true) {
+            int newest = -1;
+            for (int i = 0; i < cursors.length; i++) {
+                if (cursors[i] > ends[i] && (newest < 0
+                        || items.get(i)[cursors[i]].publishedDate > items.get(newest)[cursors[newest]].publishedDate)) {
+                    newest = i;
+                }
+            }
+            if (newest < 0 || items.get(newest)[cursors[newest]].publishedDate <= since) {
+                break;
+            }
+            entries.add(items.get(newest)[cursors[newest]--]);
+        }
+        return entries;
+    }
+
+    private Log getLog(String itemName) {
+        Log log = logs.get(itemName);
+        if (log == null) {
+            Log created = new Log(false);
+            log = logs.putIfAbsent(itemName, created);
+            if (log == null) {
+                // the log receives events from now on, the persisted entries are inserted before them
+                log = created;
+                List<Entry> persisted = Collections.emptyList();
+                try {
+                    persisted = loadFromPersistence(itemName);
+                } finally {
+                    log.loaded(persisted);
+                }
+                scheduleSnapshot();
+                return log;
+            }
+        }
+        log.awaitLoaded();
+        return log;
+    }
+
+    /**
+     * reads the entries of the last 7 days from the first persistence service which has data for the item
+     */
+    private List<Entry> loadFromPersistence(String itemName) {
+        List<Entry> entries = new ArrayList<Entry>();
+        FilterCriteria filter = new FilterCriteria();
+        Calendar start = Calendar.getInstance();
+        // BeginDate is required for RRD4j service
+        start.add(Calendar.DAY_OF_YEAR, -7);
+        filter.setBeginDate(start.getTime());
+        filter.setPageSize(CAPACITY);
+        filter.setOrdering(Ordering.DESCENDING);
+        filter.setItemName(itemName);
+
+        for (QueryablePersistenceService persistenceService : CometVisuApp.getPersistenceServices().values()) {
+            Iterator<HistoricItem> it = persistenceService.query(filter).iterator();
+            if (!it.hasNext()) {
+                continue;
+            }
+            logger.debug("persisted data for item {} found in service {}", itemName, persistenceService.getId());
+            while (it.hasNext()) {
+                HistoricItem historicItem = it.next();
+                if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
+                    continue;
+                }
+                entries.add(parse(itemName, historicItem.getTimestamp().getTime(),
+                        historicItem.getState().toString()));
+            }
+            break;
+        }
+        // the RRD4j PersistenceService does not support descending ordering, so we sort them ourselves
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return Long.compare(o1.publishedDate, o2.publishedDate);
+            }
+        });
+        if (entries.size() > CAPACITY) {
+            entries = entries.subList(entries.size() - CAPACITY, entries.size());
+        }
+        return entries;
+    }
+
+    /**
+     * creates an entry from a log message, which has the format title|content|state|item
+     */
+    private static Entry parse(String itemName, long time, String message) {
+        Entry entry = new Entry();
+        entry.publishedDate = time;
+        entry.tags = itemName;
+        String[] content = message.split(SEPARATOR);
+        if (content.length == 0) {
+            entry.content = message;
+        } else if (content.length == 1) {
+            entry.content = content[0];
+        } else if (content.length == 2) {
+            entry.title = content[0];
+            entry.content = content[1];
+        } else {
+            entry.title = content[0];
+            entry.content = content[1];
+            entry.state = content[2];
+            // ignore tags in content[3] as is is already known by item name
+        }
+        return entry;
+    }
+
+    private synchronized void scheduleSnapshot() {
+        if (snapshotJob == null && scheduler != null && !scheduler.isShutdown()) {
+            snapshotJob = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (RssLogIndex.this) {
+                        snapshotJob = null;
+                    }
+                    saveSnapshot();
+                }
+            }, SNAPSHOT_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    private void loadSnapshot() {
+        if (!SNAPSHOT_FILE.exists()) {
+            return;
+        }
+        try {
+            Type type = new TypeToken<Map<String, List<Entry>>>() {
+            }.getType();
+            Map<String, List<Entry>> snapshot = new Gson().fromJson(FileUtils.readFileToString(SNAPSHOT_FILE, "UTF-8"),
+                    type);
+            if (snapshot != null) {
+                for (Map.Entry<String, List<Entry>> item : snapshot.entrySet()) {
+                    Log log = new Log(true);
+                    for (Entry entry : item.getValue()) {
+                        log.add(entry);
+                    }
+                    logs.put(item.getKey(), log);
+                }
+            }
+            logger.debug("read rsslog snapshot with {} items", logs.size());
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Error reading rsslog snapshot '{}': {}", SNAPSHOT_FILE, e.getMessage());
+        }
+    }
+
+    private void saveSnapshot() {
+        Map<String, Entry[]> snapshot = new HashMap<String, Entry[]>();
+        for (Map.Entry<String, Log> item : logs.entrySet()) {
+            snapshot.put(item.getKey(), item.getValue().toArray());
+        }
+        synchronized (snapshotLock) {
+            File tempFile = new File(SNAPSHOT_FILE.getPath() + ".tmp");
+            try {
+                FileUtils.writeStringToFile(tempFile, new Gson().toJson(snapshot), "UTF-8");
+                try {
+                    Files.move(tempFile.toPath(), SNAPSHOT_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), SNAPSHOT_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                logger.warn("Error writing rsslog snapshot '{}': {}", SNAPSHOT_FILE, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * the recent entries of an item, oldest entries are overwritten first
+     */
+    private static class Log {
+        private final Entry[] entries = new Entry[CAPACITY];
+        private final long createdAt = System.currentTimeMillis();
+        private int next;
+        private int size;
+        private boolean loaded;
+
+        Log(boolean loaded) {
+            this.loaded = loaded;
+        }
+
+        /**
+         * inserts the persisted entries before the entries received since the log has been created, persisted
+         * entries from that time on have been received as events already
+         *
+         * @param persisted
+         *            the persisted entries, oldest first
+         */
+        synchronized void loaded(List<Entry> persisted) {
+            List<Entry> all = new ArrayList<Entry>(persisted.size() + size);
+            for (Entry entry : persisted) {
+                if (entry.publishedDate < createdAt) {
+                    all.add(entry);
+                }
+            }
+            Collections.addAll(all, toArray());
+            next = 0;
+            size = 0;
+            for (Entry entry : all.subList(Math.max(0, all.size() - CAPACITY), all.size())) {
+                add(entry);
+            }
+            loaded = true;
+            notifyAll();
+        }
+
+        /**
+         * waits until the persisted entries have been inserted
+         */
+        synchronized void awaitLoaded() {
+            boolean interrupted = false;
+            while (!loaded) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized void add(Entry entry) {
+            entries[next] = entry;
+            next = (next + 1) % CAPACITY;
+            size = Math.min(size + 1, CAPACITY);
+        }
+
+        /**
+         * returns the entries, oldest first
+         */
+        synchronized Entry[] toArray() {
+            Entry[] result = new Entry[size];
+            int first = (next - size + CAPACITY) % CAPACITY;
+            for (int i = 0; i < size; i++) {
+                result[i] = entries[(first + i) % CAPACITY];
+            }
+            return result;
+        }
+    }
+}
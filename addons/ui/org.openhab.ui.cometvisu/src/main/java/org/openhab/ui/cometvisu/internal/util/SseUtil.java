@@ -8,6 +8,8 @@
  */
 package org.openhab.ui.cometvisu.internal.util;
 
+import java.util.List;
+
 import javax.ws.rs.core.MediaType;
 
 import org.glassfish.jersey.media.sse.OutboundEvent;
@@ -47,6 +49,34 @@ public class SseUtil {
         return event;
     }
 
+    /**
+     * Serializes a single state, several serialized states can be combined
+     * into one event by {@link #buildFrame(List)}.
+     *
+     * @param state
+     *            - the state to serialize
+     * @return the serialized state
+     */
+    public static String serializeState(StateBean state) {
+        return new StateBeanMessageBodyWriter().serializeState(state);
+    }
+
+    /**
+     * Creates a new {@link OutboundEvent} object containing the already
+     * serialized states.
+     *
+     * @param serializedStates
+     *            - states serialized by {@link #serializeState(StateBean)}
+     * @return a new OutboundEvent.
+     */
+    public static OutboundEvent buildFrame(List<String> serializedStates) {
+        OutboundEvent.Builder eventBuilder = new OutboundEvent.Builder();
+        StateBeanMessageBodyWriter writer = new StateBeanMessageBodyWriter();
+        return eventBuilder.mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(writer.serializeStates(serializedStates)).id(String.valueOf(System.currentTimeMillis()))
+                .build();
+    }
+
     /**
      * Used to mark our current thread(request processing) that SSE blocking
      * should be enabled.
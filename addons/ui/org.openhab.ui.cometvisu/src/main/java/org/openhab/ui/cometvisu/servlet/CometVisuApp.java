@@ -27,6 +27,8 @@ import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.eclipse.smarthome.ui.icon.IconProvider;
 import org.eclipse.smarthome.ui.items.ItemUIRegistry;
 import org.openhab.ui.cometvisu.internal.Config;
+import org.openhab.ui.cometvisu.internal.config.VisuConfigCache;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogIndex;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.cm.ConfigurationException;
@@ -53,10 +55,14 @@ public class CometVisuApp {
 
     private Set<SitemapProvider> sitemapProviders = new HashSet<>();
 
+    private final VisuConfigCache visuConfigCache = new VisuConfigCache();
+
     private List<IconProvider> iconProviders = new ArrayList<>();
 
     private EventPublisher eventPublisher;
 
+    private RssLogIndex rssLogIndex;
+
     private CometVisuServlet servlet;
 
     private PHProvider phpProvider;
@@ -75,6 +81,18 @@ public class CometVisuApp {
         return this.eventPublisher;
     }
 
+    protected void setRssLogIndex(RssLogIndex rssLogIndex) {
+        this.rssLogIndex = rssLogIndex;
+    }
+
+    protected void unsetRssLogIndex(RssLogIndex rssLogIndex) {
+        this.rssLogIndex = null;
+    }
+
+    public RssLogIndex getRssLogIndex() {
+        return this.rssLogIndex;
+    }
+
     public void addPersistenceService(PersistenceService service) {
         if (service instanceof QueryablePersistenceService) {
             persistenceServices.put(service.getId(), (QueryablePersistenceService) service);
@@ -95,14 +113,17 @@ public class CometVisuApp {
 
     public void addIconProvider(IconProvider iconProvider) {
         this.iconProviders.add(iconProvider);
+        visuConfigCache.clear();
     }
 
     public void removeIconProvider(IconProvider iconProvider) {
         this.iconProviders.remove(iconProvider);
+        visuConfigCache.clear();
     }
 
     protected void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
+        itemRegistry.addRegistryChangeListener(visuConfigCache);
     }
 
     public ItemRegistry getItemRegistry() {
@@ -110,7 +131,9 @@ public class CometVisuApp {
     }
 
     protected void unsetItemRegistry(ItemRegistry itemRegistry) {
+        itemRegistry.removeRegistryChangeListener(visuConfigCache);
         this.itemRegistry = null;
+        visuConfigCache.clear();
     }
 
     public void setItemUIRegistry(ItemUIRegistry itemUIRegistry) {
@@ -133,6 +156,10 @@ public class CometVisuApp {
         return itemUIRegistry;
     }
 
+    public VisuConfigCache getVisuConfigCache() {
+        return visuConfigCache;
+    }
+
     public Set<SitemapProvider> getSitemapProviders() {
         return sitemapProviders;
     }
@@ -171,6 +198,24 @@ public class CometVisuApp {
             if (properties.get(Config.COMETVISU_WEBAPP_ALIAS_PROPERTY) != null) {
                 Config.COMETVISU_WEBAPP_ALIAS = (String) properties.get(Config.COMETVISU_WEBAPP_ALIAS_PROPERTY);
             }
+            if (properties.get(Config.COMETVISU_SSE_TICK_PROPERTY) != null) {
+                try {
+                    Config.COMETVISU_SSE_TICK = Integer
+                            .parseInt(properties.get(Config.COMETVISU_SSE_TICK_PROPERTY).toString().trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid value for {}: {}", Config.COMETVISU_SSE_TICK_PROPERTY,
+                            properties.get(Config.COMETVISU_SSE_TICK_PROPERTY));
+                }
+            }
+            if (properties.get(Config.COMETVISU_SSE_BATCH_SIZE_PROPERTY) != null) {
+                try {
+                    Config.COMETVISU_SSE_BATCH_SIZE = Integer
+                            .parseInt(properties.get(Config.COMETVISU_SSE_BATCH_SIZE_PROPERTY).toString().trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid value for {}: {}", Config.COMETVISU_SSE_BATCH_SIZE_PROPERTY,
+                            properties.get(Config.COMETVISU_SSE_BATCH_SIZE_PROPERTY));
+                }
+            }
             for (String key : properties.keySet()) {
                 String[] parts = key.split(">");
                 String propKey = parts.length > 1 ? parts[1] : parts[0];
@@ -183,6 +228,8 @@ public class CometVisuApp {
                     }
                 }
             }
+            // the generated configs depend on the icon configuration and mappings
+            visuConfigCache.clear();
         }
     }
 
@@ -20,14 +20,9 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
@@ -46,18 +41,15 @@ import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
 import org.eclipse.smarthome.core.items.events.ItemEventFactory;
 import org.eclipse.smarthome.core.library.types.StringType;
-import org.eclipse.smarthome.core.persistence.FilterCriteria;
-import org.eclipse.smarthome.core.persistence.FilterCriteria.Ordering;
-import org.eclipse.smarthome.core.persistence.HistoricItem;
-import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.model.sitemap.Sitemap;
 import org.eclipse.smarthome.model.sitemap.SitemapProvider;
 import org.openhab.ui.cometvisu.internal.Config;
 import org.openhab.ui.cometvisu.internal.config.ConfigHelper.Transform;
-import org.openhab.ui.cometvisu.internal.config.VisuConfig;
+import org.openhab.ui.cometvisu.internal.config.VisuConfigCache.CachedConfig;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.DataBean;
 import org.openhab.ui.cometvisu.internal.editor.dataprovider.beans.ItemBean;
+import org.openhab.ui.cometvisu.internal.rrs.RssLogIndex;
 import org.openhab.ui.cometvisu.internal.rrs.beans.Feed;
 import org.openhab.ui.cometvisu.php.PHProvider;
 import org.slf4j.Logger;
@@ -81,12 +73,16 @@ public class CometVisuServlet extends HttpServlet {
     private static final long DEFAULT_EXPIRE_TIME = 604800000L; // ..ms = 1
                                                                 // week.
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
+    private static final String[] COMPRESSIBLE_TYPES = { "text/", "application/javascript", "application/json",
+            "application/xml", "image/svg+xml" };
 
     private Pattern sitemapPattern = Pattern.compile(".*/visu_config_(oh_)?([^\\.]+)\\.xml");
     private Pattern configStorePattern = Pattern.compile("config/visu_config_oh_([a-z0-9_]+)\\.xml");
 
     private String rrsLogPath = "/plugins/rsslog/rsslog_oh.php";
     private final String rssLogMessageSeparator = "\\|";
+    // number of log entries returned per requested item
+    private static final int RSS_LOG_PAGE_SIZE = 25;
     private DateFormat rssPubDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
 
     protected String root;
@@ -102,6 +98,8 @@ public class CometVisuServlet extends HttpServlet {
 
     private CometVisuApp cometVisuApp;
 
+    private final StaticAssetCache assetCache = new StaticAssetCache();
+
     public CometVisuServlet(String filesystemDir, CometVisuApp cometVisuApp) {
         root = filesystemDir;
         rootFolder = new File(root);
@@ -207,11 +205,20 @@ public class CometVisuServlet extends HttpServlet {
                 Sitemap sitemap = getSitemap(matcher.group(2));
                 if (sitemap != null) {
                     logger.debug("reading sitemap '{}'", sitemap);
-                    VisuConfig config = new VisuConfig(sitemap, cometVisuApp, rootFolder);
-
+                    CachedConfig config = cometVisuApp.getVisuConfigCache().getConfig(sitemap, req, cometVisuApp,
+                            rootFolder);
+
+                    // the config has to be revalidated, as it changes with the sitemap and the items
+                    resp.setHeader("ETag", config.getETag());
+                    resp.setHeader("Cache-Control", "no-cache");
+                    String ifNoneMatch = req.getHeader("If-None-Match");
+                    if (ifNoneMatch != null && matches(ifNoneMatch, config.getETag())) {
+                        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
                     // logger.info("response: "+config.getConfigXml());
                     resp.setContentType(MediaType.APPLICATION_XML);
-                    resp.getWriter().write(config.getConfigXml(req));
+                    resp.getWriter().write(config.getXml());
                     resp.flushBuffer();
 
                     return;
@@ -279,7 +286,7 @@ public class CometVisuServlet extends HttpServlet {
 
     /**
      * serves an RSS-Feed from a persisted string item backend for the CometVisu
-     * rrslog-plugin
+     * rrslog-plugin, the entries are read from the {@link RssLogIndex}
      *
      * @param file
      * @param request
@@ -305,11 +312,6 @@ public class CometVisuServlet extends HttpServlet {
         }
 
         if (items.size() > 0) {
-            // Fallback to first persistenceService from list
-            if (!CometVisuApp.getPersistenceServices().entrySet().iterator().hasNext()) {
-                throw new IllegalArgumentException("No Persistence service found.");
-            }
-
             if (request.getParameter("c") != null) {
                 if (items.size() == 1) {
                     // new log message should be store
@@ -357,89 +359,22 @@ public class CometVisuServlet extends HttpServlet {
                 feed.author = "";
                 feed.description = "RSS supplied logs";
                 feed.type = "rss20";
-                // Define the data filter
-                FilterCriteria filter = new FilterCriteria();
-                Calendar start = Calendar.getInstance();
-                // retrieve only the historic states from the last 7 days + BeginDate is required for RRD4j service
-                start.add(Calendar.DAY_OF_YEAR, -7);
-                // Date end = new Date();
-                filter.setBeginDate(start.getTime());
-                // filter.setEndDate(end);
-                filter.setPageSize(25);
-                filter.setOrdering(Ordering.DESCENDING);
-
+                // the entries are served from the in-memory log of the items, merged in time order
+                List<String> names = new ArrayList<String>(items.size());
                 for (Item item : items) {
-                    filter.setItemName(item.getName());
-                    Iterator<Entry<String, QueryablePersistenceService>> pit = CometVisuApp.getPersistenceServices()
-                            .entrySet().iterator();
-                    QueryablePersistenceService persistenceService = pit.next().getValue();
-                    // Get the data from the persistence store
-                    Iterable<HistoricItem> result = persistenceService.query(filter);
-                    Iterator<HistoricItem> it = result.iterator();
-                    boolean forceStop = false;
-                    while (!forceStop && !it.hasNext()) {
-                        if (pit.hasNext()) {
-                            persistenceService = pit.next().getValue();
-                            result = persistenceService.query(filter);
-                        } else {
-                            // no persisted data found for this item in any of
-                            // the available persistence services
-                            forceStop = true;
-                        }
-                    }
-                    if (it.hasNext()) {
-                        logger.debug("persisted data for item {} found in service {}", item.getName(),
-                                persistenceService.getId());
-                    }
-
-                    // Iterate through the data
-                    int i = 0;
-                    while (it.hasNext()) {
-                        i++;
-                        HistoricItem historicItem = it.next();
-                        if (historicItem.getState() == null || historicItem.getState().toString().isEmpty()) {
-                            continue;
-                        }
-                        org.openhab.ui.cometvisu.internal.rrs.beans.Entry entry = new org.openhab.ui.cometvisu.internal.rrs.beans.Entry();
-                        entry.publishedDate = historicItem.getTimestamp().getTime();
-                        logger.info(rssPubDateFormat.format(entry.publishedDate) + ": " + historicItem.getState());
-                        entry.tags = historicItem.getName();
-                        String[] content = historicItem.getState().toString().split(rssLogMessageSeparator);
-                        if (content.length == 0) {
-                            entry.content = historicItem.getState().toString();
-                        } else if (content.length == 1) {
-                            entry.content = content[0];
-                        } else if (content.length == 2) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                        } else if (content.length == 3) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                        } else if (content.length == 4) {
-                            entry.title = content[0];
-                            entry.content = content[1];
-                            entry.state = content[2];
-                            // ignore tags in content[3] as is is already known
-                            // by item name
-                        }
-                        feed.entries.add(entry);
-                    }
-                    if ("rrd4j".equals(persistenceService.getId())
-                            && FilterCriteria.Ordering.DESCENDING.equals(filter.getOrdering())) {
-                        // the RRD4j PersistenceService does not support descending ordering so we do it manually
-                        Collections.sort(feed.entries,
-                                new Comparator<org.openhab.ui.cometvisu.internal.rrs.beans.Entry>() {
-                                    @Override
-                                    public int compare(org.openhab.ui.cometvisu.internal.rrs.beans.Entry o1,
-                                            org.openhab.ui.cometvisu.internal.rrs.beans.Entry o2) {
-                                        return Long.compare(o2.publishedDate, o1.publishedDate);
-                                    }
-                                });
+                    names.add(item.getName());
+                }
+                long since = 0;
+                if (request.getParameter("since") != null) {
+                    try {
+                        since = Long.parseLong(request.getParameter("since"));
+                    } catch (NumberFormatException e) {
+                        response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                        return;
                     }
-                    logger.debug("querying {} item from {} to {} => {} results on service {}", filter.getItemName(),
-                            filter.getBeginDate(), filter.getEndDate(), i, persistenceService.getId());
                 }
+                feed.entries.addAll(cometVisuApp.getRssLogIndex().getEntries(names, since, RSS_LOG_PAGE_SIZE));
+                logger.debug("querying log of items {} since {} => {} results", names, since, feed.entries.size());
                 if (request.getParameter("j") != null) {
                     // request data in JSON format
                     response.setContentType("application/json");
@@ -531,17 +466,40 @@ public class CometVisuServlet extends HttpServlet {
         long length = file.length();
         long lastModified = file.lastModified();
         String eTag = fileName + "_" + length + "_" + lastModified;
+        // the gzip compressed content is a different representation and needs its own ETag
+        String gzipETag = eTag + "_gzip";
         long expires = System.currentTimeMillis() + DEFAULT_EXPIRE_TIME;
 
+        // Get content type by file name.
+        // If content type is unknown, then set the default value.
+        // For all content types, see:
+        // http://www.w3schools.com/media/media_mimeref.asp
+        // To add new content types, add new mime-mapping entry in web.xml.
+        String contentType = getServletContext().getMimeType(fileName);
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+
+        // If content type is text, then determine whether GZIP content encoding
+        // is supported by the browser. A conditional request has to match the
+        // ETag of the representation it would receive.
+        boolean compressible = isCompressible(contentType);
+        boolean acceptsGzip = false;
+        if (compressible) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
+        }
+        String representationETag = acceptsGzip ? gzipETag : eTag;
+
         // Validate request headers for caching
         // ---------------------------------------------------
 
         // If-None-Match header should contain "*" or ETag. If so, then return
         // 304.
         String ifNoneMatch = request.getHeader("If-None-Match");
-        if (ifNoneMatch != null && matches(ifNoneMatch, eTag)) {
+        if (ifNoneMatch != null && matches(ifNoneMatch, representationETag)) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-            response.setHeader("ETag", eTag); // Required in 304.
+            response.setHeader("ETag", representationETag); // Required in 304.
             response.setDateHeader("Expires", expires); // Postpone cache with 1
                                                         // week.
             return;
@@ -553,7 +511,7 @@ public class CometVisuServlet extends HttpServlet {
         long ifModifiedSince = request.getDateHeader("If-Modified-Since");
         if (ifNoneMatch == null && ifModifiedSince != -1 && ifModifiedSince + 1000 > lastModified) {
             response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-            response.setHeader("ETag", eTag); // Required in 304.
+            response.setHeader("ETag", representationETag); // Required in 304.
             response.setDateHeader("Expires", expires); // Postpone cache with 1
                                                         // week.
             return;
@@ -563,8 +521,10 @@ public class CometVisuServlet extends HttpServlet {
         // ----------------------------------------------------
 
         // If-Match header should contain "*" or ETag. If not, then return 412.
+        // Both ETags denote the current file, the client may have received
+        // either encoding.
         String ifMatch = request.getHeader("If-Match");
-        if (ifMatch != null && !matches(ifMatch, eTag)) {
+        if (ifMatch != null && !matches(ifMatch, eTag) && !(compressible && matches(ifMatch, gzipETag))) {
             response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
             return;
         }
@@ -600,9 +560,10 @@ public class CometVisuServlet extends HttpServlet {
 
             // If-Range header should either match ETag or be greater then
             // LastModified. If not,
-            // then return full file.
+            // then return full file. The ranges refer to the identity encoding,
+            // which is unchanged if the ETag of either encoding matches.
             String ifRange = request.getHeader("If-Range");
-            if (ifRange != null && !ifRange.equals(eTag)) {
+            if (ifRange != null && !ifRange.equals(eTag) && !(compressible && ifRange.equals(gzipETag))) {
                 try {
                     long ifRangeTime = request.getDateHeader("If-Range"); // Throws
                                                                           // IAE
@@ -653,27 +614,12 @@ public class CometVisuServlet extends HttpServlet {
         // Prepare and initialize response
         // --------------------------------------------------------
 
-        // Get content type by file name and set default GZIP support and
-        // content disposition.
-        String contentType = getServletContext().getMimeType(fileName);
-        boolean acceptsGzip = false;
+        // Set default content disposition.
         String disposition = "inline";
 
-        // If content type is unknown, then set the default value.
-        // For all content types, see:
-        // http://www.w3schools.com/media/media_mimeref.asp
-        // To add new content types, add new mime-mapping entry in web.xml.
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-
-        // If content type is text, then determine whether GZIP content encoding
-        // is supported by
-        // the browser and expand content type with the one and right character
-        // encoding.
+        // If content type is text, then expand content type with the one and
+        // right character encoding.
         if (contentType.startsWith("text")) {
-            String acceptEncoding = request.getHeader("Accept-Encoding");
-            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
             contentType += ";charset=UTF-8";
         }
 
@@ -692,6 +638,9 @@ public class CometVisuServlet extends HttpServlet {
         response.setHeader("ETag", eTag);
         response.setDateHeader("Last-Modified", lastModified);
         response.setDateHeader("Expires", expires);
+        if (compressible) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
 
         // Send requested file (part(s)) to client
         // ------------------------------------------------
@@ -710,23 +659,31 @@ public class CometVisuServlet extends HttpServlet {
                 // Return full file.
                 Range r = full;
                 response.setContentType(contentType);
-                response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
 
-                if (content) {
-                    if (acceptsGzip) {
-                        // The browser accepts GZIP, so GZIP the content.
-                        response.setHeader("Content-Encoding", "gzip");
-                        output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
-                    } else {
-                        // Content length is not directly predictable in case of
-                        // GZIP.
-                        // So only add it if there is no means of GZIP, else
-                        // browser will hang.
-                        response.setHeader("Content-Length", String.valueOf(r.length));
+                if (acceptsGzip) {
+                    // The browser accepts GZIP, so send the GZIP compressed content.
+                    response.setHeader("ETag", gzipETag);
+                    response.setHeader("Content-Encoding", "gzip");
+                    if (content) {
+                        byte[] gzipped = assetCache.getGzipped(file, length, lastModified);
+                        if (gzipped != null) {
+                            response.setHeader("Content-Length", String.valueOf(gzipped.length));
+                            output.write(gzipped);
+                        } else {
+                            // Too large to be cached, content length is not
+                            // directly predictable in this case.
+                            output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
+                            copy(input, output, r.start, r.length);
+                        }
                     }
+                } else {
+                    response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
+                    response.setHeader("Content-Length", String.valueOf(r.length));
 
-                    // Copy full range.
-                    copy(input, output, r.start, r.length);
+                    if (content) {
+                        // Copy full range.
+                        copy(input, output, r.start, r.length);
+                    }
                 }
 
             } else if (ranges.size() == 1) {
@@ -947,6 +904,22 @@ public class CometVisuServlet extends HttpServlet {
                 || Arrays.binarySearch(acceptValues, "*/*") > -1;
     }
 
+    /**
+     * Returns true if content of the given type should be compressed.
+     *
+     * @param contentType
+     *            The content type.
+     * @return True if content of the given type should be compressed.
+     */
+    private static boolean isCompressible(String contentType) {
+        for (String type : COMPRESSIBLE_TYPES) {
+            if (contentType.startsWith(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns true if the given match header matches the given value.
      *
@@ -997,26 +970,16 @@ public class CometVisuServlet extends HttpServlet {
      */
     private static void copy(RandomAccessFile input, OutputStream output, long start, long length) throws IOException {
         byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int read;
-
-        if (input.length() == length) {
-            // Write full range.
-            while ((read = input.read(buffer)) > 0) {
-                output.write(buffer, 0, read);
-            }
-        } else {
-            // Write partial range.
-            input.seek(start);
-            long toRead = length;
-
-            while ((read = input.read(buffer)) > 0) {
-                if ((toRead -= read) > 0) {
-                    output.write(buffer, 0, read);
-                } else {
-                    output.write(buffer, 0, (int) toRead + read);
-                    break;
-                }
+        input.seek(start);
+        long toRead = length;
+        while (toRead > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, toRead));
+            if (read < 0) {
+                // the file has been truncated
+                break;
             }
+            output.write(buffer, 0, read);
+            toRead -= read;
         }
     }
 
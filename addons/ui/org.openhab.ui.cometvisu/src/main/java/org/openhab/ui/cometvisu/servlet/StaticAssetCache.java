@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the gzip compressed content of static files, so the files of the CometVisu are compressed only once and
+ * not for every request. A cached file is compressed again if its modification time or size has changed. The cache
+ * is bounded by the total size of the compressed content and evicts the least recently used files first.
+ *
+ * @author agent - Initial contribution
+ * @since 2.0.0
+ */
+class StaticAssetCache {
+    private final Logger logger = LoggerFactory.getLogger(StaticAssetCache.class);
+
+    // maximum total size of the compressed content
+    private static final int MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
+    // files larger than this are compressed on the fly
+    private static final long MAX_FILE_SIZE = 4 * 1024 * 1024;
+
+    private final LinkedHashMap<String, Asset> assets = new LinkedHashMap<String, Asset>(64, 0.75f, true);
+    private int size;
+
+    /**
+     * returns the gzip compressed content of the file
+     *
+     * @param file
+     *            the file to compress
+     * @param length
+     *            the length of the file
+     * @param lastModified
+     *            the modification time of the file
+     * @return the compressed content or null, if the file is too large to be cached
+     */
+    byte[] getGzipped(File file, long length, long lastModified) throws IOException {
+        if (length > MAX_FILE_SIZE) {
+            return null;
+        }
+        String key = file.getAbsolutePath();
+        synchronized (this) {
+            Asset asset = assets.get(key);
+            if (asset != null && asset.length == length && asset.lastModified == lastModified) {
+                return asset.gzipped;
+            }
+        }
+        byte[] gzipped = gzip(FileUtils.readFileToByteArray(file));
+        synchronized (this) {
+            Asset previous = assets.put(key, new Asset(length, lastModified, gzipped));
+            if (previous != null) {
+                size -= previous.gzipped.length;
+            }
+            size += gzipped.length;
+            Iterator<Asset> iterator = assets.values().iterator();
+            while (size > MAX_CACHE_SIZE && iterator.hasNext()) {
+                size -= iterator.next().gzipped.length;
+                iterator.remove();
+            }
+        }
+        logger.debug("compressed '{}' from {} to {} bytes", file, length, gzipped.length);
+        return gzipped;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 3 + 64);
+        // the content is compressed once, so the best compression is worth the time
+        OutputStream output = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+        output.write(content);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static class Asset {
+        private final long length;
+        private final long lastModified;
+        private final byte[] gzipped;
+
+        private Asset(long length, long lastModified, byte[] gzipped) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.gzipped = gzipped;
+        }
+    }
+}
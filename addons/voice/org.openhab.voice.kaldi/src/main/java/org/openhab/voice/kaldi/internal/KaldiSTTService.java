@@ -10,9 +10,17 @@ package org.openhab.voice.kaldi.internal;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.smarthome.core.audio.AudioFormat;
 import org.eclipse.smarthome.core.audio.AudioStream;
@@ -21,20 +29,59 @@ import org.eclipse.smarthome.core.voice.STTListener;
 import org.eclipse.smarthome.core.voice.STTService;
 import org.eclipse.smarthome.core.voice.STTServiceHandle;
 
-import ee.ioc.phon.netspeechapi.duplex.WsDuplexRecognitionSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This is a STT service implementation using Kaldi.
  *
+ * The recognitions run on a shared executor and use sessions of a {@link KaldiSessionPool}, which can be opened in
+ * advance. The configured servers are used in turn.
+ *
  * @author Kelly Davis - Initial contribution and API
  *
  */
 public class KaldiSTTService implements STTService {
 
+    private final Logger logger = LoggerFactory.getLogger(KaldiSTTService.class);
+
+    /**
+     * Default WebSocket URL to the head node of the Kaldi server cluster
+     */
+    private static final String DEFAULT_ENDPOINT = "ws://52.37.26.79:8888/client/ws/speech";
+
+    private static final String CONFIG_ENDPOINTS = "endpoints";
+    private static final String CONFIG_SESSION_POOL_SIZE = "sessionPoolSize";
+    private static final String CONFIG_SESSION_MAX_IDLE = "sessionMaxIdle";
+    private static final String CONFIG_TRIM_SILENCE = "trimSilence";
+
+    private static final int DEFAULT_SESSION_POOL_SIZE = 0;
+    private static final int DEFAULT_SESSION_MAX_IDLE = 10;
+
+    /**
+     * Executor running the recognitions
+     */
+    private ExecutorService executor;
+
+    /**
+     * Executor opening the pooled sessions
+     */
+    private ScheduledExecutorService scheduler;
+
     /**
-     * WebSocket URL to the head node of the Kaldi server cluster
+     * Pool of sessions to the configured servers
      */
-    private static final String kaldiWebSocketURL = "ws://52.37.26.79:8888/client/ws/speech";
+    private volatile KaldiSessionPool sessionPool;
+
+    /**
+     * Boolean indicating if leading and trailing silence is removed from the audio
+     */
+    private volatile boolean trimSilence = true;
+
+    /**
+     * The latencies of the recent recognitions
+     */
+    private final LatencyStatistics latencyStatistics = new LatencyStatistics();
 
     /**
      * Set of supported locales
@@ -46,6 +93,70 @@ public class KaldiSTTService implements STTService {
      */
     private final HashSet<AudioFormat> audioFormats = initAudioFormats();
 
+    protected void activate(Map<String, Object> config) {
+        executor = Executors.newCachedThreadPool(new NamedThreadFactory("Kaldi recognition"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Kaldi session pool"));
+        modified(config);
+    }
+
+    protected void modified(Map<String, Object> config) {
+        List<String> endpoints = new ArrayList<String>();
+        int poolSize = DEFAULT_SESSION_POOL_SIZE;
+        int maxIdle = DEFAULT_SESSION_MAX_IDLE;
+        if (config != null) {
+            if (config.get(CONFIG_ENDPOINTS) != null) {
+                for (String endpoint : config.get(CONFIG_ENDPOINTS).toString().split(",")) {
+                    if (!endpoint.trim().isEmpty()) {
+                        endpoints.add(endpoint.trim());
+                    }
+                }
+            }
+            try {
+                if (config.get(CONFIG_SESSION_POOL_SIZE) != null) {
+                    poolSize = Integer.parseInt(config.get(CONFIG_SESSION_POOL_SIZE).toString());
+                }
+                if (config.get(CONFIG_SESSION_MAX_IDLE) != null) {
+                    maxIdle = Integer.parseInt(config.get(CONFIG_SESSION_MAX_IDLE).toString());
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid session pool configuration: {}", e.getMessage());
+            }
+            if (config.get(CONFIG_TRIM_SILENCE) != null) {
+                trimSilence = Boolean.parseBoolean(config.get(CONFIG_TRIM_SILENCE).toString());
+            }
+        }
+        if (endpoints.isEmpty()) {
+            endpoints.add(DEFAULT_ENDPOINT);
+        }
+
+        KaldiSessionPool oldPool = sessionPool;
+        sessionPool = new KaldiSessionPool(endpoints, Math.max(0, poolSize), maxIdle * 1000L, scheduler);
+        if (oldPool != null) {
+            oldPool.stop();
+        }
+        sessionPool.start();
+        logger.debug("Using Kaldi servers {} with {} open sessions", endpoints, poolSize);
+    }
+
+    protected void deactivate() {
+        if (sessionPool != null) {
+            sessionPool.stop();
+            sessionPool = null;
+        }
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        if (latencyStatistics.size() > 0) {
+            logger.info("Kaldi recognition latency: {}", latencyStatistics);
+        }
+    }
+
+    /**
+     * Returns the latencies of the recent recognitions
+     */
+    public LatencyStatistics getLatencyStatistics() {
+        return latencyStatistics;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -94,28 +205,42 @@ public class KaldiSTTService implements STTService {
         }
         // Note: Currently Kaldi doesn't use grammars. Thus grammars isn't validated
 
-        // Setup WsDuplexRecognitionSession
-        WsDuplexRecognitionSession recognitionSession;
+        // Setup KaldiSession
+        KaldiSession recognitionSession;
         try {
-            recognitionSession = new WsDuplexRecognitionSession(kaldiWebSocketURL);
+            recognitionSession = sessionPool.acquire();
         } catch (IOException e) {
             throw new STTException("Error connected to the server", e);
         } catch (URISyntaxException e) {
             throw new STTException("Invalid WebSocket URL", e);
         }
-        // One need not call recognitionSession.setContentType(...) [See http://bit.ly/1TGvQzA]
         recognitionSession.addRecognitionEventListener(new RecognitionEventListenerKaldi(sttListener));
 
         // Start recognition
         STTServiceKaldiRunnable sttServiceKaldiRunnable = new STTServiceKaldiRunnable(recognitionSession, sttListener,
-                audioStream);
-        Thread thread = new Thread(sttServiceKaldiRunnable);
-        thread.start();
+                audioStream, trimSilence ? createSilenceTrimmer(audioFormat) : null, latencyStatistics);
+        executor.execute(sttServiceKaldiRunnable);
 
         // Return STTServiceHandleKaldi
         return new STTServiceHandleKaldi(sttServiceKaldiRunnable);
     }
 
+    /**
+     * Creates a SilenceTrimmer for the passed AudioFormat
+     *
+     * @param audioFormat The AudioFormat of the audio data
+     * @return The SilenceTrimmer or null, if the AudioFormat isn't mono 16 bit signed PCM
+     */
+    private SilenceTrimmer createSilenceTrimmer(AudioFormat audioFormat) {
+        Integer bitDepth = audioFormat.getBitDepth();
+        Long frequency = audioFormat.getFrequency();
+        if (!"PCM_SIGNED".equals(audioFormat.getCodec()) || null == bitDepth || bitDepth.intValue() != 16
+                || null == frequency || audioFormat.getBitRate().longValue() != frequency.longValue() * 16) {
+            return null;
+        }
+        return new SilenceTrimmer(frequency.intValue(), Boolean.TRUE.equals(audioFormat.isBigEndian()));
+    }
+
     /**
      * Initializes this.locales
      *
@@ -152,13 +277,30 @@ public class KaldiSTTService implements STTService {
 
     @Override
     public String getId() {
-        // TODO Auto-generated method stub
-        return null;
+        return "kaldi";
     }
 
     @Override
     public String getLabel(Locale locale) {
-        // TODO Auto-generated method stub
-        return null;
+        return "Kaldi";
+    }
+
+    /**
+     * ThreadFactory creating named daemon threads
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.kaldi.internal;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ee.ioc.phon.netspeechapi.duplex.RecognitionEvent;
+import ee.ioc.phon.netspeechapi.duplex.RecognitionEventListener;
+import ee.ioc.phon.netspeechapi.duplex.WsDuplexRecognitionSession;
+
+/**
+ * A WsDuplexRecognitionSession to a Kaldi server, which can be opened before it is used for a recognition
+ *
+ * Listeners can't be removed from a WsDuplexRecognitionSession. Thus, this instance is the only listener of the
+ * session and forwards the events to the listeners of the recognition, which are added once the session is used.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class KaldiSession implements RecognitionEventListener {
+
+    /**
+     * The WebSocket URL of the server
+     */
+    private final String endpoint;
+
+    /**
+     * The wrapped WsDuplexRecognitionSession
+     */
+    private final WsDuplexRecognitionSession recognitionSession;
+
+    /**
+     * The listeners of the recognition using this session
+     */
+    private final List<RecognitionEventListener> listeners = new CopyOnWriteArrayList<RecognitionEventListener>();
+
+    /**
+     * Time the session was connected, 0 if it isn't connected
+     */
+    private volatile long connectedAt;
+
+    /**
+     * Boolean indicating if the server closed the connection
+     */
+    private volatile boolean isClosed;
+
+    /**
+     * Creates an unconnected session to the passed server
+     *
+     * @param endpoint The WebSocket URL of the server
+     */
+    public KaldiSession(String endpoint) throws IOException, URISyntaxException {
+        this.endpoint = endpoint;
+        this.recognitionSession = new WsDuplexRecognitionSession(endpoint);
+        // One need not call recognitionSession.setContentType(...) [See http://bit.ly/1TGvQzA]
+        this.recognitionSession.addRecognitionEventListener(this);
+    }
+
+    /**
+     * Connects the session, if it isn't connected yet
+     */
+    public synchronized void connect() throws IOException {
+        if (connectedAt == 0) {
+            recognitionSession.connect();
+            connectedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Sends a chunk of audio data
+     *
+     * @param bytes The audio data
+     * @param isLast true, if this is the last chunk of the utterance
+     */
+    public void sendChunk(byte[] bytes, boolean isLast) throws IOException {
+        recognitionSession.sendChunk(bytes, isLast);
+    }
+
+    /**
+     * Ends an unused session with an empty last chunk, so the server releases the worker it occupies
+     */
+    public void end() throws IOException {
+        if (connectedAt != 0 && !isClosed) {
+            sendChunk(new byte[0], true);
+        }
+    }
+
+    /**
+     * Adds a listener of the recognition using this session
+     *
+     * @param listener The listener
+     */
+    public void addRecognitionEventListener(RecognitionEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns the time in milliseconds since the session was connected, 0 if it isn't connected
+     */
+    public long getIdleTime() {
+        return connectedAt == 0 ? 0 : System.currentTimeMillis() - connectedAt;
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRecognitionEvent(RecognitionEvent recognitionEvent) {
+        for (RecognitionEventListener listener : listeners) {
+            listener.onRecognitionEvent(recognitionEvent);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onClose() {
+        isClosed = true;
+        for (RecognitionEventListener listener : listeners) {
+            listener.onClose();
+        }
+    }
+}
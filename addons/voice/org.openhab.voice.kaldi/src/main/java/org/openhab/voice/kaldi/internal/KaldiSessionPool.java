@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.kaldi.internal;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of sessions to the Kaldi servers, which are opened in advance, so a recognition doesn't have to wait for the
+ * WebSocket connection
+ *
+ * A Kaldi server ends the connection after an utterance has been recognized. Thus, a session is used for a single
+ * recognition and the pool opens a new one in the background. Idle sessions are replaced before the server closes
+ * them because of inactivity. The endpoints are used in turn. Sessions which are discarded are ended, so they don't
+ * occupy a worker of the server until it times out.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class KaldiSessionPool {
+
+    private final Logger logger = LoggerFactory.getLogger(KaldiSessionPool.class);
+
+    /**
+     * WebSocket URLs of the Kaldi servers
+     */
+    private final List<String> endpoints;
+
+    /**
+     * Number of sessions kept open
+     */
+    private final int size;
+
+    /**
+     * Time in milliseconds after which an idle session is replaced
+     */
+    private final long maxIdleTime;
+
+    /**
+     * Executor opening the sessions
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The open, unused sessions
+     */
+    private final BlockingQueue<KaldiSession> sessions = new LinkedBlockingQueue<KaldiSession>();
+
+    /**
+     * Index of the next endpoint to use
+     */
+    private final AtomicInteger nextEndpoint = new AtomicInteger();
+
+    private ScheduledFuture<?> maintenanceJob;
+
+    private volatile boolean stopped;
+
+    /**
+     * Creates a pool of sessions
+     *
+     * @param endpoints The WebSocket URLs of the servers
+     * @param size The number of sessions kept open, 0 to open the sessions on demand
+     * @param maxIdleTime The time in milliseconds after which an idle session is replaced
+     * @param scheduler The executor opening the sessions
+     */
+    public KaldiSessionPool(List<String> endpoints, int size, long maxIdleTime, ScheduledExecutorService scheduler) {
+        this.endpoints = endpoints;
+        this.size = size;
+        this.maxIdleTime = maxIdleTime;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts opening the sessions
+     */
+    public synchronized void start() {
+        if (size > 0) {
+            long interval = Math.max(1000, maxIdleTime / 4);
+            maintenanceJob = scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    fill();
+                }
+            }, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops opening sessions and discards the open ones
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (maintenanceJob != null) {
+            maintenanceJob.cancel(false);
+            maintenanceJob = null;
+        }
+        KaldiSession session;
+        while ((session = sessions.poll()) != null) {
+            end(session);
+        }
+    }
+
+    /**
+     * Returns an open session or a new unconnected session, if no open session is available
+     */
+    public KaldiSession acquire() throws IOException, URISyntaxException {
+        KaldiSession session;
+        while ((session = sessions.poll()) != null) {
+            if (isUsable(session)) {
+                logger.trace("Using open session to {}", session.getEndpoint());
+                scheduleFill();
+                return session;
+            }
+            end(session);
+        }
+        scheduleFill();
+        return new KaldiSession(getEndpoint());
+    }
+
+    /**
+     * Returns the WebSocket URL of the next server
+     */
+    private String getEndpoint() {
+        return endpoints.get((nextEndpoint.getAndIncrement() & Integer.MAX_VALUE) % endpoints.size());
+    }
+
+    private boolean isUsable(KaldiSession session) {
+        return !session.isClosed() && session.getIdleTime() < maxIdleTime;
+    }
+
+    /**
+     * Ends a discarded session
+     */
+    private void end(KaldiSession session) {
+        try {
+            session.end();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to end session to {}: {}", session.getEndpoint(), e.getMessage());
+        }
+    }
+
+    private void scheduleFill() {
+        if (size > 0 && !stopped && !scheduler.isShutdown()) {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fill();
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the unusable sessions and opens sessions until the pool is full
+     */
+    private void fill() {
+        for (KaldiSession session : sessions) {
+            if (!isUsable(session) && sessions.remove(session)) {
+                end(session);
+            }
+        }
+        while (sessions.size() < size && !stopped && !scheduler.isShutdown()) {
+            String endpoint = getEndpoint();
+            try {
+                KaldiSession session = new KaldiSession(endpoint);
+                session.connect();
+                sessions.add(session);
+                if (stopped && sessions.remove(session)) {
+                    // the pool has been stopped while connecting
+                    end(session);
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                logger.debug("Unable to open session to {}: {}", endpoint, e.getMessage());
+                return;
+            }
+        }
+    }
+}
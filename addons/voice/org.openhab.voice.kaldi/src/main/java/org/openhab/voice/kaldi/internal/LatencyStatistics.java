@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.kaldi.internal;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the recognition latencies of the recent recognitions, i.e. the time between sending the last audio chunk and
+ * receiving the final result, and computes their percentiles
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class LatencyStatistics {
+
+    /**
+     * Number of recent latencies kept
+     */
+    private static final int CAPACITY = 200;
+
+    private final long[] latencies = new long[CAPACITY];
+    private int next;
+    private int size;
+
+    /**
+     * Adds the latency of a recognition
+     *
+     * @param latency The latency in milliseconds
+     */
+    public synchronized void add(long latency) {
+        latencies[next] = latency;
+        next = (next + 1) % CAPACITY;
+        size = Math.min(size + 1, CAPACITY);
+    }
+
+    /**
+     * Returns the number of kept latencies
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the percentile of the kept latencies
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The latency in milliseconds or -1, if no latency has been added
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d recognitions, p50 %dms, p90 %dms, p99 %dms", size(), getPercentile(50),
+                getPercentile(90), getPercentile(99));
+    }
+}
@@ -19,10 +19,11 @@ import org.eclipse.smarthome.core.voice.SpeechRecognitionErrorEvent;
 
 import ee.ioc.phon.netspeechapi.duplex.RecognitionEvent;
 import ee.ioc.phon.netspeechapi.duplex.RecognitionEventListener;
-import ee.ioc.phon.netspeechapi.duplex.WsDuplexRecognitionSession;
 
 /**
- * A Runnable that sends AudioStream data in a WsDuplexRecognitionSession
+ * A Runnable that sends AudioStream data in a KaldiSession
+ *
+ * The audio data is sent as soon as it is available from the AudioStream, the AudioStream paces the recognition.
  *
  * @author Kelly Davis - Initial contribution and API
  *
@@ -39,6 +40,11 @@ public class STTServiceKaldiRunnable implements Runnable, RecognitionEventListen
      */
     private volatile boolean isAborting;
 
+    /**
+     * Time the last chunk was sent, 0 if it hasn't been sent yet
+     */
+    private volatile long lastChunkSentAt;
+
     /**
      * The source of audio data
      */
@@ -50,30 +56,44 @@ public class STTServiceKaldiRunnable implements Runnable, RecognitionEventListen
     private final STTListener sttListener;
 
     /**
-     * The WsDuplexRecognitionSession communication is over
+     * The KaldiSession communication is over
      */
-    private final WsDuplexRecognitionSession recognitionSession;
+    private final KaldiSession recognitionSession;
 
     /**
-     * Constructs an instance targeting the passed WsDuplexRecognitionSession
+     * The trimmer of leading and trailing silence, null if the audio is sent unchanged
+     */
+    private final SilenceTrimmer silenceTrimmer;
+
+    /**
+     * The statistics the recognition latency is added to
+     */
+    private final LatencyStatistics latencyStatistics;
+
+    /**
+     * Constructs an instance targeting the passed KaldiSession
      *
-     * @param recognitionSession The WsDuplexRecognitionSession sesion
+     * @param recognitionSession The KaldiSession sesion
      * @param sttListener The STTListener targeted for STTEvents
      * @param audioStream The AudioSource data
+     * @param silenceTrimmer The SilenceTrimmer of the audio data or null
+     * @param latencyStatistics The LatencyStatistics of the service
      */
-    public STTServiceKaldiRunnable(WsDuplexRecognitionSession recognitionSession, STTListener sttListener,
-            AudioStream audioStream) {
+    public STTServiceKaldiRunnable(KaldiSession recognitionSession, STTListener sttListener, AudioStream audioStream,
+            SilenceTrimmer silenceTrimmer, LatencyStatistics latencyStatistics) {
         this.isClosed = false;
         this.isAborting = false;
         this.audioStream = audioStream;
         this.sttListener = sttListener;
         this.recognitionSession = recognitionSession;
+        this.silenceTrimmer = silenceTrimmer;
+        this.latencyStatistics = latencyStatistics;
 
         this.recognitionSession.addRecognitionEventListener(this);
     }
 
     /**
-     * This method sends AudioSource data in the WsDuplexRecognitionSession
+     * This method sends AudioSource data in the KaldiSession
      */
     @Override
     public void run() {
@@ -83,29 +103,37 @@ public class STTServiceKaldiRunnable implements Runnable, RecognitionEventListen
             int bitRate = audioFormat.getBitRate().intValue();
             int byteRate = (bitRate / 8);
             int chunkRate = 4; // 4 <= chunkRate [See: http://bit.ly/1V4Ktw2]
-            byte buffer[] = new byte[byteRate / chunkRate];
+            int chunkSize = byteRate / chunkRate;
+            byte buffer[] = new byte[chunkSize];
 
             sttListener.sttEventReceived(new RecognitionStartEvent());
 
             boolean sentLastChunk = false;
             while (!this.isAborting && !this.isClosed) {
-                long millisWithinChunkSecond = System.currentTimeMillis() % (1000 / chunkRate);
-                int size = audioStream.read(buffer);
-                if (size < 0) {
-                    sentLastChunk = true;
-                    byte buffer2[] = new byte[0];
-                    this.recognitionSession.sendChunk(buffer2, true);
-                    break;
+                // Fill a chunk, read() blocks until audio data is available
+                int size = 0;
+                int read = 0;
+                while (size < chunkSize && (read = audioStream.read(buffer, size, chunkSize - size)) >= 0) {
+                    size += read;
                 }
-                if (size == (byteRate / chunkRate)) {
-                    this.recognitionSession.sendChunk(buffer, false);
-                } else {
+                boolean isLast = read < 0;
+                byte chunk[] = size == chunkSize ? buffer : Arrays.copyOf(buffer, size);
+                if (null != this.silenceTrimmer) {
+                    chunk = this.silenceTrimmer.process(chunk, chunk.length);
+                    isLast |= this.silenceTrimmer.isComplete();
+                    if (chunk.length == 0 && !isLast) {
+                        // Leading silence isn't sent
+                        continue;
+                    }
+                }
+                if (isLast) {
                     sentLastChunk = true;
-                    byte buffer2[] = Arrays.copyOf(buffer, size);
-                    this.recognitionSession.sendChunk(buffer2, true);
+                    this.lastChunkSentAt = System.currentTimeMillis();
+                }
+                this.recognitionSession.sendChunk(chunk, isLast);
+                if (isLast) {
                     break;
                 }
-                Thread.sleep(1000 / chunkRate - millisWithinChunkSecond);
             }
 
             if (this.isAborting && !this.isClosed && !sentLastChunk) {
@@ -114,9 +142,6 @@ public class STTServiceKaldiRunnable implements Runnable, RecognitionEventListen
             }
         } catch (IOException e) {
             sttListener.sttEventReceived(new SpeechRecognitionErrorEvent("Unable to send audio data to the server"));
-        } catch (InterruptedException e) {
-            sttListener.sttEventReceived(
-                    new SpeechRecognitionErrorEvent("Unable to send data to the server at the proper rate"));
         } catch (RuntimeException e) {
             // Note: This is a workaround for a bug in net-speech-api and Java-WebSocket.
             //
@@ -149,7 +174,12 @@ public class STTServiceKaldiRunnable implements Runnable, RecognitionEventListen
      */
     @Override
     public void onRecognitionEvent(RecognitionEvent recognitionEvent) {
-        // RecognitionEvent are ignored
+        // Only the latency of the final result is recorded
+        long sentAt = this.lastChunkSentAt;
+        if (sentAt > 0 && recognitionEvent.getStatus() == RecognitionEvent.STATUS_SUCCESS
+                && recognitionEvent.getResult().isFinal()) {
+            this.latencyStatistics.add(System.currentTimeMillis() - sentAt);
+        }
     }
 
     /**
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.kaldi.internal;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A simple energy based voice activity detection for 16 bit signed PCM audio, which removes the silence before and
+ * after an utterance, so less audio is sent to the server and the utterance ends as soon as the speaker stops
+ *
+ * The audio is split into frames of 20ms. A frame is considered speech if its RMS is above a threshold. The silence
+ * before the first speech frame is skipped, except for a short pre-roll not to cut off the onset of the first word.
+ * The utterance ends once the silence after speech exceeds the trailing silence time.
+ *
+ * @author agent - Initial contribution
+ *
+ */
+public class SilenceTrimmer {
+
+    /**
+     * RMS of a 16 bit sample, above which a frame is considered speech
+     */
+    private static final double THRESHOLD = 500;
+
+    /**
+     * Length of a frame in milliseconds
+     */
+    private static final int FRAME_LENGTH = 20;
+
+    /**
+     * Length of the silence kept before the speech in milliseconds
+     */
+    private static final int PRE_ROLL = 200;
+
+    /**
+     * Length of the silence in milliseconds, after which the utterance ends
+     */
+    private static final int TRAILING_SILENCE = 1000;
+
+    private final boolean bigEndian;
+    private final int frameSize;
+    private final int preRollFrames;
+    private final int trailingSilenceFrames;
+
+    /**
+     * The incomplete frame
+     */
+    private final byte[] frame;
+    private int frameLength;
+
+    /**
+     * The frames before the speech, which are kept as pre-roll
+     */
+    private final byte[][] preRoll;
+    private int preRollCount;
+    private int preRollNext;
+
+    private boolean speechStarted;
+    private int silentFrames;
+    private boolean complete;
+
+    /**
+     * Creates a trimmer for mono 16 bit signed PCM audio
+     *
+     * @param sampleRate The sample rate of the audio
+     * @param bigEndian The byte order of the samples
+     */
+    public SilenceTrimmer(int sampleRate, boolean bigEndian) {
+        this.bigEndian = bigEndian;
+        this.frameSize = Math.max(2, sampleRate * FRAME_LENGTH / 1000 * 2);
+        this.preRollFrames = PRE_ROLL / FRAME_LENGTH;
+        this.trailingSilenceFrames = TRAILING_SILENCE / FRAME_LENGTH;
+        this.frame = new byte[frameSize];
+        this.preRoll = new byte[preRollFrames][];
+    }
+
+    /**
+     * Processes audio data
+     *
+     * @param buffer The audio data
+     * @param length The number of bytes of the audio data
+     * @return The audio data to send, which may be empty
+     */
+    public byte[] process(byte[] buffer, int length) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length);
+        int offset = 0;
+        while (offset < length && !complete) {
+            int count = Math.min(length - offset, frameSize - frameLength);
+            System.arraycopy(buffer, offset, frame, frameLength, count);
+            frameLength += count;
+            offset += count;
+            if (frameLength == frameSize) {
+                processFrame(output);
+                frameLength = 0;
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns true, if speech has been detected
+     */
+    public boolean isSpeechStarted() {
+        return speechStarted;
+    }
+
+    /**
+     * Returns true, if the utterance has ended
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private void processFrame(ByteArrayOutputStream output) {
+        boolean speech = getRms() > THRESHOLD;
+        if (!speechStarted) {
+            if (!speech) {
+                // keep the most recent frames as pre-roll
+                if (preRollFrames > 0) {
+                    preRoll[preRollNext] = frame.clone();
+                    preRollNext = (preRollNext + 1) % preRollFrames;
+                    preRollCount = Math.min(preRollCount + 1, preRollFrames);
+                }
+                return;
+            }
+            speechStarted = true;
+            for (int i = 0; i < preRollCount; i++) {
+                byte[] silence = preRoll[(preRollNext - preRollCount + i + preRollFrames) % preRollFrames];
+                output.write(silence, 0, silence.length);
+            }
+        }
+        output.write(frame, 0, frameSize);
+        silentFrames = speech ? 0 : silentFrames + 1;
+        if (silentFrames >= trailingSilenceFrames) {
+            complete = true;
+        }
+    }
+
+    private double getRms() {
+        double sum = 0;
+        int samples = frameSize / 2;
+        for (int i = 0; i < samples; i++) {
+            int high = bigEndian ? frame[2 * i] : frame[2 * i + 1];
+            int low = bigEndian ? frame[2 * i + 1] : frame[2 * i];
+            int sample = (high << 8) | (low & 0xff);
+            sum += (double) sample * sample;
+        }
+        return Math.sqrt(sum / samples);
+    }
+}
@@ -8,12 +8,8 @@
  */
 package org.openhab.voice.marytts.internal;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
-
-import javax.sound.sampled.AudioInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.eclipse.smarthome.core.audio.AudioException;
@@ -24,6 +20,9 @@ import org.eclipse.smarthome.core.audio.FixedLengthAudioStream;
 /**
  * Implementation of the {@link AudioSource} interface for the {@link MaryTTSService}
  *
+ * The audio is read from a complete {@link MaryTTSSynthesis}, so the {@link #length()} of the stream is known. Audio
+ * which is still synthesized is returned as a {@link MaryTTSStreamingAudioStream}.
+ *
  * @author Kelly Davis - Initial contribution and API
  * @author Kai Kreuzer - Refactored to updated APIs and moved to openHAB
  */
@@ -39,20 +38,17 @@ class MaryTTSAudioStream extends FixedLengthAudioStream {
      */
     private InputStream inputStream;
 
-    private byte[] rawAudio;
-    private int length;
+    private final MaryTTSSynthesis synthesis;
 
     /**
      * Constructs an instance with the passed properties
      *
-     * @param inputStream The InputStream of this instance
+     * @param synthesis The complete synthesis providing the raw audio of this instance
      * @param audioFormat The AudioFormat of this instance
-     * @throws IOException
      */
-    public MaryTTSAudioStream(AudioInputStream inputStream, AudioFormat audioFormat) throws IOException {
-        rawAudio = IOUtils.toByteArray(inputStream);
-        this.length = rawAudio.length + 36;
-        this.inputStream = new SequenceInputStream(getWavHeaderInputStream(length), new ByteArrayInputStream(rawAudio));
+    public MaryTTSAudioStream(MaryTTSSynthesis synthesis, AudioFormat audioFormat) {
+        this.synthesis = synthesis;
+        this.inputStream = synthesis.getInputStream();
         this.audioFormat = audioFormat;
     }
 
@@ -78,80 +74,21 @@ class MaryTTSAudioStream extends FixedLengthAudioStream {
 
     @Override
     public long length() {
-        return length;
-    }
-
-    private InputStream getWavHeaderInputStream(int length) throws IOException {
-        // WAVE header
-        // see http://www-mmsp.ece.mcgill.ca/Documents/AudioFormats/WAVE/WAVE.html
-        byte[] header = new byte[44];
-
-        byte format = 0x10; // PCM
-        byte bits = 16;
-        byte channel = 1;
-        int srate = 48000;
-        long rawLength = length - 36;
-        long bitrate = srate * channel * bits;
-
-        header[0] = 'R';
-        header[1] = 'I';
-        header[2] = 'F';
-        header[3] = 'F';
-        header[4] = (byte) (length & 0xff);
-        header[5] = (byte) ((length >> 8) & 0xff);
-        header[6] = (byte) ((length >> 16) & 0xff);
-        header[7] = (byte) ((length >> 24) & 0xff);
-        header[8] = 'W';
-        header[9] = 'A';
-        header[10] = 'V';
-        header[11] = 'E';
-        header[12] = 'f';
-        header[13] = 'm';
-        header[14] = 't';
-        header[15] = ' ';
-        header[16] = format;
-        header[17] = 0;
-        header[18] = 0;
-        header[19] = 0;
-        header[20] = 1;
-        header[21] = 0;
-        header[22] = channel;
-        header[23] = 0;
-        header[24] = (byte) (srate & 0xff);
-        header[25] = (byte) ((srate >> 8) & 0xff);
-        header[26] = (byte) ((srate >> 16) & 0xff);
-        header[27] = (byte) ((srate >> 24) & 0xff);
-        header[28] = (byte) ((bitrate / 8) & 0xff);
-        header[29] = (byte) (((bitrate / 8) >> 8) & 0xff);
-        header[30] = (byte) (((bitrate / 8) >> 16) & 0xff);
-        header[31] = (byte) (((bitrate / 8) >> 24) & 0xff);
-        header[32] = (byte) ((channel * bits) / 8);
-        header[33] = 0;
-        header[34] = 16;
-        header[35] = 0;
-        header[36] = 'd';
-        header[37] = 'a';
-        header[38] = 't';
-        header[39] = 'a';
-        header[40] = (byte) (rawLength & 0xff);
-        header[41] = (byte) ((rawLength >> 8) & 0xff);
-        header[42] = (byte) ((rawLength >> 16) & 0xff);
-        header[43] = (byte) ((rawLength >> 24) & 0xff);
-        return new ByteArrayInputStream(header);
+        try {
+            return synthesis.getLength() + MaryTTSSynthesis.HEADER_LENGTH;
+        } catch (IOException e) {
+            return MaryTTSSynthesis.HEADER_LENGTH;
+        }
     }
 
     @Override
     public synchronized void reset() throws IOException {
         IOUtils.closeQuietly(inputStream);
-        this.inputStream = new SequenceInputStream(getWavHeaderInputStream(length), new ByteArrayInputStream(rawAudio));
+        this.inputStream = synthesis.getInputStream();
     }
 
     @Override
     public InputStream getClonedStream() throws AudioException {
-        try {
-            return new SequenceInputStream(getWavHeaderInputStream(length), new ByteArrayInputStream(rawAudio));
-        } catch (IOException e) {
-            throw new AudioException(e);
-        }
+        return synthesis.getInputStream();
     }
 }
@@ -16,13 +16,26 @@ package org.openhab.voice.marytts.internal;
  */
 
 import java.io.IOException;
+import java.text.BreakIterator;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
+import org.apache.commons.io.IOUtils;
 import org.eclipse.smarthome.core.audio.AudioFormat;
 import org.eclipse.smarthome.core.audio.AudioStream;
 import org.eclipse.smarthome.core.voice.TTSException;
@@ -39,6 +52,10 @@ import marytts.modules.synthesis.Voice;
 /**
  * This is a TTS service implementation for using MaryTTS.
  *
+ * Texts are synthesized by a pool of {@link MaryInterface}s, one per available processor, so announcements do not
+ * wait for each other. A text is split into sentences, which are synthesized one after the other, and the returned
+ * stream can be played as soon as the first sentence is available. Recently synthesized texts are kept in memory.
+ *
  * @author Kelly Davis - Initial contribution and API
  * @author Kai Kreuzer - Refactored to updated APIs and moved to openHAB
  */
@@ -46,8 +63,21 @@ public class MaryTTSService implements TTSService {
 
     private final Logger logger = LoggerFactory.getLogger(MaryTTSService.class);
 
+    /**
+     * maximum total size of the raw audio of the cached texts
+     */
+    private static final int MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
     private MaryInterface marytts;
 
+    private BlockingQueue<MaryInterface> pool;
+
+    private volatile ExecutorService executor;
+
+    private final LinkedHashMap<String, MaryTTSSynthesis> cache = new LinkedHashMap<String, MaryTTSSynthesis>(16,
+            0.75f, true);
+    private int cacheSize;
+
     /**
      * Set of supported voices
      */
@@ -63,11 +93,41 @@ public class MaryTTSService implements TTSService {
             marytts = getMaryInterface();
             voices = initVoices();
             audioFormats = initAudioFormats();
+
+            int poolSize = Runtime.getRuntime().availableProcessors();
+            pool = new ArrayBlockingQueue<MaryInterface>(poolSize);
+            pool.add(marytts);
+            for (int i = 1; i < poolSize; i++) {
+                pool.add(getMaryInterface());
+            }
+            executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "marytts-synthesis-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            logger.debug("Created {} MaryTTS interfaces", poolSize);
         } catch (Throwable t) {
             logger.error("Failed to initialize MaryTTS: {}", t.getMessage(), t);
         }
     }
 
+    protected void deactivate() {
+        ExecutorService executor = this.executor;
+        this.executor = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        synchronized (cache) {
+            cache.clear();
+            cacheSize = 0;
+        }
+    }
+
     @Override
     public Set<org.eclipse.smarthome.core.voice.Voice> getAvailableVoices() {
         return this.voices;
@@ -81,6 +141,10 @@ public class MaryTTSService implements TTSService {
     @Override
     public AudioStream synthesize(String text, org.eclipse.smarthome.core.voice.Voice voice,
             AudioFormat requestedFormat) throws TTSException {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            throw new TTSException("MaryTTS is not initialized");
+        }
         // Validate arguments
         if ((null == text) || text.isEmpty()) {
             throw new TTSException("The passed text is null or empty");
@@ -122,23 +186,120 @@ public class MaryTTSService implements TTSService {
         Voice maryTTSVoice = Voice.getVoice(voice.getLabel());
         AudioFormat maryTTSVoiceAudioFormat = getAudioFormat(maryTTSVoice.dbAudioFormat());
 
-        // Synchronize on marytts
-        synchronized (marytts) {
-            // AudioStream to return
-            AudioStream audioStream = null;
+        String key = voice.getLabel() + "\n" + text;
+        MaryTTSSynthesis synthesis;
+        synchronized (cache) {
+            synthesis = cache.get(key);
+        }
+        if (synthesis != null) {
+            logger.debug("Using cached audio for '{}'", text);
+            return new MaryTTSAudioStream(synthesis, maryTTSVoiceAudioFormat);
+        }
 
-            // Set voice (Each voice supports onl a single AudioFormat)
-            marytts.setLocale(voice.getLocale());
-            marytts.setVoice(voice.getLabel());
+        synthesis = new MaryTTSSynthesis(maryTTSVoice.dbAudioFormat());
+        try {
+            executor.execute(new SynthesisTask(synthesis, key, splitSentences(text, voice.getLocale()), voice));
+        } catch (RejectedExecutionException e) {
+            throw new TTSException("MaryTTS has been stopped", e);
+        }
+        try {
+            // return as soon as the first sentence is available
+            Exception failure = synthesis.awaitStart();
+            if (failure != null) {
+                throw new TTSException("Error generating an AudioStream", failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TTSException("Interrupted while generating an AudioStream", e);
+        }
+        if (synthesis.isSucceeded()) {
+            return new MaryTTSAudioStream(synthesis, maryTTSVoiceAudioFormat);
+        }
+        // the length is not known before the synthesis is complete
+        return new MaryTTSStreamingAudioStream(synthesis, maryTTSVoiceAudioFormat);
+    }
 
-            try {
-                AudioInputStream audioInputStream = marytts.generateAudio(text);
-                audioStream = new MaryTTSAudioStream(audioInputStream, maryTTSVoiceAudioFormat);
-            } catch (SynthesisException | IOException e) {
-                throw new TTSException("Error generating an AudioStream", e);
+    /**
+     * Splits the text at the sentence boundaries
+     */
+    private List<String> splitSentences(String text, Locale locale) {
+        List<String> sentences = new ArrayList<String>();
+        BreakIterator iterator = BreakIterator.getSentenceInstance(locale);
+        iterator.setText(text);
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
+            String sentence = text.substring(start, end).trim();
+            if (!sentence.isEmpty()) {
+                sentences.add(sentence);
             }
+        }
+        if (sentences.isEmpty()) {
+            sentences.add(text);
+        }
+        return sentences;
+    }
 
-            return audioStream;
+    private void addToCache(String key, MaryTTSSynthesis synthesis) throws IOException {
+        int length = synthesis.getLength();
+        if (length > MAX_CACHE_SIZE) {
+            return;
+        }
+        synchronized (cache) {
+            MaryTTSSynthesis previous = cache.put(key, synthesis);
+            if (previous != null) {
+                cacheSize -= previous.getLength();
+            }
+            cacheSize += length;
+            Iterator<MaryTTSSynthesis> iterator = cache.values().iterator();
+            while (cacheSize > MAX_CACHE_SIZE && iterator.hasNext()) {
+                cacheSize -= iterator.next().getLength();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Synthesizes the sentences of a text one after the other, every sentence with an interface of the pool
+     */
+    private class SynthesisTask implements Runnable {
+        private final MaryTTSSynthesis synthesis;
+        private final String key;
+        private final List<String> sentences;
+        private final org.eclipse.smarthome.core.voice.Voice voice;
+
+        SynthesisTask(MaryTTSSynthesis synthesis, String key, List<String> sentences,
+                org.eclipse.smarthome.core.voice.Voice voice) {
+            this.synthesis = synthesis;
+            this.key = key;
+            this.sentences = sentences;
+            this.voice = voice;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                for (String sentence : sentences) {
+                    MaryInterface maryInterface = pool.take();
+                    try {
+                        // Set voice (Each voice supports onl a single AudioFormat)
+                        maryInterface.setLocale(voice.getLocale());
+                        maryInterface.setVoice(voice.getLabel());
+                        AudioInputStream audioInputStream = maryInterface.generateAudio(sentence);
+                        synthesis.add(IOUtils.toByteArray(audioInputStream));
+                    } finally {
+                        pool.add(maryInterface);
+                    }
+                }
+                synthesis.complete();
+                addToCache(key, synthesis);
+                logger.debug("Synthesized {} sentences in {}ms", sentences.size(), System.currentTimeMillis() - start);
+            } catch (SynthesisException | IOException | RuntimeException e) {
+                synthesis.fail(e);
+            } catch (InterruptedException e) {
+                synthesis.fail(e);
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
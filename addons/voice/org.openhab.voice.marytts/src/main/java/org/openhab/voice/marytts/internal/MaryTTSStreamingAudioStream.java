@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.marytts.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.smarthome.core.audio.AudioFormat;
+import org.eclipse.smarthome.core.audio.AudioStream;
+
+/**
+ * An {@link AudioStream} of a {@link MaryTTSSynthesis}, which is read while the following sentences are still
+ * synthesized. Its length is not known in advance.
+ *
+ * @author agent - Initial contribution
+ */
+class MaryTTSStreamingAudioStream extends AudioStream {
+
+    private final AudioFormat audioFormat;
+
+    private final InputStream inputStream;
+
+    /**
+     * Constructs an instance with the passed properties
+     *
+     * @param synthesis The synthesis providing the raw audio of this instance
+     * @param audioFormat The AudioFormat of this instance
+     */
+    public MaryTTSStreamingAudioStream(MaryTTSSynthesis synthesis, AudioFormat audioFormat) {
+        this.inputStream = synthesis.getInputStream();
+        this.audioFormat = audioFormat;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return this.audioFormat;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return inputStream.read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return inputStream.read(b, off, len);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return inputStream.read();
+    }
+}
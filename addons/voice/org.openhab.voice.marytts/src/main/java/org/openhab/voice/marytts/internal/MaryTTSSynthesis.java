@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.marytts.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The raw audio of a text, which is synthesized sentence by sentence. The audio of every sentence is added as a chunk
+ * as soon as it has been synthesized, so it can be read while the following sentences are still synthesized.
+ *
+ * @author agent - Initial contribution
+ */
+class MaryTTSSynthesis {
+
+    static final int HEADER_LENGTH = 44;
+
+    // chunk size of a WAV header with unknown length
+    private static final long UNKNOWN_LENGTH = 0xFFFFFFFFL;
+
+    private final javax.sound.sampled.AudioFormat pcmFormat;
+
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private int length;
+    private boolean complete;
+    private Exception failure;
+
+    MaryTTSSynthesis(javax.sound.sampled.AudioFormat pcmFormat) {
+        this.pcmFormat = pcmFormat;
+    }
+
+    synchronized void add(byte[] chunk) {
+        chunks.add(chunk);
+        length += chunk.length;
+        notifyAll();
+    }
+
+    synchronized void complete() {
+        complete = true;
+        notifyAll();
+    }
+
+    synchronized void fail(Exception failure) {
+        this.failure = failure;
+        complete = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns true, if the synthesis has completed without failure
+     */
+    synchronized boolean isSucceeded() {
+        return complete && failure == null;
+    }
+
+    /**
+     * Waits until the first sentence has been synthesized or the synthesis has failed.
+     *
+     * @return the failure of the synthesis or null
+     */
+    synchronized Exception awaitStart() throws InterruptedException {
+        while (chunks.isEmpty() && !complete) {
+            wait();
+        }
+        return failure;
+    }
+
+    /**
+     * Returns the chunk with the given index, waits until it has been synthesized.
+     *
+     * @return the chunk or null, if the synthesis is complete and has no further chunk
+     * @throws IOException if the synthesis has failed
+     */
+    synchronized byte[] getChunk(int index) throws IOException {
+        try {
+            while (index >= chunks.size() && !complete) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for synthesis");
+        }
+        if (index < chunks.size()) {
+            return chunks.get(index);
+        }
+        if (failure != null) {
+            throw new IOException("Error generating audio", failure);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the length of the raw audio, waits until the synthesis is complete.
+     * Streams only ask for the length of a complete synthesis.
+     *
+     * @throws IOException if the synthesis has failed
+     */
+    synchronized int getLength() throws IOException {
+        try {
+            while (!complete) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for synthesis");
+        }
+        if (failure != null) {
+            throw new IOException("Error generating audio", failure);
+        }
+        return length;
+    }
+
+    /**
+     * Returns a new stream of the WAV audio, which blocks until the next chunk has been synthesized. If the synthesis
+     * is not complete when reading starts, the WAV header is written with an unknown length, as it is done for
+     * streamed WAV audio.
+     */
+    InputStream getInputStream() {
+        return new SynthesisInputStream();
+    }
+
+    private byte[] getWavHeader(long rawLength) {
+        // WAVE header
+        // see http://www-mmsp.ece.mcgill.ca/Documents/AudioFormats/WAVE/WAVE.html
+        byte[] header = new byte[HEADER_LENGTH];
+
+        byte format = 0x10; // PCM
+        int bits = pcmFormat.getSampleSizeInBits();
+        int channel = pcmFormat.getChannels();
+        int srate = (int) pcmFormat.getSampleRate();
+        long length = rawLength == UNKNOWN_LENGTH ? UNKNOWN_LENGTH : rawLength + 36;
+        long bitrate = srate * channel * bits;
+
+        header[0] = 'R';
+        header[1] = 'I';
+        header[2] = 'F';
+        header[3] = 'F';
+        writeInt(header, 4, length);
+        header[8] = 'W';
+        header[9] = 'A';
+        header[10] = 'V';
+        header[11] = 'E';
+        header[12] = 'f';
+        header[13] = 'm';
+        header[14] = 't';
+        header[15] = ' ';
+        header[16] = format;
+        header[17] = 0;
+        header[18] = 0;
+        header[19] = 0;
+        header[20] = 1;
+        header[21] = 0;
+        header[22] = (byte) channel;
+        header[23] = 0;
+        writeInt(header, 24, srate);
+        writeInt(header, 28, bitrate / 8);
+        header[32] = (byte) ((channel * bits) / 8);
+        header[33] = 0;
+        header[34] = (byte) bits;
+        header[35] = 0;
+        header[36] = 'd';
+        header[37] = 'a';
+        header[38] = 't';
+        header[39] = 'a';
+        writeInt(header, 40, rawLength);
+        return header;
+    }
+
+    private static void writeInt(byte[] header, int offset, long value) {
+        header[offset] = (byte) (value & 0xff);
+        header[offset + 1] = (byte) ((value >> 8) & 0xff);
+        header[offset + 2] = (byte) ((value >> 16) & 0xff);
+        header[offset + 3] = (byte) ((value >> 24) & 0xff);
+    }
+
+    /**
+     * Reads the WAV header and the chunks of the synthesis, blocks until the next chunk has been synthesized.
+     */
+    private class SynthesisInputStream extends InputStream {
+        private InputStream current;
+        private int nextChunk;
+        private boolean headerRead;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current != null) {
+                    int read = current.read(b, off, len);
+                    if (read > 0) {
+                        return read;
+                    }
+                }
+                if (!headerRead) {
+                    headerRead = true;
+                    // a complete synthesis has a known length
+                    current = new ByteArrayInputStream(getWavHeader(isSucceeded() ? getLength() : UNKNOWN_LENGTH));
+                    continue;
+                }
+                byte[] chunk = getChunk(nextChunk);
+                if (chunk == null) {
+                    return -1;
+                }
+                nextChunk++;
+                current = new ByteArrayInputStream(chunk);
+            }
+        }
+    }
+}
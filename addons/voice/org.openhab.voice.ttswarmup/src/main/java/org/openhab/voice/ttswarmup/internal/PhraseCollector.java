@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.ttswarmup.internal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the phrases spoken by the rules and scripts of the configuration. Only calls of the say action with a
+ * literal text are taken into account, e.g. <code>say("Someone is at the door")</code> or
+ * <code>say("Es klingelt", "marytts:bits3hsmm")</code>. Texts which are built at runtime cannot be known beforehand.
+ *
+ * @author agent - Initial contribution
+ */
+class PhraseCollector {
+
+    private final Logger logger = LoggerFactory.getLogger(PhraseCollector.class);
+
+    /**
+     * matches say("text") and say("text", "voice"), but not say("text" + variable)
+     */
+    private static final Pattern SAY_PATTERN = Pattern
+            .compile("\\bsay\\s*\\(\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*(?:,\\s*\"([^\"]*)\"\\s*)?(?=[,)])");
+
+    private static final String[][] SOURCES = { { "rules", ".rules" }, { "scripts", ".script" } };
+
+    /**
+     * Returns the phrases of all rule and script files.
+     */
+    Set<Phrase> collect() {
+        Set<Phrase> phrases = new LinkedHashSet<Phrase>();
+        for (String[] source : SOURCES) {
+            File folder = new File(ConfigConstants.getConfigFolder(), source[0]);
+            final String extension = source[1];
+            File[] files = folder.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(extension);
+                }
+            });
+            if (files == null) {
+                continue;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                try {
+                    collect(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), phrases);
+                } catch (IOException e) {
+                    logger.warn("Error reading '{}': {}", file, e.getMessage());
+                }
+            }
+        }
+        return phrases;
+    }
+
+    /**
+     * Returns the time of the last modification of a rule or script file.
+     */
+    long getLastModified() {
+        long lastModified = 0;
+        for (String[] source : SOURCES) {
+            File folder = new File(ConfigConstants.getConfigFolder(), source[0]);
+            lastModified = Math.max(lastModified, folder.lastModified());
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    lastModified = Math.max(lastModified, file.lastModified());
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    static void collect(String content, Set<Phrase> phrases) {
+        Matcher matcher = SAY_PATTERN.matcher(content);
+        while (matcher.find()) {
+            String text = unescape(matcher.group(1)).trim();
+            if (!text.isEmpty()) {
+                phrases.add(new Phrase(text, matcher.group(2)));
+            }
+        }
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                c = text.charAt(++i);
+                if (c == 'n') {
+                    c = '\n';
+                } else if (c == 't') {
+                    c = '\t';
+                }
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /**
+     * A phrase and the voice it is spoken with, the voice is null for the default voice.
+     */
+    static class Phrase {
+        final String text;
+        final String voiceUID;
+
+        Phrase(String text, String voiceUID) {
+            this.text = text;
+            this.voiceUID = voiceUID;
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode() * 31 + (voiceUID == null ? 0 : voiceUID.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Phrase)) {
+                return false;
+            }
+            Phrase other = (Phrase) obj;
+            return text.equals(other.text)
+                    && (voiceUID == null ? other.voiceUID == null : voiceUID.equals(other.voiceUID));
+        }
+
+        @Override
+        public String toString() {
+            return voiceUID == null ? text : text + " (" + voiceUID + ")";
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.ttswarmup.internal;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.audio.AudioFormat;
+import org.eclipse.smarthome.core.audio.AudioStream;
+import org.eclipse.smarthome.core.voice.TTSException;
+import org.eclipse.smarthome.core.voice.TTSService;
+import org.eclipse.smarthome.core.voice.Voice;
+import org.openhab.voice.ttswarmup.internal.PhraseCollector.Phrase;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This service renders the phrases spoken by the rules in the background, so the TTS services keep the audio in
+ * their caches and the announcements can be played without waiting for the synthesis.
+ *
+ * The phrases are rendered one after the other by a thread of minimal priority and only while the system load is
+ * low. The rules are checked for new phrases periodically.
+ *
+ * A phrase without a voice is only rendered with the configured voice or the default voice of the system. If neither
+ * is configured, it is rendered by the default TTS service of the system, otherwise it is skipped.
+ *
+ * @author agent - Initial contribution
+ */
+public class TTSWarmupService {
+
+    private final Logger logger = LoggerFactory.getLogger(TTSWarmupService.class);
+
+    private static final String CONFIG_VOICE = "voice";
+    private static final String CONFIG_PHRASES = "phrases";
+
+    /**
+     * voice configuration of the system, which is used by the say action without a voice
+     */
+    private static final String VOICE_PID = "org.eclipse.smarthome.voice";
+    private static final String CONFIG_DEFAULT_TTS = "defaultTTS";
+    private static final String CONFIG_DEFAULT_VOICE = "defaultVoice";
+
+    /**
+     * delay before the first phrases are rendered after startup, in seconds
+     */
+    private static final int INITIAL_DELAY = 30;
+
+    /**
+     * interval of checking for new phrases and for an idle system, in seconds
+     */
+    private static final int INTERVAL = 60;
+
+    /**
+     * the system is considered idle if the load average per processor is below this value
+     */
+    private static final double IDLE_LOAD = 0.5;
+
+    private final PhraseCollector collector = new PhraseCollector();
+
+    private final List<TTSService> ttsServices = new CopyOnWriteArrayList<TTSService>();
+
+    /**
+     * the rendered phrases per TTS service
+     */
+    private final Map<String, Set<Phrase>> rendered = new ConcurrentHashMap<String, Set<Phrase>>();
+
+    private ScheduledExecutorService scheduler;
+
+    private ConfigurationAdmin configurationAdmin;
+
+    private volatile String defaultVoice;
+    private volatile Set<Phrase> configuredPhrases = new LinkedHashSet<Phrase>();
+
+    private String systemDefaultTTS;
+    private String systemDefaultVoice;
+
+    private volatile Set<Phrase> phrases;
+    private volatile long lastModified = -1;
+
+    protected void activate(Map<String, Object> config) {
+        modified(config);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TTS warm-up");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    warmup();
+                } catch (RuntimeException e) {
+                    logger.warn("Error rendering phrases: {}", e.getMessage(), e);
+                }
+            }
+        }, INITIAL_DELAY, INTERVAL, TimeUnit.SECONDS);
+    }
+
+    protected void modified(Map<String, Object> config) {
+        Set<Phrase> newPhrases = new LinkedHashSet<Phrase>();
+        defaultVoice = null;
+        if (config != null) {
+            if (config.get(CONFIG_VOICE) != null && !config.get(CONFIG_VOICE).toString().trim().isEmpty()) {
+                defaultVoice = config.get(CONFIG_VOICE).toString().trim();
+            }
+            if (config.get(CONFIG_PHRASES) != null) {
+                for (String text : config.get(CONFIG_PHRASES).toString().split("\\|")) {
+                    if (!text.trim().isEmpty()) {
+                        newPhrases.add(new Phrase(text.trim(), null));
+                    }
+                }
+            }
+        }
+        configuredPhrases = newPhrases;
+        // render everything again with the new configuration
+        lastModified = -1;
+    }
+
+    protected void deactivate() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        rendered.clear();
+        phrases = null;
+    }
+
+    protected void addTTSService(TTSService ttsService) {
+        // a service which was restarted has lost the phrases kept in memory
+        rendered.remove(ttsService.getId());
+        ttsServices.add(ttsService);
+    }
+
+    protected void removeTTSService(TTSService ttsService) {
+        ttsServices.remove(ttsService);
+        rendered.remove(ttsService.getId());
+    }
+
+    protected void setConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = configurationAdmin;
+    }
+
+    protected void unsetConfigurationAdmin(ConfigurationAdmin configurationAdmin) {
+        this.configurationAdmin = null;
+    }
+
+    /**
+     * Renders the phrases, which have not been rendered yet, as long as the system is idle.
+     */
+    private void warmup() {
+        long modified = collector.getLastModified();
+        if (phrases == null || modified != lastModified) {
+            Set<Phrase> newPhrases = new LinkedHashSet<Phrase>(configuredPhrases);
+            newPhrases.addAll(collector.collect());
+            phrases = newPhrases;
+            lastModified = modified;
+            // phrases already in the caches are served from there, so rendering them again is cheap
+            rendered.clear();
+            logger.debug("Found {} phrases to render", phrases.size());
+        }
+        readSystemDefaults();
+
+        for (TTSService ttsService : ttsServices) {
+            Set<Phrase> done = rendered.get(ttsService.getId());
+            if (done == null) {
+                done = new HashSet<Phrase>();
+                rendered.put(ttsService.getId(), done);
+            }
+            for (Phrase phrase : phrases) {
+                if (done.contains(phrase)) {
+                    continue;
+                }
+                if (!isIdle()) {
+                    logger.trace("System is busy, continue rendering later");
+                    return;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                Voice voice = getVoice(ttsService, phrase);
+                if (voice != null) {
+                    render(ttsService, voice, phrase.text);
+                }
+                // failures are not retried until the rules or the configuration change
+                done.add(phrase);
+            }
+        }
+    }
+
+    /**
+     * Reads the default TTS service and voice of the system, a changed default is rendered on the next run.
+     */
+    private void readSystemDefaults() {
+        String defaultTTS = null;
+        String defaultVoice = null;
+        ConfigurationAdmin configurationAdmin = this.configurationAdmin;
+        if (configurationAdmin != null) {
+            try {
+                Configuration configuration = configurationAdmin.getConfiguration(VOICE_PID, null);
+                Dictionary<String, Object> properties = configuration.getProperties();
+                if (properties != null) {
+                    defaultTTS = getString(properties.get(CONFIG_DEFAULT_TTS));
+                    defaultVoice = getString(properties.get(CONFIG_DEFAULT_VOICE));
+                }
+            } catch (IOException e) {
+                logger.debug("Could not read the voice configuration: {}", e.getMessage());
+            }
+        }
+        if (!equals(defaultTTS, systemDefaultTTS) || !equals(defaultVoice, systemDefaultVoice)) {
+            systemDefaultTTS = defaultTTS;
+            systemDefaultVoice = defaultVoice;
+            rendered.clear();
+        }
+        if (this.defaultVoice == null && defaultVoice == null && defaultTTS == null) {
+            logger.trace("No default TTS service or voice configured, phrases without a voice are skipped");
+        }
+    }
+
+    private static String getString(Object value) {
+        return value != null && !value.toString().trim().isEmpty() ? value.toString().trim() : null;
+    }
+
+    private static boolean equals(String value1, String value2) {
+        return value1 == null ? value2 == null : value1.equals(value2);
+    }
+
+    /**
+     * Returns the voice of the service the phrase is spoken with or null, if it is spoken by another service.
+     */
+    private Voice getVoice(TTSService ttsService, Phrase phrase) {
+        String voiceUID = phrase.voiceUID;
+        if (voiceUID == null) {
+            voiceUID = defaultVoice != null ? defaultVoice : systemDefaultVoice;
+        }
+        Set<Voice> voices = ttsService.getAvailableVoices();
+        if (voices == null) {
+            return null;
+        }
+        if (voiceUID != null) {
+            for (Voice voice : voices) {
+                if (voiceUID.equals(voice.getUID())) {
+                    return voice;
+                }
+            }
+            return null;
+        }
+        // only the default TTS service speaks the phrase, with a voice of the system locale
+        if (!ttsService.getId().equals(systemDefaultTTS)) {
+            return null;
+        }
+        String language = Locale.getDefault().getLanguage();
+        for (Voice voice : voices) {
+            if (language.equals(voice.getLocale().getLanguage())) {
+                return voice;
+            }
+        }
+        return null;
+    }
+
+    private void render(TTSService ttsService, Voice voice, String text) {
+        Iterator<AudioFormat> formats = ttsService.getSupportedFormats().iterator();
+        if (!formats.hasNext()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            AudioStream audioStream = ttsService.synthesize(text, voice, formats.next());
+            try {
+                // read the complete audio, so the service has finished the synthesis
+                byte[] buffer = new byte[8192];
+                while (audioStream.read(buffer) >= 0) {
+                    // discard the audio
+                }
+            } finally {
+                audioStream.close();
+            }
+            logger.debug("Rendered '{}' with voice {} in {}ms", text, voice.getUID(),
+                    System.currentTimeMillis() - start);
+        } catch (TTSException | IOException e) {
+            logger.debug("Could not render '{}' with voice {}: {}", text, voice.getUID(), e.getMessage());
+        }
+    }
+
+    private boolean isIdle() {
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        // the load average is not available on every platform
+        return load < 0 || load < IDLE_LOAD * Runtime.getRuntime().availableProcessors();
+    }
+}
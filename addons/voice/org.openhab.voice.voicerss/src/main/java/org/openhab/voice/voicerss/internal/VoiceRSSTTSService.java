@@ -22,6 +22,7 @@ import org.eclipse.smarthome.core.audio.AudioStream;
 import org.eclipse.smarthome.core.voice.TTSException;
 import org.eclipse.smarthome.core.voice.TTSService;
 import org.eclipse.smarthome.core.voice.Voice;
+import org.openhab.voice.voicerss.internal.cloudapi.AudioCache;
 import org.openhab.voice.voicerss.internal.cloudapi.CachedVoiceRSSCloudImplementation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,10 @@ public class VoiceRSSTTSService implements TTSService {
     private static final String CONFIG_API_KEY = "apiKey";
     private String apiKey = null;
 
+    // Maximum size of the cache in MB comes from ConfigAdmin
+    private static final String CONFIG_CACHE_SIZE = "cacheSize";
+    private long cacheSize = AudioCache.DEFAULT_MAX_SIZE;
+
     private final Logger logger = LoggerFactory.getLogger(VoiceRSSTTSService.class);
 
     /**
@@ -62,8 +67,8 @@ public class VoiceRSSTTSService implements TTSService {
      */
     protected void activate(Map<String, Object> config) {
         try {
-            modified(config);
             voiceRssImpl = initVoiceImplementation();
+            modified(config);
             voices = initVoices();
             audioFormats = initAudioFormats();
 
@@ -76,6 +81,30 @@ public class VoiceRSSTTSService implements TTSService {
     protected void modified(Map<String, Object> config) {
         if (config != null) {
             this.apiKey = config.containsKey(CONFIG_API_KEY) ? config.get(CONFIG_API_KEY).toString() : null;
+            this.cacheSize = AudioCache.DEFAULT_MAX_SIZE;
+            if (config.containsKey(CONFIG_CACHE_SIZE)) {
+                try {
+                    this.cacheSize = Long.parseLong(config.get(CONFIG_CACHE_SIZE).toString()) * 1024 * 1024;
+                } catch (NumberFormatException ex) {
+                    logger.warn("Invalid cache size '{}', using default", config.get(CONFIG_CACHE_SIZE));
+                }
+            }
+        }
+        if (voiceRssImpl != null) {
+            voiceRssImpl.getCache().setMaxSize(this.cacheSize);
+        }
+    }
+
+    /**
+     * DS deactivate, writes the access statistics of the cache
+     */
+    protected void deactivate() {
+        if (voiceRssImpl != null) {
+            AudioCache cache = voiceRssImpl.getCache();
+            cache.flush();
+            logger.debug("VoiceRSS cache: {} hits, {} memory hits, {} misses, {} coalesced, {} evictions",
+                    cache.getHits(), cache.getMemoryHits(), cache.getMisses(), cache.getCoalesced(),
+                    cache.getEvictions());
         }
     }
 
@@ -105,29 +134,38 @@ public class VoiceRSSTTSService implements TTSService {
         if (!this.voices.contains(voice)) {
             throw new TTSException("The passed voice is unsupported");
         }
-        boolean isAudioFormatSupported = false;
+        AudioFormat supportedFormat = null;
         for (AudioFormat currentAudioFormat : this.audioFormats) {
             if (currentAudioFormat.isCompatible(requestedFormat)) {
-                isAudioFormatSupported = true;
+                supportedFormat = currentAudioFormat;
                 break;
             }
         }
-        if (!isAudioFormatSupported) {
+        if (supportedFormat == null) {
             throw new TTSException("The passed AudioFormat is unsupported");
         }
 
+        // frequently used texts are kept in memory
+        byte[] audioData = voiceRssImpl.getTextToSpeechFromMemory(text, voice.getLocale().toLanguageTag());
+        if (audioData != null) {
+            return new VoiceRSSMemoryAudioStream(audioData, supportedFormat);
+        }
+
         // now create the input stream for given text, locale, format. There is
         // only a default voice
+        // the file is opened before it can be evicted from the cache
         try {
-            File cacheAudioFile = voiceRssImpl.getTextToSpeechAsFile(this.apiKey, text,
-                    voice.getLocale().toLanguageTag(), requestedFormat.getCodec());
-            if (cacheAudioFile == null) {
-                throw new TTSException("Could not read from VoiceRSS service");
-            }
-            AudioStream audioStream = new VoiceRSSAudioStream(cacheAudioFile);
-            return audioStream;
-        } catch (AudioException ex) {
-            throw new TTSException("Could not create AudioStream: " + ex.getMessage(), ex);
+            return voiceRssImpl.openTextToSpeech(this.apiKey, text, voice.getLocale().toLanguageTag(),
+                    requestedFormat.getCodec(), new AudioCache.Opener<AudioStream>() {
+                        @Override
+                        public AudioStream open(File file) throws IOException {
+                            try {
+                                return new VoiceRSSAudioStream(file);
+                            } catch (AudioException ex) {
+                                throw new IOException("Could not create AudioStream: " + ex.getMessage(), ex);
+                            }
+                        }
+                    });
         } catch (IOException ex) {
             throw new TTSException("Could not read from VoiceRSS service: " + ex.getMessage(), ex);
         }
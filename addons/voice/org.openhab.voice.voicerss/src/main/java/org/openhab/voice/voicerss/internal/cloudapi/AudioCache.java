@@ -0,0 +1,509 @@
+/**
+ * Copyright (c) 2014-2016 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.voice.voicerss.internal.cloudapi;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class manages the audio files in the cache folder. The cached files are
+ * listed in an index file, which contains the text, size, last access and
+ * number of hits of every file. The total size of the files is limited, the
+ * least recently used files are evicted first.
+ *
+ * Files are written to a temporary file and moved into place when they are
+ * complete. Concurrent requests for a file which is not cached yet are
+ * coalesced into a single download. Small files which have been requested
+ * repeatedly are additionally kept in memory.
+ *
+ * A file is pinned from the lookup until it has been opened, pinned files are
+ * not evicted. A file which is larger than the cache is therefore evicted as
+ * soon as it has been opened.
+ *
+ * @author agent - Initial contribution
+ */
+public class AudioCache {
+
+	private final Logger logger = LoggerFactory.getLogger(AudioCache.class);
+
+	/** Default maximum total size of the cached files. */
+	public static final long DEFAULT_MAX_SIZE = 50L * 1024 * 1024;
+
+	/** Maximum total size of the files kept in memory. */
+	private static final int MAX_MEMORY_SIZE = 2 * 1024 * 1024;
+
+	/** Maximum size of a single file kept in memory. */
+	private static final int MAX_MEMORY_ENTRY_SIZE = 256 * 1024;
+
+	/** Number of hits before a file is kept in memory. */
+	private static final int MEMORY_MIN_HITS = 2;
+
+	private static final String INDEX_FILE = "cache.index";
+	private static final String AUDIO_EXTENSION = ".mp3";
+	private static final String TEXT_EXTENSION = ".txt";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	/**
+	 * Writes the audio data of a file which is not cached yet.
+	 */
+	public interface Loader {
+		void load(OutputStream outputStream) throws IOException;
+	}
+
+	/**
+	 * Opens an audio file, the file is not evicted while it is opened.
+	 */
+	public interface Opener<T> {
+		T open(File file) throws IOException;
+	}
+
+	private final File cacheFolder;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+	private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private final ConcurrentMap<String, FutureTask<File>> downloads = new ConcurrentHashMap<String, FutureTask<File>>();
+
+	private long maxSize = DEFAULT_MAX_SIZE;
+	private long size;
+	private int memorySize;
+	private boolean indexDirty;
+
+	private long hits;
+	private long memoryHits;
+	private long misses;
+	private long coalesced;
+	private long evictions;
+
+	public AudioCache(File cacheFolder) {
+		this.cacheFolder = cacheFolder;
+		readIndex();
+	}
+
+	/**
+	 * Opens the audio file for the key, the file is loaded if it is not cached
+	 * yet.
+	 */
+	public <T> T open(String key, String text, Loader loader, Opener<T> opener) throws IOException {
+		File file = acquire(key, text, loader);
+		try {
+			return opener.open(file);
+		} finally {
+			release(key);
+		}
+	}
+
+	/**
+	 * Returns the pinned audio file for the key, the file is loaded if it is
+	 * not cached yet.
+	 */
+	private File acquire(final String key, final String text, final Loader loader) throws IOException {
+		while (true) {
+			File file = lookup(key);
+			if (file != null) {
+				return file;
+			}
+			FutureTask<File> download = new FutureTask<File>(new Callable<File>() {
+				@Override
+				public File call() throws IOException {
+					// it may have been stored since our lookup
+					File file = lookup(key);
+					return file != null ? file : load(key, text, loader);
+				}
+			});
+			FutureTask<File> running = downloads.putIfAbsent(key, download);
+			if (running == null) {
+				try {
+					download.run();
+				} finally {
+					downloads.remove(key, download);
+				}
+				// the download has pinned the file for us
+				return getResult(key, download);
+			}
+			synchronized (this) {
+				coalesced++;
+			}
+			// look the file up again to pin it, it may have been evicted meanwhile
+			getResult(key, running);
+		}
+	}
+
+	private File getResult(String key, FutureTask<File> download) throws IOException {
+		try {
+			return download.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + key);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Unpins the file, it is evicted if the cache does not fit its size.
+	 */
+	private synchronized void release(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null && entry.pins > 0) {
+			entry.pins--;
+			if (entry.pins == 0 && size > maxSize && evict()) {
+				writeIndex();
+			}
+		}
+	}
+
+	/**
+	 * Returns the audio data for the key, if it is kept in memory.
+	 */
+	public synchronized byte[] getFromMemory(String key) {
+		byte[] data = memory.get(key);
+		if (data != null) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				entry.touch();
+				indexDirty = true;
+			}
+			memoryHits++;
+		}
+		return data;
+	}
+
+	public synchronized void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+		if (evict()) {
+			writeIndex();
+		}
+	}
+
+	/**
+	 * Writes the index, if the access statistics have changed since it has
+	 * been written.
+	 */
+	public synchronized void flush() {
+		if (indexDirty) {
+			writeIndex();
+		}
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMemoryHits() {
+		return memoryHits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getCoalesced() {
+		return coalesced;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private File lookup(String key) {
+		File file = new File(cacheFolder, key + AUDIO_EXTENSION);
+		boolean promote;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (!file.exists()) {
+				// removed from outside
+				remove(key);
+				writeIndex();
+				return null;
+			}
+			entry.touch();
+			entry.pins++;
+			indexDirty = true;
+			hits++;
+			promote = entry.hits >= MEMORY_MIN_HITS && entry.size <= MAX_MEMORY_ENTRY_SIZE
+					&& !memory.containsKey(key);
+		}
+		if (promote) {
+			try {
+				byte[] data = Files.readAllBytes(file.toPath());
+				synchronized (this) {
+					if (entries.containsKey(key) && !memory.containsKey(key)) {
+						memory.put(key, data);
+						memorySize += data.length;
+						Iterator<byte[]> iterator = memory.values().iterator();
+						while (memorySize > MAX_MEMORY_SIZE && iterator.hasNext()) {
+							memorySize -= iterator.next().length;
+							iterator.remove();
+						}
+					}
+				}
+			} catch (IOException ex) {
+				logger.debug("Could not read {} into memory: {}", file, ex.getMessage());
+			}
+		}
+		return file;
+	}
+
+	private File load(String key, String text, Loader loader) throws IOException {
+		synchronized (this) {
+			misses++;
+		}
+		File file = new File(cacheFolder, key + AUDIO_EXTENSION);
+		File tempFile = File.createTempFile(key, TEMP_EXTENSION, cacheFolder);
+		try {
+			try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+				loader.load(outputStream);
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			if (tempFile.exists() && !tempFile.delete()) {
+				logger.debug("Could not delete {}", tempFile);
+			}
+		}
+		synchronized (this) {
+			remove(key);
+			Entry entry = new Entry(text, file.length(), System.currentTimeMillis(), 0);
+			// pinned for the caller, so it is not evicted before it is opened
+			entry.pins = 1;
+			entries.put(key, entry);
+			size += entry.size;
+			evict();
+			writeIndex();
+		}
+		return file;
+	}
+
+	/**
+	 * Evicts the least recently used files until the cache fits its size,
+	 * pinned files are skipped.
+	 *
+	 * @return true, if files have been evicted
+	 */
+	private boolean evict() {
+		boolean evicted = false;
+		Iterator<java.util.Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			java.util.Map.Entry<String, Entry> eldest = iterator.next();
+			if (eldest.getValue().pins > 0) {
+				continue;
+			}
+			iterator.remove();
+			size -= eldest.getValue().size;
+			byte[] data = memory.remove(eldest.getKey());
+			if (data != null) {
+				memorySize -= data.length;
+			}
+			File file = new File(cacheFolder, eldest.getKey() + AUDIO_EXTENSION);
+			if (!file.delete()) {
+				logger.debug("Could not delete evicted file {}", file);
+			}
+			evictions++;
+			evicted = true;
+			logger.debug("Evicted '{}' from cache", eldest.getValue().text);
+		}
+		return evicted;
+	}
+
+	private void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			size -= entry.size;
+		}
+		byte[] data = memory.remove(key);
+		if (data != null) {
+			memorySize -= data.length;
+		}
+	}
+
+	/**
+	 * Reads the index. Files without an entry in the index, e.g. files of
+	 * former versions with a .txt file or files copied into the cache folder,
+	 * are added to the index.
+	 */
+	private synchronized void readIndex() {
+		List<String> keys = new ArrayList<String>();
+		final LinkedHashMap<String, Entry> read = new LinkedHashMap<String, Entry>();
+		File indexFile = new File(cacheFolder, INDEX_FILE);
+		if (indexFile.exists()) {
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t", 5);
+					if (fields.length != 5) {
+						continue;
+					}
+					try {
+						read.put(fields[0], new Entry(unescape(fields[4]), Long.parseLong(fields[1]),
+								Long.parseLong(fields[2]), Integer.parseInt(fields[3])));
+					} catch (NumberFormatException ex) {
+						logger.debug("Ignoring invalid cache index line '{}'", line);
+					}
+				}
+			} catch (IOException ex) {
+				logger.warn("Could not read cache index {}: {}", indexFile, ex.getMessage());
+			}
+		}
+
+		File[] files = cacheFolder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.endsWith(TEMP_EXTENSION)) {
+					// left over from an interrupted download
+					file.delete();
+				} else if (name.endsWith(AUDIO_EXTENSION)) {
+					String key = name.substring(0, name.length() - AUDIO_EXTENSION.length());
+					keys.add(key);
+					Entry entry = read.get(key);
+					if (entry == null) {
+						entry = new Entry(readText(new File(cacheFolder, key + TEXT_EXTENSION)), file.length(),
+								file.lastModified(), 0);
+						read.put(key, entry);
+					} else {
+						entry.size = file.length();
+					}
+				}
+			}
+			// the text is kept in the index
+			for (File file : files) {
+				if (file.getName().endsWith(TEXT_EXTENSION)) {
+					file.delete();
+				}
+			}
+		}
+
+		// restore the access order
+		read.keySet().retainAll(keys);
+		Collections.sort(keys, new Comparator<String>() {
+			@Override
+			public int compare(String key1, String key2) {
+				return Long.compare(read.get(key1).lastAccess, read.get(key2).lastAccess);
+			}
+		});
+		for (String key : keys) {
+			Entry entry = read.get(key);
+			entries.put(key, entry);
+			size += entry.size;
+		}
+		evict();
+		writeIndex();
+		logger.debug("Read cache index with {} files and {} bytes", entries.size(), size);
+	}
+
+	/**
+	 * Writes the index to a temporary file, which replaces the index when it
+	 * is complete.
+	 */
+	private void writeIndex() {
+		File indexFile = new File(cacheFolder, INDEX_FILE);
+		File tempFile = new File(cacheFolder, INDEX_FILE + TEMP_EXTENSION);
+		try {
+			try (Writer writer = new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+				for (java.util.Map.Entry<String, Entry> entry : entries.entrySet()) {
+					Entry value = entry.getValue();
+					writer.write(entry.getKey() + "\t" + value.size + "\t" + value.lastAccess + "\t" + value.hits
+							+ "\t" + escape(value.text) + "\n");
+				}
+			}
+			Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			indexDirty = false;
+		} catch (IOException ex) {
+			logger.warn("Could not write cache index {}: {}", indexFile, ex.getMessage());
+		}
+	}
+
+	private String readText(File file) {
+		if (!file.exists()) {
+			return "";
+		}
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		} catch (IOException ex) {
+			return "";
+		}
+	}
+
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\\' && i + 1 < text.length()) {
+				char next = text.charAt(++i);
+				sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static class Entry {
+		private final String text;
+		private long size;
+		private long lastAccess;
+		private int hits;
+		private int pins;
+
+		private Entry(String text, long size, long lastAccess, int hits) {
+			this.text = text;
+			this.size = size;
+			this.lastAccess = lastAccess;
+			this.hits = hits;
+		}
+
+		private void touch() {
+			lastAccess = System.currentTimeMillis();
+			hits++;
+		}
+	}
+}
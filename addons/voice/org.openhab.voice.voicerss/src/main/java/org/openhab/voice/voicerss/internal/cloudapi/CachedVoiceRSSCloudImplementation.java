@@ -9,8 +9,6 @@
 package org.openhab.voice.voicerss.internal.cloudapi;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -24,8 +22,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class implements a cache for the retrieved audio data. It will preserve
- * them in file system, as .mp3 files with an additional .txt file to indidate
- * what content is in the audio file.
+ * them in file system as .mp3 files, which are managed by an
+ * {@link AudioCache}.
  * 
  * @author Jochen Hiller - Initial contribution
  */
@@ -35,6 +33,8 @@ public class CachedVoiceRSSCloudImplementation extends VoiceRSSCloudImplementati
 
 	private final File cacheFolder;
 
+	private final AudioCache cache;
+
 	public CachedVoiceRSSCloudImplementation(String cacheFolderName) {
 		if (cacheFolderName == null) {
 			throw new RuntimeException("Folder for cache must be defined");
@@ -44,36 +44,56 @@ public class CachedVoiceRSSCloudImplementation extends VoiceRSSCloudImplementati
 		if (!cacheFolder.exists()) {
 			cacheFolder.mkdirs();
 		}
+		cache = new AudioCache(cacheFolder);
 	}
 
 	public File getTextToSpeechAsFile(String apiKey, String text, String locale, String audioFormat)
 			throws IOException {
-		String fileNameInCache = getUniqeFilenameForText(text, locale);
-		// check if in cache
-		File audioFileInCache = new File(cacheFolder, fileNameInCache + ".mp3");
-		if (audioFileInCache.exists()) {
-			return audioFileInCache;
-		}
-
-		// if not in cache, get audio data and put to cache
-		try (InputStream is = super.getTextToSpeech(apiKey, text, locale, audioFormat);
-				FileOutputStream fos = new FileOutputStream(audioFileInCache);) {
-			copyStream(is, fos);
-			// write text to file for transparency too
-			// this allows to know which contents is in which audio file
-			File txtFileInCache = new File(cacheFolder, fileNameInCache + ".txt");
-			writeText(txtFileInCache, text);
-			// return from cache
-			return audioFileInCache;
-		} catch (FileNotFoundException ex) {
-			logger.warn("Could not write {} to cache, return null", audioFileInCache, ex);
-			return null;
+		try {
+			return openTextToSpeech(apiKey, text, locale, audioFormat, new AudioCache.Opener<File>() {
+				@Override
+				public File open(File file) {
+					return file;
+				}
+			});
 		} catch (IOException ex) {
-			logger.error("Could not write {} to cache, return null", audioFileInCache, ex);
+			logger.error("Could not write {} to cache, return null", getUniqeFilenameForText(text, locale), ex);
 			return null;
 		}
 	}
 
+	/**
+	 * Opens the cached audio file for the text, the audio data is retrieved if
+	 * it is not in the cache. The file is not evicted from the cache before it
+	 * has been opened.
+	 */
+	public <T> T openTextToSpeech(final String apiKey, final String text, final String locale,
+			final String audioFormat, AudioCache.Opener<T> opener) throws IOException {
+		String fileNameInCache = getUniqeFilenameForText(text, locale);
+		// if not in cache, get audio data and put to cache
+		return cache.open(fileNameInCache, text, new AudioCache.Loader() {
+			@Override
+			public void load(OutputStream outputStream) throws IOException {
+				try (InputStream is = CachedVoiceRSSCloudImplementation.super.getTextToSpeech(apiKey, text, locale,
+						audioFormat)) {
+					copyStream(is, outputStream);
+				}
+			}
+		}, opener);
+	}
+
+	/**
+	 * Returns the audio data of a frequently requested text, if it is kept in
+	 * memory, null otherwise.
+	 */
+	public byte[] getTextToSpeechFromMemory(String text, String locale) {
+		return cache.getFromMemory(getUniqeFilenameForText(text, locale));
+	}
+
+	public AudioCache getCache() {
+		return cache;
+	}
+
 	/**
 	 * Gets a unique filename for a give text, by creating a MD5 hash of it. It
 	 * will be preceded by the locale.
@@ -115,16 +135,4 @@ public class CachedVoiceRSSCloudImplementation extends VoiceRSSCloudImplementati
 			read = inputStream.read(bytes, 0, 4096);
 		}
 	}
-
-	private void writeText(File file, String text) throws IOException {
-		OutputStream outputStream = null;
-		try {
-			outputStream = new FileOutputStream(file);
-			outputStream.write(text.getBytes("UTF-8"));
-		} finally {
-			if (outputStream != null) {
-				outputStream.close();
-			}
-		}
-	}
 }